@@ -0,0 +1,125 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the individual operations of a set that holds a fixed amount of elements.
+ * Subclasses decide which sets are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AbstractSetOperationBenchmark {
+
+    /**
+     * The position of a thread within the key arrays. Each thread starts at a random position so that
+     * threads do not operate on the same keys in lockstep.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = ThreadLocalRandom.current().nextInt(1 << 30);
+
+        long next(long[] keys) {
+            return keys[this.index++ & (keys.length - 1)];
+        }
+    }
+
+    @Param
+    public KeyDistribution distribution;
+
+    /**
+     * The amount of elements within the set, must be a power of two.
+     */
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private BenchmarkSet set;
+    private long[] present;
+    private long[] absent;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] keys = this.distribution.generate(this.size << 1, 0x5EED_1234L);
+        this.present = new long[this.size];
+        this.absent = new long[this.size];
+        System.arraycopy(keys, 0, this.present, 0, this.size);
+        System.arraycopy(keys, this.size, this.absent, 0, this.size);
+        this.set = this.createSet();
+        for (long key : this.present) {
+            this.set.add(key);
+        }
+    }
+
+    /**
+     * Creates the empty set that is measured.
+     *
+     * @return The created set
+     */
+    protected abstract BenchmarkSet createSet();
+
+    @Benchmark
+    public boolean containsHit(Cursor cursor) {
+        return this.set.contains(cursor.next(this.present));
+    }
+
+    @Benchmark
+    public boolean containsMiss(Cursor cursor) {
+        return this.set.contains(cursor.next(this.absent));
+    }
+
+    /**
+     * Adds an absent key and removes it again, so that the size of the set stays stable.
+     */
+    @Benchmark
+    public boolean addRemove(Cursor cursor) {
+        long key = cursor.next(this.absent);
+        return this.set.add(key) & this.set.remove(key);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long iterate() {
+        return this.set.sum();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once for every thread count. The thread counts default to 1, 2, 4, 8, 16, 32 and 64
+ * and can be overridden via the <code>benchmarks.threads</code> system property as a comma-separated list.
+ * All arguments are treated as regular expressions selecting the benchmarks to run. The results for each
+ * thread count are written to <code>jmh-result-&lt;threads&gt;t.json</code>.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        for (String threads : System.getProperty("benchmarks.threads", "1,2,4,8,16,32,64").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threadCount + "t.json");
+            for (String include : args) {
+                options.include(include);
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+/**
+ * A minimal view of a set of longs that is implemented by every candidate of the benchmarks. Candidates storing
+ * boxed values have to box the values on every call, just like their users would.
+ */
+public interface BenchmarkSet {
+    boolean add(long element);
+
+    boolean remove(long element);
+
+    boolean contains(long element);
+
+    /**
+     * Traverses the entire set, summing up all of its elements so that the traversal cannot be optimised away.
+     *
+     * @return The sum of all elements
+     */
+    long sum();
+}
@@ -0,0 +1,85 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import java.util.SplittableRandom;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+/**
+ * The distributions of the keys used by the benchmarks.
+ */
+public enum KeyDistribution {
+    /**
+     * Keys uniformly distributed across the entire 62-bit range.
+     */
+    RANDOM {
+        @Override
+        long next(SplittableRandom random, int index) {
+            return random.nextLong(1L << 62);
+        }
+    },
+    /**
+     * Random keys that are multiples of 64, much like addresses of aligned memory.
+     */
+    ALIGNED {
+        @Override
+        long next(SplittableRandom random, int index) {
+            return random.nextLong(1L << 62) & ~63L;
+        }
+    },
+    /**
+     * The keys 0, 1, 2 and so on, much like IDs handed out by a counter.
+     */
+    SEQUENTIAL {
+        @Override
+        long next(SplittableRandom random, int index) {
+            return index;
+        }
+    };
+
+    abstract long next(SplittableRandom random, int index);
+
+    /**
+     * Generates distinct keys following this distribution.
+     *
+     * @param count The amount of keys to generate
+     * @param seed The seed of the random number generator, so that all candidates operate on the same keys
+     * @return The generated keys
+     */
+    public long[] generate(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LongSet seen = new LongOpenHashSet(count);
+        long[] keys = new long[count];
+        for (int i = 0, index = 0; i < count; index++) {
+            long key = this.next(random, index);
+            if (seen.add(key)) {
+                keys[i++] = key;
+            }
+        }
+        return keys;
+    }
+}
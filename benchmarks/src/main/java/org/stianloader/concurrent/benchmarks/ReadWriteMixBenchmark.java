@@ -0,0 +1,101 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of a set under a mix of lookups and modifications, where every modification
+ * either adds or removes a key of a pool that is twice as large as the initial set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteMixBenchmark {
+
+    @Param
+    public SetImplementation implementation;
+
+    @Param({"1024"})
+    public int bucketCount;
+
+    @Param({"RANDOM", "ALIGNED"})
+    public KeyDistribution distribution;
+
+    /**
+     * The percentage of operations that modify the set.
+     */
+    @Param({"0", "10", "50", "100"})
+    public int writePercent;
+
+    /**
+     * The amount of keys in the pool, must be a power of two.
+     */
+    @Param({"262144"})
+    public int keyCount;
+
+    private BenchmarkSet set;
+    private long[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.keys = this.distribution.generate(this.keyCount, 0x5EED_1234L);
+        this.set = this.implementation.create(this.bucketCount);
+        for (int i = 0; i < this.keys.length; i += 2) {
+            this.set.add(this.keys[i]);
+        }
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long key = this.keys[random.nextInt() & (this.keys.length - 1)];
+        int operation = random.nextInt(200);
+        if (operation >= this.writePercent << 1) {
+            return this.set.contains(key);
+        } else if ((operation & 1) == 0) {
+            return this.set.add(key);
+        } else {
+            return this.set.remove(key);
+        }
+    }
+}
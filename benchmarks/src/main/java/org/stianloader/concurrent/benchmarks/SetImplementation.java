@@ -0,0 +1,142 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.stianloader.concurrent.ConcurrentInt62Set;
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+
+/**
+ * The set implementations that are compared against each other.
+ */
+public enum SetImplementation {
+    INT62_FIXED {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(new ConcurrentInt62Set(bucketCount));
+        }
+    },
+    INT62_FIXED_LOCALITY {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(new ConcurrentInt62Set(bucketCount, false, HashMode.LOCALITY));
+        }
+    },
+    INT62_RESIZABLE {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(new ConcurrentInt62Set(bucketCount, true));
+        }
+    },
+    CHM_KEY_SET {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(ConcurrentHashMap.newKeySet());
+        }
+    },
+    SKIP_LIST_SET {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(new ConcurrentSkipListSet<>());
+        }
+    },
+    SYNCHRONIZED_FASTUTIL {
+        @Override
+        public BenchmarkSet create(int bucketCount) {
+            return SetImplementation.of(LongSets.synchronize(new LongOpenHashSet()));
+        }
+    };
+
+    /**
+     * Creates an empty set.
+     *
+     * @param bucketCount The amount of buckets for implementations where it can be configured, ignored otherwise
+     * @return The created set
+     */
+    public abstract BenchmarkSet create(int bucketCount);
+
+    private static BenchmarkSet of(LongSet set) {
+        return new BenchmarkSet() {
+            @Override
+            public boolean add(long element) {
+                return set.add(element);
+            }
+
+            @Override
+            public boolean remove(long element) {
+                return set.remove(element);
+            }
+
+            @Override
+            public boolean contains(long element) {
+                return set.contains(element);
+            }
+
+            @Override
+            public long sum() {
+                // The synchronized wrapper only guards forEach, not its iterator
+                long[] sum = new long[1];
+                set.forEach((long element) -> sum[0] += element);
+                return sum[0];
+            }
+        };
+    }
+
+    private static BenchmarkSet of(Set<Long> set) {
+        return new BenchmarkSet() {
+            @Override
+            public boolean add(long element) {
+                return set.add(element);
+            }
+
+            @Override
+            public boolean remove(long element) {
+                return set.remove(element);
+            }
+
+            @Override
+            public boolean contains(long element) {
+                return set.contains(element);
+            }
+
+            @Override
+            public long sum() {
+                LongAdder sum = new LongAdder();
+                for (Long element : set) {
+                    sum.add(element);
+                }
+                return sum.sum();
+            }
+        };
+    }
+}
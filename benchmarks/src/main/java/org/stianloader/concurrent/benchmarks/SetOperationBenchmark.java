@@ -0,0 +1,45 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Compares the individual operations of all {@link SetImplementation set implementations}. Implementations with a
+ * configurable amount of buckets use {@link #BUCKET_COUNT} buckets, see {@link BucketCountBenchmark} for the effect
+ * of the amount of buckets.
+ */
+public class SetOperationBenchmark extends AbstractSetOperationBenchmark {
+
+    private static final int BUCKET_COUNT = 1024;
+
+    @Param
+    public SetImplementation implementation;
+
+    @Override
+    protected BenchmarkSet createSet() {
+        return this.implementation.create(SetOperationBenchmark.BUCKET_COUNT);
+    }
+}
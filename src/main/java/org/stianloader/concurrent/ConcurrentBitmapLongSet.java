@@ -0,0 +1,309 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent set for 62 bit <b>unsigned</b> integers which stores the membership of each element as a single bit.
+ * The range of possible elements is divided into chunks of 65536 consecutive integers. A chunk is allocated once the
+ * first element within its range is added, after which it occupies 8 KiB regardless of how many of its elements are
+ * present. Dense sets, for example sets holding a contiguous range of identifiers, hence occupy little more than a
+ * single bit per possible element, whereas sparse sets are better served by a {@link ConcurrentInt62Set}.
+ *
+ * <p>Chunks are looked up through a {@link ConcurrentInt62ObjectMap}, which never waits on other threads for present
+ * chunks. Afterwards, {@link #add(long)} and {@link #remove(long)} flip the bit of the element using a single CAS on
+ * the word holding the bit (retrying only if another bit of the same word was flipped concurrently), and
+ * {@link #contains(long)} reads a single word. No counter is maintained alongside the bits, so {@link #size()}
+ * counts the bits of every chunk instead.
+ *
+ * <p>Chunks are only released by {@link #clear()}, even if all elements of a chunk were removed.
+ *
+ * <h2>Iteration</h2>
+ *
+ * <p>Iterators are weakly consistent: every element that is neither added nor removed during the iteration is returned
+ * exactly once, while concurrently modified elements may or may not be returned. The elements of a chunk are returned
+ * in ascending order, while the chunks themselves are visited in no particular order. {@link LongIterator#hasNext()}
+ * reads the next element ahead of time, so {@link LongIterator#nextLong()} never fails after
+ * {@link LongIterator#hasNext()} returned true.
+ */
+public final class ConcurrentBitmapLongSet extends AbstractLongSet {
+
+    /**
+     * The membership bits of 65536 consecutive integers.
+     */
+    static final class Chunk {
+        final AtomicLongArray words = new AtomicLongArray(ConcurrentBitmapLongSet.CHUNK_WORDS);
+
+        /**
+         * Counts the bits of the chunk that are set, without locking the chunk.
+         *
+         * @return The amount of elements within the chunk
+         */
+        int cardinality() {
+            int count = 0;
+            for (int i = 0; i < ConcurrentBitmapLongSet.CHUNK_WORDS; i++) {
+                count += Long.bitCount(this.words.get(i));
+            }
+            return count;
+        }
+
+        /**
+         * Checks whether no bit of the chunk is set, without locking the chunk.
+         *
+         * @return True if the chunk holds no elements
+         */
+        boolean isEmpty() {
+            for (int i = 0; i < ConcurrentBitmapLongSet.CHUNK_WORDS; i++) {
+                if (this.words.get(i) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_WORDS = 1 << (ConcurrentBitmapLongSet.CHUNK_SHIFT - 6);
+
+    private final ConcurrentInt62ObjectMap<Chunk> chunks;
+
+    /**
+     * Creates an empty bitmap set.
+     */
+    public ConcurrentBitmapLongSet() {
+        this.chunks = new ConcurrentInt62ObjectMap<>();
+    }
+
+    private static int wordIndex(long element) {
+        return (int) (element >>> 6) & (ConcurrentBitmapLongSet.CHUNK_WORDS - 1);
+    }
+
+    @Override
+    public boolean add(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        long chunkIndex = element >>> ConcurrentBitmapLongSet.CHUNK_SHIFT;
+        Chunk chunk = this.chunks.get(chunkIndex);
+        if (chunk == null) {
+            chunk = this.chunks.computeIfAbsent(chunkIndex, (long index) -> new Chunk());
+        }
+        AtomicLongArray words = chunk.words;
+        int index = ConcurrentBitmapLongSet.wordIndex(element);
+        long bit = 1L << element;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & bit) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, word, word | bit));
+        return true;
+    }
+
+    @Override
+    public boolean remove(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        Chunk chunk = this.chunks.get(element >>> ConcurrentBitmapLongSet.CHUNK_SHIFT);
+        if (chunk == null) {
+            return false;
+        }
+        AtomicLongArray words = chunk.words;
+        int index = ConcurrentBitmapLongSet.wordIndex(element);
+        long bit = 1L << element;
+        long word;
+        do {
+            word = words.get(index);
+            if ((word & bit) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, word, word & ~bit));
+        return true;
+    }
+
+    @Override
+    public boolean contains(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        Chunk chunk = this.chunks.get(element >>> ConcurrentBitmapLongSet.CHUNK_SHIFT);
+        return chunk != null && (chunk.words.get(ConcurrentBitmapLongSet.wordIndex(element)) & (1L << element)) != 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Releases all chunks of the set. Elements that are added concurrently may or may not remain in the set.
+     */
+    @Override
+    public void clear() {
+        this.chunks.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The size is computed by counting the set bits of every chunk without locking the set, which takes time
+     * proportional to the amount of chunks rather than the amount of elements.
+     */
+    @Override
+    public int size() {
+        long size = 0L;
+        for (ConcurrentInt62ObjectMap.Bucket bucket : this.chunks.buckets) {
+            ConcurrentInt62ObjectMap.Slots slots = bucket.slots;
+            if (slots == null) {
+                continue;
+            }
+            for (int i = 0, len = slots.values.length(); i < len; i++) {
+                Chunk chunk = (Chunk) slots.values.get(i);
+                if (chunk != null) {
+                    size += chunk.cardinality();
+                }
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentInt62ObjectMap.Bucket bucket : this.chunks.buckets) {
+            ConcurrentInt62ObjectMap.Slots slots = bucket.slots;
+            if (slots == null) {
+                continue;
+            }
+            for (int i = 0, len = slots.values.length(); i < len; i++) {
+                Chunk chunk = (Chunk) slots.values.get(i);
+                if (chunk != null && !chunk.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Obtains the amount of memory occupied by the chunks of the set, in bytes, excluding the memory used for
+     * looking up the chunks.
+     *
+     * @return The amount of memory occupied by the chunks
+     */
+    public long getChunkMemory() {
+        return (long) this.chunks.size() * (ConcurrentBitmapLongSet.CHUNK_WORDS << 3);
+    }
+
+    @Override
+    public LongIterator iterator() {
+        return new LongIterator() {
+            private int bucketIndex;
+            private ConcurrentInt62ObjectMap.Slots slots;
+            private int slotIndex;
+            private Chunk chunk;
+            private long chunkBase;
+            private int wordIndex;
+            /**
+             * The bits of the current word that were not yet returned.
+             */
+            private long word;
+            /**
+             * Whether {@link #nextValue} holds the element that is returned by the next call to {@link #nextLong()}.
+             */
+            private boolean hasNextValue;
+            private long nextValue;
+            private boolean hasLast;
+            private long lastValue;
+
+            @Override
+            public boolean hasNext() {
+                if (this.hasNextValue) {
+                    return true;
+                }
+                while (true) {
+                    if (this.word != 0) {
+                        int bit = Long.numberOfTrailingZeros(this.word);
+                        this.word &= this.word - 1;
+                        this.nextValue = this.chunkBase | ((long) (this.wordIndex - 1) << 6) | bit;
+                        return this.hasNextValue = true;
+                    }
+                    Chunk chunk = this.chunk;
+                    if (chunk != null && this.wordIndex < ConcurrentBitmapLongSet.CHUNK_WORDS) {
+                        this.word = chunk.words.get(this.wordIndex++);
+                        continue;
+                    }
+                    // Visit the slots of the chunk map directly, as its iterators allocate an entry per chunk
+                    ConcurrentInt62ObjectMap.Slots slots = this.slots;
+                    if (slots != null && this.slotIndex < slots.keys.length()) {
+                        int index = this.slotIndex++;
+                        long entry = slots.keys.get(index);
+                        if ((entry & ConcurrentInt62Set.CTRL_BIT_READ) == 0 || (chunk = (Chunk) slots.values.get(index)) == null) {
+                            continue;
+                        }
+                        this.chunk = chunk;
+                        this.chunkBase = (entry & ConcurrentInt62Set.INT_62_BITS) << ConcurrentBitmapLongSet.CHUNK_SHIFT;
+                        this.wordIndex = 0;
+                        continue;
+                    }
+                    ConcurrentInt62ObjectMap.Bucket[] buckets = ConcurrentBitmapLongSet.this.chunks.buckets;
+                    if (this.bucketIndex == buckets.length) {
+                        this.chunk = null;
+                        this.slots = null;
+                        return false;
+                    }
+                    this.chunk = null;
+                    this.slots = buckets[this.bucketIndex++].slots;
+                    this.slotIndex = 0;
+                }
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
+                }
+                this.hasNextValue = false;
+                this.hasLast = true;
+                return this.lastValue = this.nextValue;
+            }
+
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+
+                this.hasLast = false;
+                ConcurrentBitmapLongSet.this.remove(this.lastValue);
+            }
+        };
+    }
+}
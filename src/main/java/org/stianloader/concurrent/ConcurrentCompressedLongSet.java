@@ -0,0 +1,911 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent compressed set for 62 bit <b>unsigned</b> integers, modelled after roaring bitmaps.
+ * The range of possible elements is divided into containers of 65536 consecutive integers, each of which stores the
+ * lower 16 bits of its elements in the most compact of three representations:
+ *
+ * <ul>
+ *  <li>A sorted array of up to 4096 elements, occupying 2 bytes per element.</li>
+ *  <li>A bitmap, occupying 8 KiB regardless of the amount of elements.</li>
+ *  <li>A sorted list of runs of consecutive elements, occupying 4 bytes per run.</li>
+ * </ul>
+ *
+ * <p>Containers switch between the array and the bitmap representation as elements are added or removed.
+ * Run containers are only created by {@link #runOptimize()} and by the bulk operations
+ * {@link #addAll(LongCollection)}, {@link #retainAll(LongCollection)} and {@link #removeAll(LongCollection)}
+ * when applied on another {@link ConcurrentCompressedLongSet}, as all of them pick the most compact representation
+ * for the containers they produce. Sets that mix dense runs of elements with sparse outliers hence occupy a fraction
+ * of the memory of a {@link ConcurrentInt62Set} or a {@link ConcurrentBitmapLongSet}.
+ *
+ * <h2>Concurrency</h2>
+ *
+ * <p>Containers are looked up through a {@link ConcurrentInt62ObjectMap}. Modifications of a container are serialized
+ * by the monitor of the container, while {@link #contains(long)} never locks: array and run containers are replaced
+ * as a whole on every modification, whereas bitmap containers are modified one word at a time. Containers which no
+ * longer hold any elements are removed from the set.
+ *
+ * <p>Bulk operations are applied one container at a time, so concurrent readers may observe the set in a state where
+ * only some of the containers were updated.
+ *
+ * <h2>Iteration</h2>
+ *
+ * <p>Iterators return the elements in ascending order, without materializing the contents of the set. They are weakly
+ * consistent: every element that is neither added nor removed during the iteration is returned exactly once, while
+ * concurrently modified elements may or may not be returned. Elements whose container did not exist when the
+ * iterator was created are not returned.
+ */
+public final class ConcurrentCompressedLongSet extends AbstractLongSet {
+
+    /**
+     * The lower 16 bits of the elements within a range of 65536 consecutive integers.
+     * Unless noted otherwise, methods which modify the container must be called while holding the monitor of the
+     * {@link Holder} which owns the container, and return the container that replaces the container in the holder.
+     */
+    static abstract class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * Obtains the smallest element that is at least as large as the given element.
+         *
+         * @param low The element to start searching from, between 0 and 65535 (inclusive).
+         * @return The smallest element that is at least as large as the given element, or -1 if no such element exists.
+         */
+        abstract int nextFrom(int low);
+
+        abstract Container add(int low);
+
+        abstract Container remove(int low);
+
+        /**
+         * Obtains the amount of bytes occupied by the elements of the container.
+         *
+         * @return The amount of occupied bytes.
+         */
+        abstract int memory();
+
+        /**
+         * Sets the bits of all elements of the container in the given bitmap, which must consist of
+         * {@link ConcurrentCompressedLongSet#CONTAINER_WORDS} words.
+         * This method does not require holding the monitor of the owning holder.
+         *
+         * @param bits The bitmap to write to.
+         */
+        abstract void orInto(long[] bits);
+
+        /**
+         * Creates the most compact container holding exactly the elements whose bit is set in the given bitmap.
+         *
+         * @param bits The elements of the container, which must consist of {@link ConcurrentCompressedLongSet#CONTAINER_WORDS} words.
+         * @return The created container.
+         */
+        static Container of(long[] bits) {
+            int cardinality = 0;
+            int runs = 0;
+            long carry = 0L;
+            for (long word : bits) {
+                cardinality += Long.bitCount(word);
+                runs += Long.bitCount(word & ~((word << 1) | carry));
+                carry = word >>> 63;
+            }
+
+            if (cardinality == 0) {
+                return ArrayContainer.EMPTY;
+            }
+
+            int arrayMemory = cardinality <= ConcurrentCompressedLongSet.ARRAY_MAX_CARDINALITY ? cardinality << 1 : Integer.MAX_VALUE;
+            int bitmapMemory = ConcurrentCompressedLongSet.CONTAINER_WORDS << 3;
+
+            if ((runs << 2) < Math.min(arrayMemory, bitmapMemory)) {
+                char[] values = new char[runs << 1];
+                int start = ConcurrentCompressedLongSet.nextSetBit(bits, 0);
+                for (int i = 0; i < values.length; i += 2) {
+                    int end = ConcurrentCompressedLongSet.nextClearBit(bits, start);
+                    values[i] = (char) start;
+                    values[i + 1] = (char) (end - start - 1);
+                    start = ConcurrentCompressedLongSet.nextSetBit(bits, end);
+                }
+                return new RunContainer(values, cardinality);
+            } else if (arrayMemory <= bitmapMemory) {
+                char[] values = new char[cardinality];
+                int element = ConcurrentCompressedLongSet.nextSetBit(bits, 0);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (char) element;
+                    element = ConcurrentCompressedLongSet.nextSetBit(bits, element + 1);
+                }
+                return new ArrayContainer(values);
+            } else {
+                return new BitmapContainer(bits, cardinality);
+            }
+        }
+    }
+
+    static final class ArrayContainer extends Container {
+        static final ArrayContainer EMPTY = new ArrayContainer(new char[0]);
+
+        final char[] values;
+
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        int cardinality() {
+            return this.values.length;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(this.values, (char) low) >= 0;
+        }
+
+        @Override
+        int nextFrom(int low) {
+            int index = Arrays.binarySearch(this.values, (char) low);
+            if (index >= 0) {
+                return low;
+            }
+            index = -index - 1;
+            return index < this.values.length ? this.values[index] : -1;
+        }
+
+        @Override
+        Container add(int low) {
+            char[] values = this.values;
+            if (values.length >= ConcurrentCompressedLongSet.ARRAY_MAX_CARDINALITY) {
+                long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                this.orInto(bits);
+                bits[low >>> 6] |= 1L << low;
+                return new BitmapContainer(bits, values.length + 1);
+            }
+            int index = -Arrays.binarySearch(values, (char) low) - 1;
+            char[] added = new char[values.length + 1];
+            System.arraycopy(values, 0, added, 0, index);
+            added[index] = (char) low;
+            System.arraycopy(values, index, added, index + 1, values.length - index);
+            return new ArrayContainer(added);
+        }
+
+        @Override
+        Container remove(int low) {
+            char[] values = this.values;
+            if (values.length == 1) {
+                return ArrayContainer.EMPTY;
+            }
+            int index = Arrays.binarySearch(values, (char) low);
+            char[] removed = new char[values.length - 1];
+            System.arraycopy(values, 0, removed, 0, index);
+            System.arraycopy(values, index + 1, removed, index, removed.length - index);
+            return new ArrayContainer(removed);
+        }
+
+        @Override
+        int memory() {
+            return this.values.length << 1;
+        }
+
+        @Override
+        void orInto(long[] bits) {
+            for (char value : this.values) {
+                bits[value >>> 6] |= 1L << value;
+            }
+        }
+    }
+
+    static final class BitmapContainer extends Container {
+        final AtomicLongArray words;
+        /**
+         * The amount of set bits. Only modified while holding the monitor of the owning holder.
+         */
+        volatile int cardinality;
+
+        BitmapContainer(long[] bits, int cardinality) {
+            this.words = new AtomicLongArray(bits);
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (this.words.get(low >>> 6) & (1L << low)) != 0;
+        }
+
+        @Override
+        int nextFrom(int low) {
+            int index = low >>> 6;
+            long word = this.words.get(index) & (-1L << low);
+            while (word == 0) {
+                if (++index == ConcurrentCompressedLongSet.CONTAINER_WORDS) {
+                    return -1;
+                }
+                word = this.words.get(index);
+            }
+            return (index << 6) | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        Container add(int low) {
+            int index = low >>> 6;
+            this.words.set(index, this.words.get(index) | (1L << low));
+            this.cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            if (this.cardinality <= ConcurrentCompressedLongSet.ARRAY_MAX_CARDINALITY + 1) {
+                long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                this.orInto(bits);
+                bits[low >>> 6] &= ~(1L << low);
+                char[] values = new char[this.cardinality - 1];
+                int element = ConcurrentCompressedLongSet.nextSetBit(bits, 0);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (char) element;
+                    element = ConcurrentCompressedLongSet.nextSetBit(bits, element + 1);
+                }
+                return new ArrayContainer(values);
+            }
+            int index = low >>> 6;
+            this.words.set(index, this.words.get(index) & ~(1L << low));
+            this.cardinality--;
+            return this;
+        }
+
+        @Override
+        int memory() {
+            return ConcurrentCompressedLongSet.CONTAINER_WORDS << 3;
+        }
+
+        @Override
+        void orInto(long[] bits) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] |= this.words.get(i);
+            }
+        }
+    }
+
+    static final class RunContainer extends Container {
+        /**
+         * Pairs of the first element of a run and the amount of elements in the run minus one, sorted by the first
+         * element of the runs. Runs never overlap or touch each other.
+         */
+        final char[] runs;
+        final int cardinality;
+
+        RunContainer(char[] runs, int cardinality) {
+            this.runs = runs;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Obtains the index of the last run that starts at or before the given element.
+         *
+         * @param low The element to search for.
+         * @return The index of the run (not the index within {@link #runs}), or -1 if all runs start after the element.
+         */
+        private int runIndex(int low) {
+            int min = 0;
+            int max = (this.runs.length >> 1) - 1;
+            while (min <= max) {
+                int mid = (min + max) >>> 1;
+                if (this.runs[mid << 1] <= low) {
+                    min = mid + 1;
+                } else {
+                    max = mid - 1;
+                }
+            }
+            return max;
+        }
+
+        private int start(int run) {
+            return this.runs[run << 1];
+        }
+
+        private int end(int run) {
+            return this.runs[run << 1] + this.runs[(run << 1) + 1];
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int run = this.runIndex(low);
+            return run >= 0 && low <= this.end(run);
+        }
+
+        @Override
+        int nextFrom(int low) {
+            int run = this.runIndex(low);
+            if (run >= 0 && low <= this.end(run)) {
+                return low;
+            }
+            return ++run < (this.runs.length >> 1) ? this.start(run) : -1;
+        }
+
+        @Override
+        Container add(int low) {
+            char[] runs = this.runs;
+            int run = this.runIndex(low);
+            int next = run + 1;
+            boolean joinPrevious = run >= 0 && this.end(run) + 1 == low;
+            boolean joinNext = next < (runs.length >> 1) && this.start(next) == low + 1;
+            char[] added;
+            if (joinPrevious && joinNext) {
+                added = new char[runs.length - 2];
+                System.arraycopy(runs, 0, added, 0, next << 1);
+                System.arraycopy(runs, (next << 1) + 2, added, next << 1, added.length - (next << 1));
+                added[(run << 1) + 1] = (char) (this.end(next) - this.start(run));
+            } else if (joinPrevious) {
+                added = runs.clone();
+                added[(run << 1) + 1]++;
+            } else if (joinNext) {
+                added = runs.clone();
+                added[next << 1] = (char) low;
+                added[(next << 1) + 1]++;
+            } else {
+                added = new char[runs.length + 2];
+                System.arraycopy(runs, 0, added, 0, next << 1);
+                added[next << 1] = (char) low;
+                System.arraycopy(runs, next << 1, added, (next << 1) + 2, runs.length - (next << 1));
+            }
+            return new RunContainer(added, this.cardinality + 1).settle();
+        }
+
+        @Override
+        Container remove(int low) {
+            char[] runs = this.runs;
+            int run = this.runIndex(low);
+            int start = this.start(run);
+            int end = this.end(run);
+            char[] removed;
+            if (start == end) {
+                removed = new char[runs.length - 2];
+                System.arraycopy(runs, 0, removed, 0, run << 1);
+                System.arraycopy(runs, (run << 1) + 2, removed, run << 1, removed.length - (run << 1));
+            } else if (low == start) {
+                removed = runs.clone();
+                removed[run << 1]++;
+                removed[(run << 1) + 1]--;
+            } else if (low == end) {
+                removed = runs.clone();
+                removed[(run << 1) + 1]--;
+            } else {
+                removed = new char[runs.length + 2];
+                System.arraycopy(runs, 0, removed, 0, run << 1);
+                removed[run << 1] = (char) start;
+                removed[(run << 1) + 1] = (char) (low - start - 1);
+                removed[(run << 1) + 2] = (char) (low + 1);
+                removed[(run << 1) + 3] = (char) (end - low - 1);
+                System.arraycopy(runs, (run << 1) + 2, removed, (run << 1) + 4, runs.length - (run << 1) - 2);
+            }
+            if (removed.length == 0) {
+                return ArrayContainer.EMPTY;
+            }
+            return new RunContainer(removed, this.cardinality - 1).settle();
+        }
+
+        /**
+         * Converts the container to an array or bitmap container if the runs occupy more memory than either of them.
+         *
+         * @return The most compact container holding the elements of this container.
+         */
+        private Container settle() {
+            int arrayMemory = this.cardinality <= ConcurrentCompressedLongSet.ARRAY_MAX_CARDINALITY ? this.cardinality << 1 : Integer.MAX_VALUE;
+            if (this.memory() < Math.min(arrayMemory, ConcurrentCompressedLongSet.CONTAINER_WORDS << 3)) {
+                return this;
+            }
+            long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+            this.orInto(bits);
+            return Container.of(bits);
+        }
+
+        @Override
+        int memory() {
+            return this.runs.length << 1;
+        }
+
+        @Override
+        void orInto(long[] bits) {
+            char[] runs = this.runs;
+            for (int i = 0; i < runs.length; i += 2) {
+                int start = runs[i];
+                int end = start + runs[i + 1];
+                int startWord = start >>> 6;
+                int endWord = end >>> 6;
+                if (startWord == endWord) {
+                    bits[startWord] |= (-1L << start) & (-1L >>> ~end);
+                } else {
+                    bits[startWord] |= -1L << start;
+                    for (int word = startWord + 1; word < endWord; word++) {
+                        bits[word] = -1L;
+                    }
+                    bits[endWord] |= -1L >>> ~end;
+                }
+            }
+        }
+    }
+
+    /**
+     * The owner of a container, whose monitor serializes modifications of the container.
+     */
+    static final class Holder {
+        /**
+         * The current container, or null if the holder was removed from the set, in which case the
+         * container of the key must be looked up again.
+         */
+        volatile Container container;
+
+        Holder(Container container) {
+            this.container = container;
+        }
+    }
+
+    static final int ARRAY_MAX_CARDINALITY = 4096;
+    private static final int CONTAINER_SHIFT = 16;
+    static final int CONTAINER_WORDS = 1 << (ConcurrentCompressedLongSet.CONTAINER_SHIFT - 6);
+    private static final int LOW_BITS = (1 << ConcurrentCompressedLongSet.CONTAINER_SHIFT) - 1;
+
+    static int nextClearBit(long[] bits, int from) {
+        int index = from >>> 6;
+        if (index == bits.length) {
+            return from;
+        }
+        long word = ~bits[index] & (-1L << from);
+        while (word == 0) {
+            if (++index == bits.length) {
+                return index << 6;
+            }
+            word = ~bits[index];
+        }
+        return (index << 6) | Long.numberOfTrailingZeros(word);
+    }
+
+    static int nextSetBit(long[] bits, int from) {
+        int index = from >>> 6;
+        if (index == bits.length) {
+            return -1;
+        }
+        long word = bits[index] & (-1L << from);
+        while (word == 0) {
+            if (++index == bits.length) {
+                return -1;
+            }
+            word = bits[index];
+        }
+        return (index << 6) | Long.numberOfTrailingZeros(word);
+    }
+
+    private final ConcurrentInt62ObjectMap<Holder> holders;
+
+    /**
+     * Creates an empty compressed set.
+     */
+    public ConcurrentCompressedLongSet() {
+        this.holders = new ConcurrentInt62ObjectMap<>();
+    }
+
+    private static void checkElement(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+    }
+
+    private Holder acquireHolder(long key) {
+        Holder holder = this.holders.get(key);
+        if (holder == null) {
+            holder = this.holders.computeIfAbsent(key, (long k) -> new Holder(ArrayContainer.EMPTY));
+        }
+        return holder;
+    }
+
+    /**
+     * Stores the given container in the given holder, removing the holder from the set if the container is empty.
+     * Must be called while holding the monitor of the holder.
+     *
+     * @param key The key of the holder.
+     * @param holder The holder.
+     * @param container The new container of the holder.
+     */
+    private void publish(long key, Holder holder, Container container) {
+        if (container.cardinality() == 0) {
+            holder.container = null;
+            this.holders.remove(key, holder);
+        } else {
+            holder.container = container;
+        }
+    }
+
+    @Override
+    public boolean add(long element) {
+        ConcurrentCompressedLongSet.checkElement(element);
+        long key = element >>> ConcurrentCompressedLongSet.CONTAINER_SHIFT;
+        int low = (int) element & ConcurrentCompressedLongSet.LOW_BITS;
+        while (true) {
+            Holder holder = this.acquireHolder(key);
+            synchronized (holder) {
+                Container container = holder.container;
+                if (container == null) {
+                    continue;
+                }
+                if (container.contains(low)) {
+                    return false;
+                }
+                holder.container = container.add(low);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(long element) {
+        ConcurrentCompressedLongSet.checkElement(element);
+        long key = element >>> ConcurrentCompressedLongSet.CONTAINER_SHIFT;
+        int low = (int) element & ConcurrentCompressedLongSet.LOW_BITS;
+        while (true) {
+            Holder holder = this.holders.get(key);
+            if (holder == null) {
+                return false;
+            }
+            synchronized (holder) {
+                Container container = holder.container;
+                if (container == null) {
+                    continue;
+                }
+                if (!container.contains(low)) {
+                    return false;
+                }
+                this.publish(key, holder, container.remove(low));
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        long key = element >>> ConcurrentCompressedLongSet.CONTAINER_SHIFT;
+        while (true) {
+            Holder holder = this.holders.get(key);
+            if (holder == null) {
+                return false;
+            }
+            Container container = holder.container;
+            if (container != null) {
+                return container.contains((int) element & ConcurrentCompressedLongSet.LOW_BITS);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the given collection is a {@link ConcurrentCompressedLongSet}, the union is computed one container at a
+     * time without visiting the elements individually.
+     */
+    @Override
+    public boolean addAll(LongCollection c) {
+        if (!(c instanceof ConcurrentCompressedLongSet)) {
+            return super.addAll(c);
+        }
+
+        boolean modified = false;
+        for (Long2ObjectMap.Entry<Holder> entry : ((ConcurrentCompressedLongSet) c).holders.long2ObjectEntrySet()) {
+            Container other = entry.getValue().container;
+            if (other == null || other.cardinality() == 0) {
+                continue;
+            }
+            long key = entry.getLongKey();
+            while (true) {
+                Holder holder = this.acquireHolder(key);
+                synchronized (holder) {
+                    Container container = holder.container;
+                    if (container == null) {
+                        continue;
+                    }
+                    long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                    container.orInto(bits);
+                    other.orInto(bits);
+                    Container union = Container.of(bits);
+                    if (union.cardinality() != container.cardinality()) {
+                        this.publish(key, holder, union);
+                        modified = true;
+                    } else if (union.cardinality() == 0) {
+                        this.publish(key, holder, union);
+                    }
+                    break;
+                }
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the given collection is a {@link ConcurrentCompressedLongSet}, the intersection is computed one container
+     * at a time without visiting the elements individually.
+     */
+    @Override
+    public boolean retainAll(LongCollection c) {
+        if (!(c instanceof ConcurrentCompressedLongSet)) {
+            return super.retainAll(c);
+        }
+        return this.combine((ConcurrentCompressedLongSet) c, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the given collection is a {@link ConcurrentCompressedLongSet}, the difference is computed one container
+     * at a time without visiting the elements individually.
+     */
+    @Override
+    public boolean removeAll(LongCollection c) {
+        if (!(c instanceof ConcurrentCompressedLongSet)) {
+            return super.removeAll(c);
+        }
+        return this.combine((ConcurrentCompressedLongSet) c, true);
+    }
+
+    /**
+     * Intersects every container of this set with the corresponding container of the given set, or with its
+     * complement.
+     *
+     * @param other The set to intersect with.
+     * @param complement Whether to intersect with the complement of the given set.
+     * @return True if the set was modified.
+     */
+    private boolean combine(ConcurrentCompressedLongSet other, boolean complement) {
+        boolean modified = false;
+        for (Long2ObjectMap.Entry<Holder> entry : this.holders.long2ObjectEntrySet()) {
+            Holder holder = entry.getValue();
+            long key = entry.getLongKey();
+            synchronized (holder) {
+                Container container = holder.container;
+                if (container == null) {
+                    continue;
+                }
+                Holder otherHolder = other.holders.get(key);
+                Container otherContainer = otherHolder == null ? null : otherHolder.container;
+                Container result;
+                if (otherContainer == null) {
+                    if (complement) {
+                        continue;
+                    }
+                    result = ArrayContainer.EMPTY;
+                } else {
+                    long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                    long[] otherBits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                    container.orInto(bits);
+                    otherContainer.orInto(otherBits);
+                    for (int i = 0; i < bits.length; i++) {
+                        bits[i] &= complement ? ~otherBits[i] : otherBits[i];
+                    }
+                    result = Container.of(bits);
+                }
+                if (result.cardinality() != container.cardinality()) {
+                    this.publish(key, holder, result);
+                    modified = true;
+                }
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Converts every container to its most compact representation, which in particular converts containers holding
+     * long runs of consecutive elements to run containers.
+     *
+     * @return True if any container was converted.
+     */
+    public boolean runOptimize() {
+        boolean converted = false;
+        for (Holder holder : this.holders.values()) {
+            synchronized (holder) {
+                Container container = holder.container;
+                if (container == null) {
+                    continue;
+                }
+                long[] bits = new long[ConcurrentCompressedLongSet.CONTAINER_WORDS];
+                container.orInto(bits);
+                Container optimized = Container.of(bits);
+                if (optimized.getClass() != container.getClass()) {
+                    holder.container = optimized;
+                    converted = true;
+                }
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * Obtains the amount of memory occupied by the elements stored in the containers of the set, in bytes, excluding
+     * the memory used for looking up the containers.
+     *
+     * @return The amount of memory occupied by the containers
+     */
+    public long getContainerMemory() {
+        long memory = 0L;
+        for (Holder holder : this.holders.values()) {
+            Container container = holder.container;
+            if (container != null) {
+                memory += container.memory();
+            }
+        }
+        return memory;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Removes all containers from the set. Elements that are added concurrently may or may not remain in the set.
+     */
+    @Override
+    public void clear() {
+        for (Long2ObjectMap.Entry<Holder> entry : this.holders.long2ObjectEntrySet()) {
+            Holder holder = entry.getValue();
+            synchronized (holder) {
+                if (holder.container != null) {
+                    this.publish(entry.getLongKey(), holder, ArrayContainer.EMPTY);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The size is computed by summing up the amount of elements of each container, without locking the set.
+     */
+    @Override
+    public int size() {
+        long size = 0L;
+        for (Holder holder : this.holders.values()) {
+            Container container = holder.container;
+            if (container != null) {
+                size += container.cardinality();
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Holder holder : this.holders.values()) {
+            Container container = holder.container;
+            if (container != null && container.cardinality() != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned iterator returns the elements in ascending order.
+     */
+    @Override
+    public LongIterator iterator() {
+        LongArrayList keyList = new LongArrayList();
+        for (Long2ObjectMap.Entry<Holder> entry : this.holders.long2ObjectEntrySet()) {
+            keyList.add(entry.getLongKey());
+        }
+        long[] keys = keyList.toLongArray();
+        Arrays.sort(keys);
+
+        return new LongIterator() {
+            private int keyIndex = -1;
+            private long key;
+            private Holder holder;
+            /**
+             * The smallest element of the current container that may be returned next.
+             */
+            private int low;
+            /**
+             * Whether {@link #nextValue} holds the element that is returned by the next call to {@link #nextLong()}.
+             */
+            private boolean hasNextValue;
+            private long nextValue;
+            private boolean hasLast;
+            private long lastValue;
+
+            @Override
+            public boolean hasNext() {
+                if (this.hasNextValue) {
+                    return true;
+                }
+                while (true) {
+                    Holder holder = this.holder;
+                    if (holder != null) {
+                        Container container = holder.container;
+                        if (container == null) {
+                            this.holder = ConcurrentCompressedLongSet.this.holders.get(this.key);
+                            continue;
+                        }
+                        int next = this.low > ConcurrentCompressedLongSet.LOW_BITS ? -1 : container.nextFrom(this.low);
+                        if (next >= 0) {
+                            this.low = next + 1;
+                            this.nextValue = (this.key << ConcurrentCompressedLongSet.CONTAINER_SHIFT) | next;
+                            return this.hasNextValue = true;
+                        }
+                        this.holder = null;
+                    }
+                    if (this.keyIndex + 1 >= keys.length) {
+                        return false;
+                    }
+                    this.key = keys[++this.keyIndex];
+                    this.holder = ConcurrentCompressedLongSet.this.holders.get(this.key);
+                    this.low = 0;
+                }
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
+                }
+                this.hasNextValue = false;
+                this.hasLast = true;
+                return this.lastValue = this.nextValue;
+            }
+
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+
+                this.hasLast = false;
+                ConcurrentCompressedLongSet.this.remove(this.lastValue);
+            }
+        };
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntSet;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent set for 30 bit <b>unsigned</b> integers, that is integers between 0 (inclusive) and 2<sup>30</sup>
+ * (exclusive). Elements are stored in slots of 32 bits, so the set occupies half the memory of a
+ * {@link ConcurrentInt62Set} holding the same elements, and scanning a bucket touches half as many cache lines.
+ *
+ * <p>The layout of the set matches the layout of a {@link ConcurrentInt62Set} with a fixed amount of buckets: Each
+ * bucket is an open-addressed hash table using linear probing, where present elements are stored alongside the
+ * {@link #CTRL_BIT_READ} bit and are published by a single CAS from an empty slot. The two most significant bits
+ * of each slot are reserved for control bits, which is why elements may only use the remaining 30 bits.
+ * Removed elements leave a tombstone behind, which is only purged once the bucket is rehashed. The slots of a bucket
+ * are allocated lazily once the first element is added to the bucket, grow in factors of two and are compacted once
+ * most elements of the bucket were removed.
+ *
+ * <p>{@link #add(int)} and {@link #remove(int)} hold a reader slot of the bucket while modifying it, whereas
+ * {@link #contains(int)} never waits on other threads. Rehashing a bucket locks the bucket exclusively, much like
+ * {@link ConcurrentInt62Set} does while it is being resized. As the amount of buckets is fixed, it should be chosen
+ * in accordance with the amount of threads modifying the set.
+ *
+ * <h2>Iteration</h2>
+ *
+ * <p>Iterators are weakly consistent: every element that is neither added nor removed during the iteration is returned
+ * exactly once, while concurrently modified elements may or may not be returned. {@link IntIterator#hasNext()} reads
+ * the next element ahead of time, so {@link IntIterator#nextInt()} never fails after {@link IntIterator#hasNext()}
+ * returned true.
+ */
+public final class ConcurrentInt30Set extends AbstractIntSet {
+
+    /**
+     * A single bucket of the set. The array of the bucket is only replaced while the bucket is locked exclusively.
+     */
+    static final class Bucket extends ControlledBucket {
+        /**
+         * The slots of the bucket, or null if no slots were allocated for the bucket. Arrays that were replaced
+         * are never modified again.
+         */
+        volatile AtomicIntegerArray values;
+        volatile int size;
+        /**
+         * The amount of slots that are not {@link ConcurrentInt30Set#SLOT_EMPTY}, including tombstones.
+         */
+        volatile int fill;
+
+        Bucket(ControlledBucket.Contention contention) {
+            super(contention);
+        }
+    }
+
+    static final int CTRL_BIT_READ = 1 << 31;
+    static final int INT_30_BITS = (1 << 30) - 1;
+    /**
+     * Marker for a slot that was never written to since the bucket's array was allocated. Empty slots
+     * terminate the probe sequence of any element.
+     */
+    private static final int SLOT_EMPTY = 0;
+    /**
+     * Marker for a slot whose element was removed.
+     */
+    private static final int SLOT_TOMBSTONE = 1;
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_SIZE = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "size");
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_FILL = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "fill");
+
+    final Bucket[] buckets;
+    final HashMode hashMode;
+    final ControlledBucket.Contention contention = new ControlledBucket.Contention();
+    final ConcurrentInt62Set.SizeCounter counter = new ConcurrentInt62Set.SizeCounter();
+
+    /**
+     * Creates a set with 256 buckets using {@link HashMode#MIXED}.
+     */
+    public ConcurrentInt30Set() {
+        this(256);
+    }
+
+    /**
+     * Creates a set with a fixed amount of buckets using {@link HashMode#MIXED}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     */
+    public ConcurrentInt30Set(int bucketCount) {
+        this(bucketCount, HashMode.MIXED);
+    }
+
+    /**
+     * Creates a set with a fixed amount of buckets which maps elements to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     * @param hashMode The strategy used to map elements to buckets
+     */
+    public ConcurrentInt30Set(int bucketCount, HashMode hashMode) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+        }
+        this.hashMode = Objects.requireNonNull(hashMode, "hashMode may not be null");
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            this.buckets[i] = new Bucket(this.contention);
+        }
+    }
+
+    private Bucket bucketFor(int element) {
+        return this.buckets[this.hashMode.hash(element) & (this.buckets.length - 1)];
+    }
+
+    @Override
+    public boolean add(int element) {
+        if ((element & ~ConcurrentInt30Set.INT_30_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 30-bit unsigned integer: " + element);
+        }
+        int entry = element | ConcurrentInt30Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(element);
+        while (true) {
+            bucket.incrementCtrl();
+            AtomicIntegerArray values = bucket.values;
+            if (values == null) {
+                bucket.decrementCtrl();
+                this.rehash(bucket, null, ConcurrentInt62Set.capacityFor(0));
+                continue;
+            }
+            int length = values.length();
+            int mask = length - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            int probes = length;
+            boolean added = false;
+            while (probes != 0) {
+                int value = values.get(index);
+                if (value == entry) {
+                    break;
+                } else if (value == ConcurrentInt30Set.SLOT_EMPTY) {
+                    if (!values.compareAndSet(index, ConcurrentInt30Set.SLOT_EMPTY, entry)) {
+                        // Another thread claimed the slot first - it may have inserted the same element
+                        continue;
+                    }
+                    ConcurrentInt30Set.BUCKET_SIZE.incrementAndGet(bucket);
+                    ConcurrentInt30Set.BUCKET_FILL.incrementAndGet(bucket);
+                    added = true;
+                    break;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            bucket.decrementCtrl();
+            if (probes == 0) {
+                // Concurrent insertions exhausted all empty slots before the bucket could be rehashed
+                this.rehash(bucket, values, Math.max(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+                continue;
+            }
+            if (added) {
+                this.counter.add(1L);
+                if (bucket.fill > ConcurrentInt62Set.fillLimit(length)) {
+                    this.rehash(bucket, values, Math.max(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+                }
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public boolean remove(int element) {
+        if ((element & ~ConcurrentInt30Set.INT_30_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 30-bit unsigned integer: " + element);
+        }
+        int entry = element | ConcurrentInt30Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(element);
+        bucket.incrementCtrl();
+        AtomicIntegerArray values = bucket.values;
+        boolean removed = false;
+        if (values != null) {
+            int mask = values.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = values.length(); probes != 0; probes--) {
+                int value = values.get(index);
+                if (value == entry) {
+                    // A failed CAS means that the element was removed concurrently
+                    removed = values.compareAndSet(index, entry, ConcurrentInt30Set.SLOT_TOMBSTONE);
+                    break;
+                } else if (value == ConcurrentInt30Set.SLOT_EMPTY) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        if (removed) {
+            ConcurrentInt30Set.BUCKET_SIZE.decrementAndGet(bucket);
+        }
+        bucket.decrementCtrl();
+        if (removed) {
+            this.counter.add(-1L);
+            int length = values.length();
+            if (length > 16 && bucket.size < (length >>> ConcurrentInt62Set.SHRINK_LOAD_SHIFT)) {
+                this.rehash(bucket, values, Math.min(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The bucket of the element is read without obtaining a reader slot, as arrays that were replaced by a
+     * rehash are never modified again.
+     */
+    @Override
+    public boolean contains(int element) {
+        if ((element & ~ConcurrentInt30Set.INT_30_BITS) != 0) {
+            return false;
+        }
+        AtomicIntegerArray values = this.bucketFor(element).values;
+        if (values == null) {
+            return false;
+        }
+        int entry = element | ConcurrentInt30Set.CTRL_BIT_READ;
+        int mask = values.length() - 1;
+        int index = ConcurrentInt62Set.probeIndex(element, mask);
+        for (int probes = values.length(); probes != 0; probes--) {
+            int value = values.get(index);
+            if (value == entry) {
+                return true;
+            } else if (value == ConcurrentInt30Set.SLOT_EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Copies the elements of a bucket into a new array, dropping all tombstones. Empty buckets release their array
+     * altogether unless <code>capacity</code> calls for an array to be allocated. Does nothing if the array of the
+     * bucket was replaced in the meantime.
+     *
+     * @param bucket The bucket to rehash
+     * @param witness The array the bucket was observed to have
+     * @param capacity The amount of slots of the bucket after rehashing, or 0 to release the array of the bucket
+     */
+    private void rehash(Bucket bucket, AtomicIntegerArray witness, int capacity) {
+        synchronized (bucket) {
+            bucket.lockCtrl();
+            try {
+                if (bucket.values != witness) {
+                    return;
+                }
+                AtomicIntegerArray rehashed = null;
+                int fill = 0;
+                if (capacity != 0) {
+                    rehashed = new AtomicIntegerArray(capacity);
+                    int mask = capacity - 1;
+                    for (int i = 0, len = witness == null ? 0 : witness.length(); i < len; i++) {
+                        int value = witness.get(i);
+                        if ((value & ConcurrentInt30Set.CTRL_BIT_READ) == 0) {
+                            continue;
+                        }
+                        int index = ConcurrentInt62Set.probeIndex(value & ConcurrentInt30Set.INT_30_BITS, mask);
+                        while (rehashed.get(index) != ConcurrentInt30Set.SLOT_EMPTY) {
+                            index = (index + 1) & mask;
+                        }
+                        rehashed.set(index, value);
+                        fill++;
+                    }
+                }
+                bucket.fill = fill;
+                bucket.values = rehashed;
+            } finally {
+                bucket.unlockCtrl();
+            }
+        }
+    }
+
+    /**
+     * Compacts all buckets of the set, such that the memory used by each bucket corresponds to the amount of elements
+     * it holds. Buckets that are empty release their array altogether. Each bucket is exclusively locked while it is
+     * compacted.
+     */
+    public void trim() {
+        for (Bucket bucket : this.buckets) {
+            AtomicIntegerArray values = bucket.values;
+            int size = bucket.size;
+            if (values != null && (size == 0 || ConcurrentInt62Set.capacityFor(size) < values.length() || bucket.fill != size)) {
+                this.rehash(bucket, values, size == 0 ? 0 : Math.min(values.length(), ConcurrentInt62Set.capacityFor(size)));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : this.buckets) {
+            int size;
+            synchronized (bucket) {
+                bucket.lockCtrl();
+                size = bucket.size;
+                bucket.values = null;
+                bucket.size = 0;
+                bucket.fill = 0;
+                bucket.unlockCtrl();
+            }
+            this.counter.add(-size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(0L, this.counter.sum()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.counter.sum() <= 0L;
+    }
+
+    /**
+     * Obtains the amount of times a thread had to wait for a bucket to become available since the set was created.
+     *
+     * @return The amount of contended accesses
+     */
+    public long getContendedAccessCount() {
+        return this.contention.contended.sum();
+    }
+
+    @Override
+    public IntIterator iterator() {
+        return new IntIterator() {
+            private int bucketIndex;
+            private AtomicIntegerArray values;
+            private int index;
+            /**
+             * Whether {@link #nextValue} holds the element that is returned by the next call to {@link #nextInt()}.
+             */
+            private boolean hasNextValue;
+            private int nextValue;
+            private boolean hasLast;
+            private int lastValue;
+
+            @Override
+            public boolean hasNext() {
+                if (this.hasNextValue) {
+                    return true;
+                }
+                Bucket[] buckets = ConcurrentInt30Set.this.buckets;
+                while (true) {
+                    AtomicIntegerArray values = this.values;
+                    if (values != null) {
+                        for (int len = values.length(); this.index < len;) {
+                            int value = values.get(this.index++);
+                            if ((value & ConcurrentInt30Set.CTRL_BIT_READ) != 0) {
+                                this.nextValue = value & ConcurrentInt30Set.INT_30_BITS;
+                                return this.hasNextValue = true;
+                            }
+                        }
+                    }
+                    if (this.bucketIndex == buckets.length) {
+                        this.values = null;
+                        return false;
+                    }
+                    this.values = buckets[this.bucketIndex++].values;
+                    this.index = 0;
+                }
+            }
+
+            @Override
+            public int nextInt() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
+                }
+                this.hasNextValue = false;
+                this.hasLast = true;
+                return this.lastValue = this.nextValue;
+            }
+
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+
+                this.hasLast = false;
+                if (!ConcurrentInt30Set.this.remove(this.lastValue)) {
+                    throw new IllegalStateException("Element already removed.");
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,823 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.longs.AbstractLong2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongFunction;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent map from 62 bit <b>unsigned</b> integers to arbitrary longs. Neither keys nor values are boxed, so
+ * updating a counter through {@link #addTo(long, long)}, {@link #mergeLong(long, long, LongBinaryOperator)} or
+ * {@link #compareAndSet(long, long, long)} does not allocate any objects.
+ *
+ * <p>The layout of the map matches the layout of a {@link ConcurrentInt62Set} with a fixed amount of buckets: Each
+ * bucket is an open-addressed hash table using linear probing, where present keys are stored alongside the
+ * {@link ConcurrentInt62Set#CTRL_BIT_READ} bit. The values are stored in a parallel array, at the same index as their key.
+ * A new mapping is published by writing its value before its key. Removed keys leave a tombstone behind, which is only
+ * purged once the bucket is rehashed.
+ *
+ * <p>The value of a present key is updated by a single atomic operation on the value's slot while holding a reader
+ * slot of the bucket, much like elements are added to a {@link ConcurrentInt62Set}. Updates of present keys hence never
+ * wait on each other. Adding a key is serialized using the monitor of the bucket, while removing a key or rehashing a
+ * bucket additionally locks the bucket exclusively, so that no update of a value can be lost while its key is
+ * removed. Lookups such as {@link #get(long)} never wait on other threads.
+ *
+ * <p>{@link #mergeLong(long, long, LongBinaryOperator)}, {@link #compute(long, BiFunction)} and the methods
+ * built on top of them update present keys optimistically, which is why the passed function may be invoked
+ * multiple times if the value is updated concurrently. {@link #computeIfAbsent(long, LongUnaryOperator)} and
+ * the functions passed for absent keys in general are invoked at most once per key while the bucket is locked and
+ * must not add or remove keys of the map.
+ *
+ * <p>Absent keys are reported through the {@link #defaultReturnValue() default return value}, which is 0 unless
+ * specified otherwise. Iterators are weakly consistent and never fail.
+ *
+ * <p>Although {@link AbstractLong2LongMap} is {@link java.io.Serializable}, this map is not and refuses to be
+ * serialized.
+ */
+public final class ConcurrentInt62LongMap extends AbstractLong2LongMap {
+
+    /**
+     * The keys and values of a bucket. The arrays are replaced as a whole whenever the bucket is rehashed,
+     * after which the replaced arrays are never modified again.
+     */
+    static final class Slots {
+        final AtomicLongArray keys;
+        final AtomicLongArray values;
+
+        Slots(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicLongArray(capacity);
+        }
+
+        /**
+         * Obtains the index of the slot holding a key.
+         *
+         * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @return The index of the slot holding the key, or -1 if the key is absent
+         */
+        int indexOf(long entry) {
+            AtomicLongArray keys = this.keys;
+            int mask = keys.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+            for (int probes = keys.length(); probes != 0; probes--) {
+                long key = keys.get(index);
+                if (key == entry) {
+                    return index;
+                } else if (key == ConcurrentInt62Set.SLOT_EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A single bucket of the map. Values of present keys are updated while holding a reader slot of the bucket.
+     * Keys are only added while holding the monitor of the bucket, and only removed while additionally holding
+     * the exclusive lock of the bucket. All fields but {@link #slots} are guarded by the monitor of the bucket.
+     */
+    static final class Bucket extends ControlledBucket {
+        /**
+         * The keys and values of the bucket, or null if the bucket is empty.
+         */
+        volatile Slots slots;
+        int size;
+        /**
+         * The amount of slots that are not {@link ConcurrentInt62Set#SLOT_EMPTY}, including tombstones.
+         */
+        int fill;
+        /**
+         * Whether a function passed to one of the atomic operations of the map is currently being invoked by the thread
+         * holding the monitor of the bucket, in which case keys may neither be added to nor removed from the bucket.
+         */
+        boolean computing;
+
+        Bucket(ControlledBucket.Contention contention) {
+            super(contention);
+        }
+
+        /**
+         * Obtains the index of the slot holding a key within the current slots of the bucket.
+         *
+         * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @return The index of the slot holding the key, or -1 if the key is absent
+         */
+        int indexOf(long entry) {
+            Slots slots = this.slots;
+            return slots == null ? -1 : slots.indexOf(entry);
+        }
+
+        /**
+         * Inserts a key that is absent from the bucket, rehashing the bucket beforehand if needed. The caller
+         * must hold the monitor of the bucket.
+         *
+         * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @param value The value of the key
+         */
+        void insert(long entry, long value) {
+            if (this.computing) {
+                throw new IllegalStateException("Recursive update");
+            }
+            Slots slots = this.slots;
+            if (slots == null || this.fill >= ConcurrentInt62Set.fillLimit(slots.keys.length())) {
+                this.lockCtrl();
+                try {
+                    slots = this.rehash(ConcurrentInt62Set.capacityFor(this.size + 1));
+                } finally {
+                    this.unlockCtrl();
+                }
+            }
+            AtomicLongArray keys = slots.keys;
+            int mask = keys.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+            while (keys.get(index) != ConcurrentInt62Set.SLOT_EMPTY) {
+                index = (index + 1) & mask;
+            }
+            // The value needs to be visible before the key can be observed
+            slots.values.set(index, value);
+            keys.set(index, entry);
+            this.size++;
+            this.fill++;
+        }
+
+        /**
+         * Removes the key at a given slot, compacting the bucket if it holds few keys afterwards. The caller must hold
+         * the monitor as well as the exclusive lock of the bucket.
+         *
+         * @param index The index of the slot holding the key
+         */
+        void delete(int index) {
+            Slots slots = this.slots;
+            slots.keys.set(index, ConcurrentInt62LongMap.SLOT_TOMBSTONE);
+            int length = slots.keys.length();
+            if (--this.size == 0) {
+                this.slots = null;
+                this.fill = 0;
+            } else if (length > 16 && this.size < (length >>> ConcurrentInt62Set.SHRINK_LOAD_SHIFT)) {
+                this.rehash(ConcurrentInt62Set.capacityFor(this.size));
+            }
+        }
+
+        /**
+         * Copies the mappings of the bucket into new arrays, dropping all tombstones. The caller must hold the
+         * monitor as well as the exclusive lock of the bucket.
+         *
+         * @param capacity The amount of slots of the new arrays
+         * @return The new arrays of the bucket
+         */
+        private Slots rehash(int capacity) {
+            Slots rehashed = new Slots(capacity);
+            Slots slots = this.slots;
+            if (slots != null) {
+                int mask = capacity - 1;
+                for (int i = 0, len = slots.keys.length(); i < len; i++) {
+                    long entry = slots.keys.get(i);
+                    if ((entry & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                        continue;
+                    }
+                    int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+                    while (rehashed.keys.get(index) != ConcurrentInt62Set.SLOT_EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    rehashed.values.set(index, slots.values.get(i));
+                    rehashed.keys.set(index, entry);
+                }
+            }
+            this.fill = this.size;
+            this.slots = rehashed;
+            return rehashed;
+        }
+    }
+
+    /**
+     * An entry returned by the iterators of the map, which writes values set through {@link #setValue(long)}
+     * to the map.
+     */
+    private final class MapEntry extends AbstractLong2LongMap.BasicEntry {
+        MapEntry(long key, long value) {
+            super(key, value);
+        }
+
+        @Override
+        public long setValue(long value) {
+            long previous = ConcurrentInt62LongMap.this.put(this.key, value);
+            this.value = value;
+            return previous;
+        }
+    }
+
+    private final class EntryIterator implements ObjectIterator<Long2LongMap.Entry> {
+        private int bucketIndex;
+        private Slots slots;
+        private int slotIndex;
+        /**
+         * Whether {@link #nextKey} and {@link #nextValue} hold the mapping that is returned by the next call to
+         * {@link #next()}. The mapping is read as soon as its slot is found, so that concurrent removals cannot
+         * exhaust the iterator between {@link #hasNext()} and {@link #next()}.
+         */
+        private boolean hasNextEntry;
+        private long nextKey;
+        private long nextValue;
+        private boolean hasLast;
+        private long lastKey;
+
+        @Override
+        public boolean hasNext() {
+            if (this.hasNextEntry) {
+                return true;
+            }
+            Bucket[] buckets = ConcurrentInt62LongMap.this.buckets;
+            while (true) {
+                Slots slots = this.slots;
+                if (slots != null) {
+                    for (int len = slots.keys.length(); this.slotIndex < len;) {
+                        int index = this.slotIndex++;
+                        long entry = slots.keys.get(index);
+                        if ((entry & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                            this.nextKey = entry & ConcurrentInt62Set.INT_62_BITS;
+                            this.nextValue = slots.values.get(index);
+                            return this.hasNextEntry = true;
+                        }
+                    }
+                }
+                if (this.bucketIndex == buckets.length) {
+                    this.slots = null;
+                    return false;
+                }
+                this.slots = buckets[this.bucketIndex++].slots;
+                this.slotIndex = 0;
+            }
+        }
+
+        @Override
+        public Long2LongMap.Entry next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException("Iterator exhausted.");
+            }
+            this.hasNextEntry = false;
+            this.hasLast = true;
+            this.lastKey = this.nextKey;
+            return new MapEntry(this.nextKey, this.nextValue);
+        }
+
+        @Override
+        public void remove() {
+            if (!this.hasLast) {
+                throw new IllegalStateException("#next() has not been called!");
+            }
+            this.hasLast = false;
+            ConcurrentInt62LongMap.this.remove(this.lastKey);
+        }
+    }
+
+    /**
+     * Marker for a slot whose key was removed, see {@link ConcurrentInt62Set#SLOT_EMPTY}.
+     */
+    private static final long SLOT_TOMBSTONE = 1L;
+    private static final long serialVersionUID = 1L;
+
+    final Bucket[] buckets;
+    final HashMode hashMode;
+    final ControlledBucket.Contention contention = new ControlledBucket.Contention();
+    final ConcurrentInt62Set.SizeCounter counter = new ConcurrentInt62Set.SizeCounter();
+
+    /**
+     * Creates a map with 256 buckets using {@link HashMode#MIXED}.
+     */
+    public ConcurrentInt62LongMap() {
+        this(256);
+    }
+
+    /**
+     * Creates a map with a fixed amount of buckets using {@link HashMode#MIXED}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     */
+    public ConcurrentInt62LongMap(int bucketCount) {
+        this(bucketCount, HashMode.MIXED);
+    }
+
+    /**
+     * Creates a map with a fixed amount of buckets which maps keys to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     * @param hashMode The strategy used to map keys to buckets
+     */
+    public ConcurrentInt62LongMap(int bucketCount, HashMode hashMode) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+        }
+        this.hashMode = Objects.requireNonNull(hashMode, "hashMode may not be null");
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            this.buckets[i] = new Bucket(this.contention);
+        }
+    }
+
+    private static long entryFor(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input key is not a 62-bit unsigned integer: " + key);
+        }
+        return key | ConcurrentInt62Set.CTRL_BIT_READ;
+    }
+
+    private Bucket bucketFor(long key) {
+        return this.buckets[this.hashMode.hash(key) & (this.buckets.length - 1)];
+    }
+
+    /**
+     * Atomically sets the value of a key to <code>update</code> if the key is present and its value is
+     * <code>expect</code>. Absent keys are never added.
+     *
+     * @param key The key whose value should be updated
+     * @param expect The expected value of the key
+     * @param update The new value of the key
+     * @return True if the value was updated, false if the key is absent or its value differs from <code>expect</code>
+     */
+    public boolean compareAndSet(long key, long expect, long update) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        bucket.incrementCtrl();
+        try {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            return index >= 0 && slots.values.compareAndSet(index, expect, update);
+        } finally {
+            bucket.decrementCtrl();
+        }
+    }
+
+    /**
+     * Adds an increment to the value of a key. If the key is absent, it is added with the sum of the
+     * {@link #defaultReturnValue() default return value} and the increment as its value.
+     *
+     * @param key The key whose value should be incremented
+     * @param increment The amount to add to the value of the key
+     * @return The value of the key before it was incremented, or the default return value if the key was absent
+     */
+    public long addTo(long key, long increment) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Bucket bucket = this.bucketFor(key);
+        bucket.incrementCtrl();
+        try {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            if (index >= 0) {
+                return slots.values.getAndAdd(index, increment);
+            }
+        } finally {
+            bucket.decrementCtrl();
+        }
+        synchronized (bucket) {
+            // Keys cannot be removed while holding the monitor, but values may still be updated concurrently
+            int index = bucket.indexOf(entry);
+            if (index >= 0) {
+                return bucket.slots.values.getAndAdd(index, increment);
+            }
+            bucket.insert(entry, this.defRetValue + increment);
+        }
+        this.counter.add(1L);
+        return this.defRetValue;
+    }
+
+    @Override
+    public long put(long key, long value) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Bucket bucket = this.bucketFor(key);
+        bucket.incrementCtrl();
+        try {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            if (index >= 0) {
+                return slots.values.getAndSet(index, value);
+            }
+        } finally {
+            bucket.decrementCtrl();
+        }
+        synchronized (bucket) {
+            int index = bucket.indexOf(entry);
+            if (index >= 0) {
+                return bucket.slots.values.getAndSet(index, value);
+            }
+            bucket.insert(entry, value);
+        }
+        this.counter.add(1L);
+        return this.defRetValue;
+    }
+
+    @Override
+    public long putIfAbsent(long key, long value) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Bucket bucket = this.bucketFor(key);
+        Slots slots = bucket.slots;
+        int index = slots == null ? -1 : slots.indexOf(entry);
+        if (index >= 0) {
+            return slots.values.get(index);
+        }
+        synchronized (bucket) {
+            index = bucket.indexOf(entry);
+            if (index >= 0) {
+                return bucket.slots.values.get(index);
+            }
+            bucket.insert(entry, value);
+        }
+        this.counter.add(1L);
+        return this.defRetValue;
+    }
+
+    @Override
+    public long replace(long key, long value) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return this.defRetValue;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        bucket.incrementCtrl();
+        try {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            return index >= 0 ? slots.values.getAndSet(index, value) : this.defRetValue;
+        } finally {
+            bucket.decrementCtrl();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Equivalent to {@link #compareAndSet(long, long, long)}.
+     */
+    @Override
+    public boolean replace(long key, long oldValue, long newValue) {
+        return this.compareAndSet(key, oldValue, newValue);
+    }
+
+    @Override
+    public long get(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return this.defRetValue;
+        }
+        Slots slots = this.bucketFor(key).slots;
+        int index = slots == null ? -1 : slots.indexOf(key | ConcurrentInt62Set.CTRL_BIT_READ);
+        return index < 0 ? this.defRetValue : slots.values.get(index);
+    }
+
+    @Override
+    public long getOrDefault(long key, long defaultValue) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return defaultValue;
+        }
+        Slots slots = this.bucketFor(key).slots;
+        int index = slots == null ? -1 : slots.indexOf(key | ConcurrentInt62Set.CTRL_BIT_READ);
+        return index < 0 ? defaultValue : slots.values.get(index);
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        Slots slots = this.bucketFor(key).slots;
+        return slots != null && slots.indexOf(key | ConcurrentInt62Set.CTRL_BIT_READ) >= 0;
+    }
+
+    @Override
+    public long remove(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return this.defRetValue;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        long previous;
+        synchronized (bucket) {
+            if (bucket.computing) {
+                throw new IllegalStateException("Recursive update");
+            }
+            if (bucket.indexOf(entry) < 0) {
+                return this.defRetValue;
+            }
+            bucket.lockCtrl();
+            try {
+                int index = bucket.indexOf(entry);
+                previous = bucket.slots.values.get(index);
+                bucket.delete(index);
+            } finally {
+                bucket.unlockCtrl();
+            }
+        }
+        this.counter.add(-1L);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(long key, long value) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            if (bucket.computing) {
+                throw new IllegalStateException("Recursive update");
+            }
+            if (bucket.indexOf(entry) < 0) {
+                return false;
+            }
+            bucket.lockCtrl();
+            try {
+                int index = bucket.indexOf(entry);
+                if (bucket.slots.values.get(index) != value) {
+                    return false;
+                }
+                bucket.delete(index);
+            } finally {
+                bucket.unlockCtrl();
+            }
+        }
+        this.counter.add(-1L);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The value of a present key is replaced by a compare-and-set operation, so the remapping function may be
+     * invoked multiple times if the value is updated concurrently. Absent keys are added with the given value.
+     */
+    @Override
+    public long mergeLong(long key, long value, LongBinaryOperator remappingFunction) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        while (true) {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            if (index >= 0) {
+                long previous = slots.values.get(index);
+                long merged = remappingFunction.applyAsLong(previous, value);
+                if (this.compareAndSet(key, previous, merged)) {
+                    return merged;
+                }
+                continue;
+            }
+            synchronized (bucket) {
+                if (bucket.indexOf(entry) >= 0) {
+                    continue;
+                }
+                bucket.insert(entry, value);
+            }
+            this.counter.add(1L);
+            return value;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The mapping function is invoked at most once per absent key, while the bucket of the key is locked.
+     * Concurrent calls for the same key wait for the function to complete and return the computed value.
+     */
+    @Override
+    public long computeIfAbsent(long key, LongUnaryOperator mappingFunction) {
+        Objects.requireNonNull(mappingFunction, "mappingFunction may not be null");
+        return this.computeIfAbsent(key, (Long2LongFunction) mappingFunction::applyAsLong);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The mapping function is invoked at most once per absent key, while the bucket of the key is locked.
+     * Concurrent calls for the same key wait for the function to complete and return the computed value.
+     */
+    @Override
+    public long computeIfAbsent(long key, Long2LongFunction mappingFunction) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Objects.requireNonNull(mappingFunction, "mappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        Slots slots = bucket.slots;
+        int index = slots == null ? -1 : slots.indexOf(entry);
+        if (index >= 0) {
+            return slots.values.get(index);
+        }
+        long value;
+        synchronized (bucket) {
+            index = bucket.indexOf(entry);
+            if (index >= 0) {
+                return bucket.slots.values.get(index);
+            }
+            bucket.computing = true;
+            try {
+                if (!mappingFunction.containsKey(key)) {
+                    return this.defRetValue;
+                }
+                value = mappingFunction.get(key);
+            } finally {
+                bucket.computing = false;
+            }
+            bucket.insert(entry, value);
+        }
+        this.counter.add(1L);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The value of a present key is replaced by a compare-and-set operation, so the remapping function may be
+     * invoked multiple times if the value is updated concurrently. For absent keys, the function is invoked at most
+     * once while the bucket of the key is locked.
+     */
+    @Override
+    public long compute(long key, BiFunction<? super Long, ? super Long, ? extends Long> remappingFunction) {
+        long entry = ConcurrentInt62LongMap.entryFor(key);
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        while (true) {
+            Slots slots = bucket.slots;
+            int index = slots == null ? -1 : slots.indexOf(entry);
+            if (index >= 0) {
+                long previous = slots.values.get(index);
+                Long computed = remappingFunction.apply(key, previous);
+                if (computed != null) {
+                    if (this.compareAndSet(key, previous, computed)) {
+                        return computed;
+                    }
+                } else if (this.remove(key, previous)) {
+                    return this.defRetValue;
+                }
+                continue;
+            }
+            Long computed;
+            synchronized (bucket) {
+                if (bucket.indexOf(entry) >= 0) {
+                    continue;
+                }
+                bucket.computing = true;
+                try {
+                    computed = remappingFunction.apply(key, null);
+                } finally {
+                    bucket.computing = false;
+                }
+                if (computed == null) {
+                    return this.defRetValue;
+                }
+                bucket.insert(entry, computed);
+            }
+            this.counter.add(1L);
+            return computed;
+        }
+    }
+
+    @Override
+    public long computeIfPresent(long key, BiFunction<? super Long, ? super Long, ? extends Long> remappingFunction) {
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        return this.compute(key, (k, value) -> value == null ? null : remappingFunction.apply(k, value));
+    }
+
+    @Override
+    public long merge(long key, long value, BiFunction<? super Long, ? super Long, ? extends Long> remappingFunction) {
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        return this.compute(key, (k, previous) -> previous == null ? Long.valueOf(value) : remappingFunction.apply(previous, value));
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : this.buckets) {
+            int size;
+            synchronized (bucket) {
+                if (bucket.computing) {
+                    throw new IllegalStateException("Recursive update");
+                }
+                bucket.lockCtrl();
+                size = bucket.size;
+                bucket.slots = null;
+                bucket.size = 0;
+                bucket.fill = 0;
+                bucket.unlockCtrl();
+            }
+            this.counter.add(-size);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The amount of mappings is obtained without locking the map, and as such only reflects the amount of
+     * mappings at a single point in time if the map is not modified concurrently.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(0L, this.counter.sum()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.counter.sum() <= 0L;
+    }
+
+    /**
+     * Obtains the amount of times a thread had to wait for a bucket to become available since the map was created.
+     *
+     * @return The amount of contended accesses
+     */
+    public long getContendedAccessCount() {
+        return this.contention.contended.sum();
+    }
+
+    @Override
+    public ObjectSet<Long2LongMap.Entry> long2LongEntrySet() {
+        return new AbstractObjectSet<Long2LongMap.Entry>() {
+            @Override
+            public ObjectIterator<Long2LongMap.Entry> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentInt62LongMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                if (!(e.getKey() instanceof Long) || !(e.getValue() instanceof Long)) {
+                    return false;
+                }
+                long key = (Long) e.getKey();
+                return ConcurrentInt62LongMap.this.containsKey(key) && ConcurrentInt62LongMap.this.get(key) == (Long) e.getValue();
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return e.getKey() instanceof Long && e.getValue() instanceof Long
+                        && ConcurrentInt62LongMap.this.remove((long) (Long) e.getKey(), (long) (Long) e.getValue());
+            }
+
+            @Override
+            public void clear() {
+                ConcurrentInt62LongMap.this.clear();
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(ConcurrentInt62LongMap.class.getName());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+        throw new NotSerializableException(ConcurrentInt62LongMap.class.getName());
+    }
+}
@@ -0,0 +1,708 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectFunction;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent map whose keys are 62 bit <b>unsigned</b> integers. Keys are never boxed, so looking up, adding or
+ * removing mappings through the primitive methods of {@link Long2ObjectMap} does not allocate any objects.
+ *
+ * <p>The layout of the map matches the layout of a {@link ConcurrentInt62Set} with a fixed amount of buckets: Each
+ * bucket is an open-addressed hash table using linear probing, where present keys are stored alongside the
+ * {@link ConcurrentInt62Set#CTRL_BIT_READ} bit. The values are stored in a parallel array, at the same index as their key.
+ * A new mapping is published by writing its value before its key, so that any thread observing the key with the
+ * {@link ConcurrentInt62Set#CTRL_BIT_READ} bit also observes the value. Removed keys leave a tombstone behind, which is
+ * only purged once the bucket is rehashed. As slots are never reused before the bucket is rehashed into a new pair of
+ * arrays, lookups such as {@link #get(long)} and {@link #containsKey(long)} never wait on other threads.
+ *
+ * <p>Modifications of a bucket are serialized using the monitor of the bucket, comparable to how
+ * {@link java.util.concurrent.ConcurrentHashMap} locks its bins. Modifications of different buckets never
+ * wait on each other, which is why the amount of buckets should be chosen in accordance with the amount of
+ * threads modifying the map. {@link #putIfAbsent(long, Object)}, {@link #computeIfAbsent(long, LongFunction)},
+ * {@link #computeIfPresent(long, BiFunction)}, {@link #compute(long, BiFunction)}, {@link #merge(long, Object, BiFunction)},
+ * {@link #replace(long, Object)}, {@link #replace(long, Object, Object)} and {@link #remove(long, Object)} are performed
+ * atomically. Functions passed to these methods are invoked while the bucket is locked and hence should be short
+ * and must not modify the map.
+ *
+ * <p>The map does not support <code>null</code> values. Absent keys are reported through the
+ * {@link #defaultReturnValue() default return value}, which is <code>null</code> unless specified otherwise.
+ *
+ * <h2>Iteration</h2>
+ *
+ * <p>Iterators are weakly consistent: every mapping that is not modified during the iteration is returned exactly
+ * once, while concurrently modified mappings may or may not be returned. Iterators never fail, and
+ * {@link ObjectIterator#next()} never throws after {@link ObjectIterator#hasNext()} returned true. Setting the value
+ * of an entry returned by the iterator writes the value to the map.
+ *
+ * <p>Although {@link AbstractLong2ObjectMap} is {@link java.io.Serializable}, this map is not and refuses to be
+ * serialized.
+ */
+public final class ConcurrentInt62ObjectMap<V> extends AbstractLong2ObjectMap<V> {
+
+    /**
+     * The keys and values of a bucket. The arrays are replaced as a whole whenever the bucket is rehashed,
+     * after which the replaced arrays are never modified again.
+     */
+    static final class Slots {
+        final AtomicLongArray keys;
+        final AtomicReferenceArray<Object> values;
+
+        Slots(int capacity) {
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        /**
+         * Obtains the index of the slot holding a key.
+         *
+         * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @return The index of the slot holding the key, or -1 if the key is absent
+         */
+        int indexOf(long entry) {
+            AtomicLongArray keys = this.keys;
+            int mask = keys.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+            for (int probes = keys.length(); probes != 0; probes--) {
+                long key = keys.get(index);
+                if (key == entry) {
+                    return index;
+                } else if (key == ConcurrentInt62Set.SLOT_EMPTY) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A single bucket of the map. All fields but {@link #slots} are guarded by the monitor of the bucket.
+     */
+    static final class Bucket {
+        /**
+         * The keys and values of the bucket, or null if the bucket is empty.
+         */
+        volatile Slots slots;
+        int size;
+        /**
+         * The amount of slots that are not {@link ConcurrentInt62Set#SLOT_EMPTY}, including tombstones.
+         */
+        int fill;
+        /**
+         * Whether a function passed to one of the atomic operations of the map is currently being invoked by the thread
+         * holding the monitor of the bucket, in which case the bucket may not be modified.
+         */
+        boolean computing;
+
+        /**
+         * Inserts a key that is absent from the bucket, rehashing the bucket beforehand if needed. The caller
+         * must hold the monitor of the bucket.
+         *
+         * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @param value The value of the key
+         */
+        void insert(long entry, Object value) {
+            Slots slots = this.slots;
+            if (slots == null || this.fill >= ConcurrentInt62Set.fillLimit(slots.keys.length())) {
+                slots = this.rehash(ConcurrentInt62Set.capacityFor(this.size + 1));
+            }
+            AtomicLongArray keys = slots.keys;
+            int mask = keys.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+            while (keys.get(index) != ConcurrentInt62Set.SLOT_EMPTY) {
+                index = (index + 1) & mask;
+            }
+            // The value needs to be visible before the key can be observed
+            slots.values.set(index, value);
+            keys.set(index, entry);
+            this.size++;
+            this.fill++;
+        }
+
+        /**
+         * Removes the key at a given slot, compacting the bucket if it holds few keys afterwards. The caller must hold
+         * the monitor of the bucket.
+         *
+         * @param index The index of the slot holding the key
+         */
+        void delete(int index) {
+            Slots slots = this.slots;
+            slots.keys.set(index, ConcurrentInt62ObjectMap.SLOT_TOMBSTONE);
+            slots.values.set(index, null);
+            int length = slots.keys.length();
+            if (--this.size == 0) {
+                this.slots = null;
+                this.fill = 0;
+            } else if (length > 16 && this.size < (length >>> ConcurrentInt62Set.SHRINK_LOAD_SHIFT)) {
+                this.rehash(ConcurrentInt62Set.capacityFor(this.size));
+            }
+        }
+
+        /**
+         * Copies the mappings of the bucket into new arrays, dropping all tombstones. The caller must hold the
+         * monitor of the bucket.
+         *
+         * @param capacity The amount of slots of the new arrays
+         * @return The new arrays of the bucket
+         */
+        private Slots rehash(int capacity) {
+            Slots rehashed = new Slots(capacity);
+            Slots slots = this.slots;
+            if (slots != null) {
+                int mask = capacity - 1;
+                for (int i = 0, len = slots.keys.length(); i < len; i++) {
+                    long entry = slots.keys.get(i);
+                    if ((entry & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                        continue;
+                    }
+                    int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+                    while (rehashed.keys.get(index) != ConcurrentInt62Set.SLOT_EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    rehashed.values.set(index, slots.values.get(i));
+                    rehashed.keys.set(index, entry);
+                }
+            }
+            this.fill = this.size;
+            this.slots = rehashed;
+            return rehashed;
+        }
+    }
+
+    /**
+     * An entry returned by the iterators of the map, which writes values set through {@link #setValue(Object)}
+     * to the map.
+     */
+    private final class MapEntry extends AbstractLong2ObjectMap.BasicEntry<V> {
+        MapEntry(long key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = ConcurrentInt62ObjectMap.this.put(this.key, value);
+            this.value = value;
+            return previous;
+        }
+    }
+
+    private final class EntryIterator implements ObjectIterator<Long2ObjectMap.Entry<V>> {
+        private int bucketIndex;
+        private Slots slots;
+        private int slotIndex;
+        /**
+         * Whether {@link #nextKey} and {@link #nextValue} hold the mapping that is returned by the next call to
+         * {@link #next()}. The mapping is read as soon as its slot is found, so that concurrent removals cannot
+         * exhaust the iterator between {@link #hasNext()} and {@link #next()}.
+         */
+        private boolean hasNextEntry;
+        private long nextKey;
+        private Object nextValue;
+        private boolean hasLast;
+        private long lastKey;
+
+        @Override
+        public boolean hasNext() {
+            if (this.hasNextEntry) {
+                return true;
+            }
+            Bucket[] buckets = ConcurrentInt62ObjectMap.this.buckets;
+            while (true) {
+                Slots slots = this.slots;
+                if (slots != null) {
+                    for (int len = slots.keys.length(); this.slotIndex < len;) {
+                        int index = this.slotIndex++;
+                        long entry = slots.keys.get(index);
+                        if ((entry & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                            continue;
+                        }
+                        Object value = slots.values.get(index);
+                        if (value != null) {
+                            this.nextKey = entry & ConcurrentInt62Set.INT_62_BITS;
+                            this.nextValue = value;
+                            return this.hasNextEntry = true;
+                        }
+                    }
+                }
+                if (this.bucketIndex == buckets.length) {
+                    this.slots = null;
+                    return false;
+                }
+                this.slots = buckets[this.bucketIndex++].slots;
+                this.slotIndex = 0;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Long2ObjectMap.Entry<V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException("Iterator exhausted.");
+            }
+            this.hasNextEntry = false;
+            this.hasLast = true;
+            this.lastKey = this.nextKey;
+            Object value = this.nextValue;
+            this.nextValue = null;
+            return new MapEntry(this.nextKey, (V) value);
+        }
+
+        @Override
+        public void remove() {
+            if (!this.hasLast) {
+                throw new IllegalStateException("#next() has not been called!");
+            }
+            this.hasLast = false;
+            ConcurrentInt62ObjectMap.this.remove(this.lastKey);
+        }
+    }
+
+    /**
+     * Marker for a slot whose key was removed, see {@link ConcurrentInt62Set#SLOT_EMPTY}.
+     */
+    private static final long SLOT_TOMBSTONE = 1L;
+    private static final long serialVersionUID = 1L;
+
+    final Bucket[] buckets;
+    final HashMode hashMode;
+    final ConcurrentInt62Set.SizeCounter counter = new ConcurrentInt62Set.SizeCounter();
+
+    /**
+     * Creates a map with 256 buckets using {@link HashMode#MIXED}.
+     */
+    public ConcurrentInt62ObjectMap() {
+        this(256);
+    }
+
+    /**
+     * Creates a map with a fixed amount of buckets using {@link HashMode#MIXED}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     */
+    public ConcurrentInt62ObjectMap(int bucketCount) {
+        this(bucketCount, HashMode.MIXED);
+    }
+
+    /**
+     * Creates a map with a fixed amount of buckets which maps keys to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     * @param hashMode The strategy used to map keys to buckets
+     */
+    public ConcurrentInt62ObjectMap(int bucketCount, HashMode hashMode) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+        }
+        this.hashMode = Objects.requireNonNull(hashMode, "hashMode may not be null");
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            this.buckets[i] = new Bucket();
+        }
+    }
+
+    private static long entryFor(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input key is not a 62-bit unsigned integer: " + key);
+        }
+        return key | ConcurrentInt62Set.CTRL_BIT_READ;
+    }
+
+    private Bucket bucketFor(long key) {
+        return this.buckets[this.hashMode.hash(key) & (this.buckets.length - 1)];
+    }
+
+    /**
+     * Obtains the value of a key without waiting on other threads.
+     *
+     * @param key The key to look up
+     * @return The value of the key, or null if the key is absent
+     */
+    private Object lookup(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return null;
+        }
+        Slots slots = this.bucketFor(key).slots;
+        if (slots == null) {
+            return null;
+        }
+        int index = slots.indexOf(key | ConcurrentInt62Set.CTRL_BIT_READ);
+        // The value is null if the key was removed after the key was read
+        return index < 0 ? null : slots.values.get(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V orDefault(Object value) {
+        return value == null ? this.defRetValue : (V) value;
+    }
+
+    /**
+     * Writes the new value of a key to a bucket, inserting or removing the key if required. The caller must hold the
+     * monitor of the bucket.
+     *
+     * @param bucket The bucket of the key
+     * @param index The index of the slot holding the key, or -1 if the key is absent
+     * @param entry The key alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+     * @param value The new value of the key, or null to remove the key
+     */
+    private void store(Bucket bucket, int index, long entry, Object value) {
+        if (bucket.computing) {
+            throw new IllegalStateException("Recursive update");
+        }
+        if (value == null) {
+            if (index >= 0) {
+                bucket.delete(index);
+                this.counter.add(-1L);
+            }
+        } else if (index < 0) {
+            bucket.insert(entry, value);
+            this.counter.add(1L);
+        } else {
+            bucket.slots.values.set(index, value);
+        }
+    }
+
+    private static int indexOf(Bucket bucket, long entry) {
+        Slots slots = bucket.slots;
+        return slots == null ? -1 : slots.indexOf(entry);
+    }
+
+    @Override
+    public V get(long key) {
+        return this.orDefault(this.lookup(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        Object value = this.lookup(key);
+        return value == null ? defaultValue : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        return this.lookup(key) != null;
+    }
+
+    @Override
+    public V put(long key, V value) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(value, "value may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            Object previous = index < 0 ? null : bucket.slots.values.get(index);
+            this.store(bucket, index, entry, value);
+            return this.orDefault(previous);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(value, "value may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index >= 0) {
+                return this.orDefault(bucket.slots.values.get(index));
+            }
+            this.store(bucket, index, entry, value);
+            return this.defRetValue;
+        }
+    }
+
+    @Override
+    public V remove(long key) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return this.defRetValue;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index < 0) {
+                return this.defRetValue;
+            }
+            Object previous = bucket.slots.values.get(index);
+            this.store(bucket, index, entry, null);
+            return this.orDefault(previous);
+        }
+    }
+
+    @Override
+    public boolean remove(long key, Object value) {
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0 || value == null) {
+            return false;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index < 0 || !value.equals(bucket.slots.values.get(index))) {
+                return false;
+            }
+            this.store(bucket, index, entry, null);
+            return true;
+        }
+    }
+
+    @Override
+    public V replace(long key, V value) {
+        Objects.requireNonNull(value, "value may not be null");
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return this.defRetValue;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index < 0) {
+                return this.defRetValue;
+            }
+            Object previous = bucket.slots.values.get(index);
+            this.store(bucket, index, entry, value);
+            return this.orDefault(previous);
+        }
+    }
+
+    @Override
+    public boolean replace(long key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue, "newValue may not be null");
+        if ((key & ~ConcurrentInt62Set.INT_62_BITS) != 0 || oldValue == null) {
+            return false;
+        }
+        long entry = key | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index < 0 || !oldValue.equals(bucket.slots.values.get(index))) {
+                return false;
+            }
+            this.store(bucket, index, entry, newValue);
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The mapping function is invoked at most once per absent key, while the bucket of the key is locked.
+     * Concurrent calls for the same key wait for the function to complete and return the computed value.
+     */
+    @Override
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(mappingFunction, "mappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index >= 0) {
+                return this.orDefault(bucket.slots.values.get(index));
+            }
+            V value;
+            bucket.computing = true;
+            try {
+                value = mappingFunction.apply(key);
+            } finally {
+                bucket.computing = false;
+            }
+            this.store(bucket, index, entry, value);
+            return this.orDefault(value);
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(long key, Long2ObjectFunction<? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction, "mappingFunction may not be null");
+        return this.computeIfAbsent(key, (LongFunction<? extends V>) k -> mappingFunction.containsKey(k) ? mappingFunction.get(k) : null);
+    }
+
+    @Override
+    public V computeIfPresent(long key, BiFunction<? super Long, ? super V, ? extends V> remappingFunction) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            if (index < 0) {
+                return this.defRetValue;
+            }
+            V value;
+            bucket.computing = true;
+            try {
+                value = remappingFunction.apply(key, this.orDefault(bucket.slots.values.get(index)));
+            } finally {
+                bucket.computing = false;
+            }
+            this.store(bucket, index, entry, value);
+            return this.orDefault(value);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V compute(long key, BiFunction<? super Long, ? super V, ? extends V> remappingFunction) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            V value;
+            bucket.computing = true;
+            try {
+                value = remappingFunction.apply(key, index < 0 ? null : (V) bucket.slots.values.get(index));
+            } finally {
+                bucket.computing = false;
+            }
+            this.store(bucket, index, entry, value);
+            return this.orDefault(value);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V merge(long key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        long entry = ConcurrentInt62ObjectMap.entryFor(key);
+        Objects.requireNonNull(value, "value may not be null");
+        Objects.requireNonNull(remappingFunction, "remappingFunction may not be null");
+        Bucket bucket = this.bucketFor(key);
+        synchronized (bucket) {
+            int index = ConcurrentInt62ObjectMap.indexOf(bucket, entry);
+            V merged = value;
+            if (index >= 0) {
+                bucket.computing = true;
+                try {
+                    merged = remappingFunction.apply((V) bucket.slots.values.get(index), value);
+                } finally {
+                    bucket.computing = false;
+                }
+            }
+            this.store(bucket, index, entry, merged);
+            return this.orDefault(merged);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : this.buckets) {
+            synchronized (bucket) {
+                if (bucket.computing) {
+                    throw new IllegalStateException("Recursive update");
+                }
+                this.counter.add(-bucket.size);
+                bucket.slots = null;
+                bucket.size = 0;
+                bucket.fill = 0;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The amount of mappings is obtained without locking the map, and as such only reflects the amount of
+     * mappings at a single point in time if the map is not modified concurrently.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(0L, this.counter.sum()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.counter.sum() <= 0L;
+    }
+
+    @Override
+    public ObjectSet<Long2ObjectMap.Entry<V>> long2ObjectEntrySet() {
+        return new AbstractObjectSet<Long2ObjectMap.Entry<V>>() {
+            @Override
+            public ObjectIterator<Long2ObjectMap.Entry<V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return ConcurrentInt62ObjectMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                if (!(e.getKey() instanceof Long) || e.getValue() == null) {
+                    return false;
+                }
+                return e.getValue().equals(ConcurrentInt62ObjectMap.this.lookup((Long) e.getKey()));
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry)) {
+                    return false;
+                }
+                Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+                return e.getKey() instanceof Long && ConcurrentInt62ObjectMap.this.remove((long) (Long) e.getKey(), e.getValue());
+            }
+
+            @Override
+            public void clear() {
+                ConcurrentInt62ObjectMap.this.clear();
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        throw new NotSerializableException(ConcurrentInt62ObjectMap.class.getName());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException {
+        throw new NotSerializableException(ConcurrentInt62ObjectMap.class.getName());
+    }
+}
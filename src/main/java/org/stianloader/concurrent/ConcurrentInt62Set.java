@@ -24,18 +24,39 @@
 */
 package org.stianloader.concurrent;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
 
 import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.longs.LongSets;
+import it.unimi.dsi.fastutil.longs.LongSpliterator;
 
 /**
  * <h2>Description</h2>
@@ -43,13 +64,21 @@ import it.unimi.dsi.fastutil.longs.LongSets;
  * A concurrent set for 62 bit <b>unsigned</b> integers, that is all integers between 0 and 1L &lt;&lt; 62 - 1
  * (or 0x3FFF_FFFF_FFFF_FFFF). The two remaining bits are used for access control logic.
  * 
- * <p>This set supports high level of concurrency similar that of {@link ConcurrentHashMap}, however unlike {@link ConcurrentHashMap}
+ * <p>This set supports high level of concurrency similar that of {@link ConcurrentHashMap}. By default
  * {@link ConcurrentInt62Set} does not support resizing the amounts of buckets. Performance of this map degrades
- * if too few buckets are used for too many elements. The size of each bucket increases exponentially in factors of two
- * with a starting size of 16 elements. All buckets are initialized eagerly, that is either at creation time
- * or when {@link #clear()} is invoked. <b>Buckets cannot be shrunk down after expanding to a certain size. Only
- * {@link #clear()} (or discarding the set itself) would cause the allocated memory to be freed. The amount of buckets
- * is defined from the start and cannot be changed later on. For performance reasons, it must be a power of two.</b>
+ * if too few buckets are used for too many elements. Sets created via {@link #ConcurrentInt62Set()} or
+ * {@link #ConcurrentInt62Set(int, boolean)} however double their amount of buckets whenever a single bucket holds too
+ * many elements. Much like with {@link ConcurrentHashMap}, the buckets are then transferred to the larger table
+ * in batches, where threads that modify the set while it is being resized assist with the transfer. Operations on
+ * buckets that were already transferred are forwarded to the larger table, so the set remains fully usable
+ * throughout the resize. Each bucket is an open-addressed hash table using linear probing,
+ * meaning that lookups within a bucket run in expected constant time regardless of how large the bucket has grown.
+ * The size of each bucket increases exponentially in factors of two with a starting size of 16 slots. Buckets are
+ * allocated lazily once the first element is added to them, so a sparsely populated set only pays for the top-level
+ * table of buckets. Once most elements of a bucket were removed, the bucket is compacted down to a size that suits
+ * the remaining elements. Explicitly calling {@link #trim()} compacts all buckets and releases the memory held by empty
+ * buckets. <b>Unless the set is resizable, the amount of buckets is defined from the start and cannot be changed later on.
+ * For performance reasons, it must be a power of two.</b>
  *
  * <h2>Atomicity of method calls</h2>
  *
@@ -62,33 +91,51 @@ import it.unimi.dsi.fastutil.longs.LongSets;
  * or similar.
  *
  * <p>Even though {@link #add(long)} and {@link #remove(long)} are considered atomic, they are not guaranteed to be
- * non-blocking. During a resizing operation, a thread may need to wait on other threads in order to gain exclusive
- * control over a bucket's internal array. Conversely, once the lock has been acquired, other threads will need to wait
+ * non-blocking. Growing the internal array of a bucket does not block, as the elements of the bucket are migrated
+ * into the larger array incrementally by the threads modifying the bucket, while {@link #contains(long)} never waits
+ * for the migration to complete. However, while the set is resized or a bucket is compacted, a thread may need to wait
+ * on other threads in order to gain exclusive control over a bucket's internal array. Conversely, once the lock has been acquired, other threads will need to wait
  * until the lock has been relinquished. This behaviour is required in order to guarantee that the effects of
  * {@link #add(long)} and {@link #remove(long)} persist even across a resize. To reduce the likelihood of this occurring,
- * a larger amount of buckets may need to be used. <b>To expand on this it may be beneficial to redistribute the bits
- * of the longs so that the least significant bits are less frequent to occur in a given combination. This is especially
- * beneficial when storing values that are aligned (for example address values that might frequently be only multiples
- * of 4, 8 or another value), as this will necessarily cause some buckets to be empty</b>.
+ * a larger amount of buckets may need to be used. Waiting threads spin for a short while before parking until the bucket
+ * becomes available again, the frequency of which can be monitored via {@link #getContendedAccessCount()} and
+ * {@link #getParkCount()}. <b>To expand on this, sets using {@link HashMode#LOCALITY} may benefit
+ * from redistributing the bits of the longs so that the least significant bits are less frequent to occur in a given
+ * combination. This is especially beneficial when storing values that are aligned (for example address values that might
+ * frequently be only multiples of 4, 8 or another value), as this will necessarily cause some buckets to be empty</b>.
  *
  * <h2>Iteration</h2>
  *
  * <p>Multiple iterators are supported at the same time. Furthermore, this set implementation also supports modification
- * of the set without causing the iterators to fail - except if the modification would cause the iterator to be exhausted.
- * However, as iterators do not represent an atomic snapshot (or any snapshot at all for that matter) it is possible
- * that underlying changes may improperly reflect on the iteration results.
- * That is an {@link Iterator#next()} call can fail even though {@link Iterator#hasNext()} has been called beforehand
- * as a {@link LongSet#remove(long)} operation which was called in between hasNext and next caused the iterator to be
- * exhausted. Extreme care should be taken when using Iterators in concurrent environments involving additions to the
- * set coupled with removals.
+ * of the set without causing the iterators to fail. However, as iterators do not represent an atomic snapshot (or any
+ * snapshot at all for that matter) it is possible that underlying changes may improperly reflect on the iteration results.
+ * Iterators are weakly consistent: every element that is neither added nor removed during the iteration is returned
+ * exactly once, while concurrently modified elements may or may not be returned. {@link Iterator#hasNext()} reads the
+ * next element ahead of time, so {@link Iterator#next()} never fails after {@link Iterator#hasNext()} returned true,
+ * even if the element was removed in the meantime.
+ *
+ * <p>Where elements of the same bucket need to be observed as of a single point in time, {@link #snapshotIterator()}
+ * copies each bucket while briefly locking it and {@link #snapshot()} copies the entire set in the same way.
+ * {@link #sortedIterator()} and {@link #toSortedLongArray()} return the elements in ascending order by merging the
+ * individually sorted buckets of the set.
+ *
+ * <p>The {@link #spliterator() spliterator} of the set splits the table of buckets into ranges of buckets, allowing
+ * parallel streams to traverse the set using all available processors. Spliterators are weakly consistent in the same
+ * way as the iterators are, but never fail. Similarly to {@link ConcurrentHashMap}, the bulk operations
+ * {@link #forEach(long, LongConsumer)}, {@link #reduceToLong(long, LongUnaryOperator, long, LongBinaryOperator)}
+ * and {@link #search(long, LongPredicate)} traverse the set in parallel using the {@link ForkJoinPool#commonPool()}
+ * once the set holds more elements than a given parallelism threshold.
  *
  * <h2>Important non-features</h2>
  *
  * <p><b>This set does not implement {@link #hashCode()} and {@link #equals(Object)}. Should these methods be required nonetheless
  * a wrapper may be appropriate.</b>
  *
- * <p>This set expects that values are distributed evenly and randomly. More specifically, the bucket for any given value
- * is <code>((value &amp; 0xFFFF) ^ (value &gt;&gt; 32)) &amp; (bucketCount - 1)</code>. This contrasts collections such as
+ * <p>By default, the bucket of a value is obtained by applying the finalizer of the 64-bit murmur3 hash function
+ * ({@link HashMode#MIXED}), so that the buckets are used uniformly regardless of how the values are aligned.
+ * Sets created with {@link HashMode#LOCALITY} however expect that values are distributed evenly and randomly.
+ * More specifically, the bucket for any given value is
+ * <code>((value &amp; 0xFFFF_FFFF) ^ (value &gt;&gt; 32)) &amp; (bucketCount - 1)</code>. This contrasts collections such as
  * {@link ConcurrentHashMap} where the value to bucket mapping appears a bit more random. more specifically, this causes
  * issues when values inserted into the collection are guaranteed to be multiples of 2, 4, 8 or 16 (and further), as
  * the buckets will not be used efficiently, causing lookup and mutation times to increase larger than usually.
@@ -97,197 +144,2522 @@ import it.unimi.dsi.fastutil.longs.LongSets;
  */
 public final class ConcurrentInt62Set implements LongSet {
 
-    final Bucket[] buckets;
-    final int bucketCount;
+    /**
+     * The strategies for mapping elements to the buckets of a {@link ConcurrentInt62Set}.
+     */
+    public static enum HashMode {
+        /**
+         * Obtains the bucket of an element by XOR-ing the upper and the lower 32 bits of the element.
+         * Elements that only differ in their least significant bits are thus spread across neighbouring buckets,
+         * but elements that are multiples of a power of two leave a large portion of the buckets empty.
+         */
+        LOCALITY {
+            @Override
+            int hash(long element) {
+                return (int) ((element & ConcurrentInt62Set.INT_32_BITS) ^ (element >> 32));
+            }
+        },
+        /**
+         * Obtains the bucket of an element by applying the finalizer of the 64-bit murmur3 hash function,
+         * so that every bit of the element affects the bucket the element is stored in. The buckets are
+         * used uniformly regardless of how the elements are aligned.
+         */
+        MIXED {
+            @Override
+            int hash(long element) {
+                element ^= element >>> 33;
+                element *= 0xFF51_AFD7_ED55_8CCDL;
+                element ^= element >>> 33;
+                element *= 0xC4CE_B9FE_1A85_EC53L;
+                element ^= element >>> 33;
+                return (int) element;
+            }
+        };
+
+        abstract int hash(long element);
+    }
+
+    /**
+     * The table that is currently in use. For resizable sets, this table is replaced by {@link Table#next}
+     * once all buckets have been transferred to the latter.
+     */
+    volatile Table table;
+    final int initialBucketCount;
+    final boolean resizable;
+    final HashMode hashMode;
+    /**
+     * The contention statistics of the set, which are shared by all tables of the set and persist across {@link #clear()}.
+     */
+    final ControlledBucket.Contention contention = new ControlledBucket.Contention();
+
+    static final long CTRL_BIT_READ = 1L << 63;
+    /**
+     * Set alongside the {@link #CTRL_BIT_READ} bit on elements that were frozen by a {@link Migration}. Without the
+     * {@link #CTRL_BIT_READ} bit, the bit marks a tombstone that is left behind by a removed element. Tombstones retain
+     * the removed element so that a migration never copies an element that was already copied and removed again.
+     */
+    private static final long CTRL_BIT_MARK = 1L << 62;
+    private static final long CTRL_BITS = ConcurrentInt62Set.CTRL_BIT_READ | ConcurrentInt62Set.CTRL_BIT_MARK;
+    private static final long INT_32_BITS = 0xFFFF_FFFFL;
+    private static final long INT_63_BITS = ~ConcurrentInt62Set.CTRL_BIT_READ;
+    static final long INT_62_BITS = ConcurrentInt62Set.INT_63_BITS & ~(1L << 62);
+    /**
+     * Marker for a slot that was never written to since the bucket's array was allocated. Empty slots
+     * terminate the probe sequence of any element.
+     */
+    static final long SLOT_EMPTY = 0L;
+    /**
+     * Marker for a slot that was empty when it was frozen by a {@link Migration}. Operations reaching such a
+     * slot continue within the target array of the migration.
+     */
+    private static final long SLOT_MOVED_EMPTY = 1L;
+    /**
+     * Marker for a slot that held a tombstone when it was frozen by a {@link Migration}. Tombstones are never
+     * reused and are only purged once the bucket's array is migrated or compacted.
+     */
+    private static final long SLOT_MOVED_TOMBSTONE = 2L;
+    private static final long FIBONACCI_MULTIPLIER = 0x9E37_79B9_7F4A_7C15L;
+    /**
+     * The average amount of elements per bucket at which a resizable set doubles the amount of buckets.
+     */
+    private static final int RESIZE_LOAD = 32;
+    private static final int MAXIMUM_BUCKET_COUNT = 1 << 30;
+    /**
+     * The minimum amount of buckets a thread claims at once while transferring a table to its successor.
+     */
+    private static final int MIN_TRANSFER_STRIDE = 16;
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+    /**
+     * The minimum amount of elements a batch must have for it to be applied to the buckets in parallel.
+     */
+    private static final int PARALLEL_BATCH_THRESHOLD = 1 << 16;
+    /**
+     * The maximum amount of elements a subtask applying a batch in parallel is responsible for before it is split.
+     */
+    private static final int BATCH_SPLIT_SIZE = 1 << 13;
+    /**
+     * The fraction (as a right shift) of a bucket's array that may at most be occupied by elements for the
+     * bucket to be compacted automatically after a removal. A value of 3 corresponds to a load of 12.5%.
+     */
+    static final int SHRINK_LOAD_SHIFT = 3;
+    /**
+     * The amount of slots a thread claims at once while migrating a bucket's array into a larger array.
+     */
+    private static final int MIGRATION_STRIDE = 64;
+    /**
+     * The magic number identifying a set written by {@link #writeTo(WritableByteChannel)}.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x4349_3653;
+    private static final byte SNAPSHOT_VERSION = 1;
+    /**
+     * The size of the buffers used for writing and reading snapshots.
+     */
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+    /**
+     * The maximum amount of bytes a single variable-length encoded 63-bit value occupies.
+     */
+    private static final int VARINT_MAX_BYTES = 9;
+    static final AtomicReferenceFieldUpdater<ConcurrentInt62Set, Table> TABLE = AtomicReferenceFieldUpdater.newUpdater(ConcurrentInt62Set.class, Table.class, "table");
+    static final AtomicReferenceFieldUpdater<Table, Table> TABLE_NEXT = AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+    static final AtomicIntegerFieldUpdater<Table> TABLE_TRANSFER_INDEX = AtomicIntegerFieldUpdater.newUpdater(Table.class, "transferIndex");
+    static final AtomicIntegerFieldUpdater<Table> TABLE_TRANSFERRED = AtomicIntegerFieldUpdater.newUpdater(Table.class, "transferred");
+    static final AtomicLongFieldUpdater<SizeCounter> COUNTER_BASE = AtomicLongFieldUpdater.newUpdater(SizeCounter.class, "base");
+    static final AtomicLongFieldUpdater<SizeCounter.Cell> COUNTER_CELL_VALUE = AtomicLongFieldUpdater.newUpdater(SizeCounter.Cell.class, "value");
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_SIZE = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "size");
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_FILL = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "fill");
+    static final AtomicReferenceFieldUpdater<Bucket, AtomicLongArray> BUCKET_VALUES = AtomicReferenceFieldUpdater.newUpdater(Bucket.class, AtomicLongArray.class, "values");
+    static final AtomicReferenceFieldUpdater<Bucket, Migration> BUCKET_MIGRATION = AtomicReferenceFieldUpdater.newUpdater(Bucket.class, Migration.class, "migration");
+    static final AtomicIntegerFieldUpdater<Migration> MIGRATION_CLAIM_INDEX = AtomicIntegerFieldUpdater.newUpdater(Migration.class, "claimIndex");
+    static final AtomicIntegerFieldUpdater<Migration> MIGRATION_MIGRATED = AtomicIntegerFieldUpdater.newUpdater(Migration.class, "migrated");
+    static final AtomicIntegerFieldUpdater<Migration> MIGRATION_FILL = AtomicIntegerFieldUpdater.newUpdater(Migration.class, "fill");
+
+    /**
+     * Obtains the slot within a bucket's array at which the probe sequence for a given element starts.
+     * The bits used by the {@link HashMode} are shared by all elements of a bucket, which is why the upper
+     * half of a fibonacci hash of the element is used instead.
+     *
+     * @param element The element to locate
+     * @param mask The length of the bucket's array minus one
+     * @return The index of the first slot to probe
+     */
+    static int probeIndex(long element, int mask) {
+        return (int) ((element * ConcurrentInt62Set.FIBONACCI_MULTIPLIER) >>> 32) & mask;
+    }
+
+    /**
+     * Obtains the maximum amount of non-empty slots (that is elements as well as tombstones) a bucket's
+     * array may hold before it gets rehashed. This corresponds to a load factor of 0.75.
+     *
+     * @param length The length of the bucket's array
+     * @return The maximum amount of used slots
+     */
+    static int fillLimit(int length) {
+        return length - (length >>> 2);
+    }
+
+    /**
+     * Obtains the length of a bucket's array that is suitable for holding a given amount of elements
+     * without requiring an immediate rehash.
+     *
+     * @param count The amount of elements
+     * @return The length of the array
+     */
+    static int capacityFor(int count) {
+        int length = 16;
+        while (count >= (ConcurrentInt62Set.fillLimit(length) >> 1)) {
+            length <<= 1;
+        }
+        return length;
+    }
+
+    /**
+     * Inserts a readable entry into a bucket's array that is not yet visible to other threads.
+     * The array must not contain the entry already and must have at least one empty slot.
+     *
+     * @param values The array to insert the entry into
+     * @param entry The element alongside the {@link #CTRL_BIT_READ} bit
+     */
+    private static void insertUnsynchronized(AtomicLongArray values, long entry) {
+        int mask = values.length() - 1;
+        int index = ConcurrentInt62Set.probeIndex(entry & ConcurrentInt62Set.INT_62_BITS, mask);
+        while (values.get(index) != ConcurrentInt62Set.SLOT_EMPTY) {
+            index = (index + 1) & mask;
+        }
+        values.set(index, entry);
+    }
+
+    /**
+     * Checks whether a slot of a bucket's array was frozen by a {@link Migration}.
+     *
+     * @param value The value of the slot
+     * @return True if the slot can no longer be modified
+     */
+    private static boolean isMoved(long value) {
+        return (value & ConcurrentInt62Set.CTRL_BITS) == ConcurrentInt62Set.CTRL_BITS
+                || value == ConcurrentInt62Set.SLOT_MOVED_EMPTY
+                || value == ConcurrentInt62Set.SLOT_MOVED_TOMBSTONE;
+    }
+
+    /**
+     * Looks up an element within a bucket's array.
+     *
+     * @param values The bucket's array
+     * @param element The element to look up
+     * @return 1 if the element is present, 0 if it is absent, {@link Bucket#INSERT_FULL} if the array was probed
+     * exhaustively or {@link Bucket#PROBE_MOVED} or {@link Bucket#PROBE_MOVED_ELEMENT} if the element needs to be
+     * looked up within the target array of the migration of the array
+     */
+    private static int find(AtomicLongArray values, long element) {
+        long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+        int mask = values.length() - 1;
+        int index = ConcurrentInt62Set.probeIndex(element, mask);
+        for (int probes = values.length(); probes != 0; probes--) {
+            long value = values.get(index);
+            if (value == entry) {
+                return 1;
+            } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                return 0;
+            } else if (value == ConcurrentInt62Set.SLOT_MOVED_EMPTY) {
+                return Bucket.PROBE_MOVED;
+            } else if (value == (entry | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                return Bucket.PROBE_MOVED_ELEMENT;
+            }
+            index = (index + 1) & mask;
+        }
+        return Bucket.INSERT_FULL;
+    }
+
+    /**
+     * Performs an action for each element within a section of a bucket's array.
+     *
+     * @param values The bucket's array
+     * @param from The index of the first slot to visit
+     * @param action The action to perform for each element
+     */
+    private static void forEachInArray(AtomicLongArray values, int from, LongConsumer action) {
+        for (int i = from, len = values.length(); i < len; i++) {
+            long value = values.get(i);
+            if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                action.accept(value & ConcurrentInt62Set.INT_62_BITS);
+            }
+        }
+    }
+
+    /**
+     * Groups a range of elements by the bucket of a table they map to using a counting sort.
+     *
+     * @param table The table whose buckets the elements are grouped by
+     * @param elements The elements to group
+     * @param offset The index of the first element to group
+     * @param length The amount of elements to group
+     * @param grouped The array the grouped elements are written to, which must have a length of exactly <code>length</code>
+     * @return The index within <code>grouped</code> at which the elements of each bucket start
+     */
+    private static int[] groupByBucket(Table table, long[] elements, int offset, int length, long[] grouped) {
+        int[] starts = new int[table.buckets.length()];
+        int[] indices = new int[length];
+        for (int i = 0; i < length; i++) {
+            starts[indices[i] = table.indexFor(elements[offset + i])]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        for (int i = length; i-- != 0;) {
+            grouped[--starts[indices[i]]] = elements[offset + i];
+        }
+        return starts;
+    }
+
+    /**
+     * Adds or removes the grouped elements of a range of buckets, acquiring each bucket only once.
+     *
+     * @param table The table the elements were grouped by
+     * @param grouped The grouped elements
+     * @param starts The index within <code>grouped</code> at which the elements of each bucket start
+     * @param from The first bucket to modify (inclusive)
+     * @param to The last bucket to modify (exclusive)
+     * @param remove Whether the elements should be removed instead of added
+     * @return The amount of elements that were added or removed
+     */
+    private static long applyGrouped(Table table, long[] grouped, int[] starts, int from, int to, boolean remove) {
+        long modified = 0;
+        for (int i = from; i < to; i++) {
+            int start = starts[i];
+            int end = i + 1 == starts.length ? grouped.length : starts[i + 1];
+            if (start == end) {
+                continue;
+            }
+            if (!remove) {
+                modified += table.bucketAtForWrite(i).addAll(grouped, start, end);
+            } else {
+                Bucket bucket = table.buckets.get(i);
+                if (bucket != null) {
+                    modified += bucket.removeAll(grouped, start, end);
+                }
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Transfers a single bucket of a table into the two buckets of the table's successor the elements
+     * are split into. The bucket is exclusively locked throughout the transfer, so that no modification
+     * can get lost. Afterwards the bucket forwards all operations to the successor. Unallocated buckets
+     * are replaced by the given forwarding bucket instead.
+     *
+     * @param table The table the bucket belongs to
+     * @param next The successor of the table, which has twice as many buckets
+     * @param index The index of the bucket to transfer
+     * @param forwarder An empty bucket forwarding to the successor
+     */
+    private static void transferBucket(Table table, Table next, int index, Bucket forwarder) {
+        Bucket bucket = table.buckets.get(index);
+        if (bucket == null) {
+            if (table.buckets.compareAndSet(index, null, forwarder)) {
+                return;
+            }
+            bucket = table.buckets.get(index);
+        }
+        int bucketCount = table.buckets.length();
+        synchronized (bucket) {
+            bucket.lockCtrl();
+            Migration migration = bucket.migration;
+            if (migration != null) {
+                bucket.completeMigration(migration);
+            }
+            AtomicLongArray values = bucket.values;
+            long[] low = new long[bucket.size];
+            long[] high = new long[bucket.size];
+            int lowCount = 0;
+            int highCount = 0;
+            if (values != null) {
+                for (int i = values.length(); i-- != 0;) {
+                    long value = values.get(i);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                        continue;
+                    }
+                    if (next.indexFor(value & ConcurrentInt62Set.INT_62_BITS) == index) {
+                        low[lowCount++] = value;
+                    } else {
+                        high[highCount++] = value;
+                    }
+                }
+            }
+            if (lowCount != 0) {
+                next.buckets.set(index, Bucket.of(next.contention, low, lowCount));
+            }
+            if (highCount != 0) {
+                next.buckets.set(index + bucketCount, Bucket.of(next.contention, high, highCount));
+            }
+            bucket.forward = next;
+            bucket.unlockCtrl();
+        }
+    }
+
+    /**
+     * A striped counter for the amount of elements within a table and its successors. As long as updates are
+     * not contended, they are applied to a single base value. Afterwards, updates are spread across several cells,
+     * which are flushed to the base value whenever their value strays too far from zero. As such the base value
+     * alone is an estimate of the total count.
+     */
+    static final class SizeCounter {
+        /**
+         * The maximum absolute value a cell may have before it is flushed to the base value.
+         */
+        static final int FLUSH_THRESHOLD = 32;
+        /**
+         * The maximum amount of cells, corresponding to the smallest power of two no smaller than the amount of processors.
+         */
+        static final int MAXIMUM_CELLS = Integer.highestOneBit(ConcurrentInt62Set.NCPU - 1) << 1;
+
+        static final class Cell {
+            // Padding to avoid false sharing between cells which are allocated next to each other
+            long p0, p1, p2, p3, p4, p5, p6;
+            volatile long value;
+            long q0, q1, q2, q3, q4, q5, q6;
+        }
+
+        volatile long base;
+        volatile Cell[] cells;
+
+        void add(long x) {
+            Cell[] cells = this.cells;
+            if (cells == null) {
+                long base = this.base;
+                if (ConcurrentInt62Set.COUNTER_BASE.compareAndSet(this, base, base + x)) {
+                    return;
+                }
+                cells = this.expand(null);
+            }
+
+            long id = Thread.currentThread().getId();
+            int probe = (int) ((id * ConcurrentInt62Set.FIBONACCI_MULTIPLIER) >>> 32);
+            while (true) {
+                Cell cell = cells[probe & (cells.length - 1)];
+                long value = cell.value;
+                if (ConcurrentInt62Set.COUNTER_CELL_VALUE.compareAndSet(cell, value, value += x)) {
+                    if ((value >= SizeCounter.FLUSH_THRESHOLD || value <= -SizeCounter.FLUSH_THRESHOLD)
+                            && ConcurrentInt62Set.COUNTER_CELL_VALUE.compareAndSet(cell, value, 0)) {
+                        ConcurrentInt62Set.COUNTER_BASE.getAndAdd(this, value);
+                    }
+                    return;
+                }
+                if (cells.length < SizeCounter.MAXIMUM_CELLS) {
+                    cells = this.expand(cells);
+                } else {
+                    probe = ThreadLocalRandom.current().nextInt();
+                }
+            }
+        }
+
+        private synchronized Cell[] expand(Cell[] witness) {
+            Cell[] cells = this.cells;
+            if (cells != witness) {
+                return cells;
+            }
+            int length = cells == null ? 2 : cells.length << 1;
+            Cell[] expanded = new Cell[length];
+            int i = 0;
+            if (cells != null) {
+                System.arraycopy(cells, 0, expanded, 0, cells.length);
+                i = cells.length;
+            }
+            for (; i < length; i++) {
+                expanded[i] = new Cell();
+            }
+            return this.cells = expanded;
+        }
+
+        long estimate() {
+            return this.base;
+        }
+
+        long sum() {
+            long sum = this.base;
+            Cell[] cells = this.cells;
+            if (cells != null) {
+                for (Cell cell : cells) {
+                    sum += cell.value;
+                }
+            }
+            return sum;
+        }
+    }
+
+    /**
+     * The top-level array of buckets of the set. Buckets are allocated once an element is added to them,
+     * which is why null slots are treated as empty buckets.
+     */
+    static final class Table {
+        final AtomicReferenceArray<Bucket> buckets;
+        /**
+         * The amount of elements within the table, which is shared with all successors of the table.
+         */
+        final SizeCounter counter;
+        final HashMode hashMode;
+        final ControlledBucket.Contention contention;
+        /**
+         * The table this table is being transferred to, or null if the table is not being resized.
+         */
+        volatile Table next;
+        /**
+         * The exclusive upper bound of the buckets that still need to be claimed by a transferring thread.
+         */
+        volatile int transferIndex;
+        /**
+         * The amount of buckets that were fully transferred to {@link #next}.
+         */
+        volatile int transferred;
+
+        Table(int bucketCount, SizeCounter counter, HashMode hashMode, ControlledBucket.Contention contention) {
+            this.buckets = new AtomicReferenceArray<>(bucketCount);
+            this.counter = counter;
+            this.hashMode = hashMode;
+            this.contention = contention;
+            this.transferIndex = bucketCount;
+        }
+
+        int indexFor(long element) {
+            return this.hashMode.hash(element) & (this.buckets.length() - 1);
+        }
+
+        Bucket bucketFor(long element) {
+            return this.buckets.get(this.indexFor(element));
+        }
+
+        Bucket bucketForWrite(long element) {
+            return this.bucketAtForWrite(this.indexFor(element));
+        }
+
+        Bucket bucketAtForWrite(int index) {
+            Bucket bucket = this.buckets.get(index);
+            if (bucket == null) {
+                Bucket created = new Bucket(this.contention);
+                created.values = new AtomicLongArray(16);
+                if (this.buckets.compareAndSet(index, null, created)) {
+                    return created;
+                }
+                bucket = this.buckets.get(index);
+            }
+            return bucket;
+        }
+
+        boolean contains(long element) {
+            Bucket bucket = this.bucketFor(element);
+            return bucket != null && bucket.contains(element);
+        }
+
+        boolean remove(long element) {
+            Bucket bucket = this.bucketFor(element);
+            return bucket != null && bucket.remove(element);
+        }
+    }
+
+    /**
+     * Enumerates the buckets of a table in index order. Buckets that were transferred to the table's
+     * successor are substituted by the buckets they were split into, which is why each bucket is
+     * encountered exactly once even if the set is resized during the traversal.
+     */
+    static final class Traverser {
+        private static final class Frame {
+            final Table table;
+            int index;
+            final int stride;
+            int limit;
+            final Frame parent;
+
+            Frame(Table table, int index, int stride, int limit, Frame parent) {
+                this.table = table;
+                this.index = index;
+                this.stride = stride;
+                this.limit = limit;
+                this.parent = parent;
+            }
+        }
+
+        /**
+         * The frame enumerating the buckets of the table the traversal started on, which is never forwarded.
+         */
+        private final Frame root;
+        private Frame frame;
+
+        Traverser(Table table) {
+            this(table, 0, table.buckets.length());
+        }
+
+        /**
+         * Creates a traverser which only enumerates a range of buckets of a table, alongside the buckets
+         * they were split into.
+         *
+         * @param table The table to traverse
+         * @param from The index of the first bucket to enumerate (inclusive)
+         * @param to The index of the last bucket to enumerate (exclusive)
+         */
+        Traverser(Table table, int from, int to) {
+            this.frame = this.root = new Frame(table, from, 1, to, null);
+        }
+
+        /**
+         * Splits off the upper half of the buckets of the table which this traverser has not yet started to enumerate.
+         * Buckets that were forwarded are always enumerated by the traverser that encountered them first, which is
+         * why the ranges of the two traversers never overlap.
+         *
+         * @return A traverser enumerating the upper half of the remaining buckets, or null if too few buckets remain
+         */
+        Traverser trySplit() {
+            Frame root = this.root;
+            int from = root.index;
+            int to = root.limit;
+            int middle = (from + to) >>> 1;
+            if (middle <= from) {
+                return null;
+            }
+            root.limit = middle;
+            return new Traverser(root.table, middle, to);
+        }
+
+        /**
+         * Performs an action for each element of the buckets that were not yet enumerated. The array of
+         * each bucket is only read once.
+         *
+         * @param action The action to perform for each element
+         */
+        void forEachRemaining(LongConsumer action) {
+            for (Bucket bucket; (bucket = this.next()) != null;) {
+                AtomicLongArray values = bucket.values;
+                if (values != null) {
+                    ConcurrentInt62Set.forEachInArray(values, 0, action);
+                }
+            }
+        }
+
+        Bucket next() {
+            Frame frame;
+            while ((frame = this.frame) != null) {
+                if (frame.index >= frame.limit) {
+                    this.frame = frame.parent;
+                    continue;
+                }
+                AtomicReferenceArray<Bucket> buckets = frame.table.buckets;
+                int index = frame.index;
+                frame.index += frame.stride;
+                Bucket bucket = buckets.get(index);
+                if (bucket == null) {
+                    continue;
+                }
+                Table forward = bucket.forward;
+                if (forward == null) {
+                    bucket.settle();
+                    return bucket;
+                }
+                // The bucket at index i of a table with n buckets was split into the buckets
+                // at the indices i + k * n of the successor.
+                this.frame = new Frame(forward, index, buckets.length(), forward.buckets.length(), frame);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A spliterator over the elements of a set, which is split by halving the range of buckets it covers.
+     */
+    static final class BucketSpliterator implements LongSpliterator {
+        private final Traverser traverser;
+        private AtomicLongArray values;
+        private int index;
+        private long estimate;
+
+        BucketSpliterator(Traverser traverser, long estimate) {
+            this.traverser = traverser;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public BucketSpliterator trySplit() {
+            Traverser split = this.traverser.trySplit();
+            if (split == null) {
+                return null;
+            }
+            return new BucketSpliterator(split, this.estimate >>>= 1);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            Objects.requireNonNull(action, "action may not be null");
+            while (true) {
+                AtomicLongArray values = this.values;
+                if (values != null) {
+                    int len = values.length();
+                    while (this.index < len) {
+                        long value = values.get(this.index++);
+                        if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                            action.accept(value & ConcurrentInt62Set.INT_62_BITS);
+                            return true;
+                        }
+                    }
+                }
+                Bucket bucket = this.traverser.next();
+                if (bucket == null) {
+                    this.values = null;
+                    return false;
+                }
+                this.values = bucket.values;
+                this.index = 0;
+            }
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action, "action may not be null");
+            AtomicLongArray values = this.values;
+            if (values != null) {
+                this.values = null;
+                ConcurrentInt62Set.forEachInArray(values, this.index, action);
+            }
+            this.traverser.forEachRemaining(action);
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.CONCURRENT | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * The base class for the tasks performing bulk operations, which fork off subtasks for the upper half of the
+     * buckets they cover as long as their batch count is positive.
+     */
+    abstract static class BulkTask<R> extends CountedCompleter<R> {
+        private static final long serialVersionUID = 1L;
+
+        final Traverser traverser;
+        int batch;
+
+        BulkTask(BulkTask<?> parent, int batch, Traverser traverser) {
+            super(parent);
+            this.batch = batch;
+            this.traverser = traverser;
+        }
+
+        /**
+         * Splits off the upper half of the remaining buckets of the task, halving the batch count.
+         *
+         * @return The traverser for the upper half, or null if the task should not or cannot be split any further
+         */
+        final Traverser trySplit() {
+            if (this.batch <= 0) {
+                return null;
+            }
+            Traverser split = this.traverser.trySplit();
+            if (split != null) {
+                this.batch >>>= 1;
+            }
+            return split;
+        }
+    }
+
+    static final class ForEachTask extends BulkTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        final LongConsumer action;
+
+        ForEachTask(BulkTask<?> parent, int batch, Traverser traverser, LongConsumer action) {
+            super(parent, batch, traverser);
+            this.action = action;
+        }
+
+        @Override
+        public void compute() {
+            LongConsumer action = this.action;
+            for (Traverser split; (split = this.trySplit()) != null;) {
+                this.addToPendingCount(1);
+                new ForEachTask(this, this.batch, split, action).fork();
+            }
+            this.traverser.forEachRemaining(action);
+            this.propagateCompletion();
+        }
+    }
+
+    static final class ReduceTask extends BulkTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final LongUnaryOperator transformer;
+        final LongBinaryOperator reducer;
+        final long basis;
+        long result;
+        /**
+         * The subtasks forked by this task, linked via {@link #nextRight}.
+         */
+        ReduceTask rights;
+        ReduceTask nextRight;
+
+        ReduceTask(BulkTask<?> parent, int batch, Traverser traverser, ReduceTask nextRight,
+                LongUnaryOperator transformer, long basis, LongBinaryOperator reducer) {
+            super(parent, batch, traverser);
+            this.nextRight = nextRight;
+            this.transformer = transformer;
+            this.basis = basis;
+            this.reducer = reducer;
+        }
+
+        @Override
+        public Long getRawResult() {
+            return this.result;
+        }
+
+        @Override
+        public void compute() {
+            LongUnaryOperator transformer = this.transformer;
+            LongBinaryOperator reducer = this.reducer;
+            for (Traverser split; (split = this.trySplit()) != null;) {
+                this.addToPendingCount(1);
+                (this.rights = new ReduceTask(this, this.batch, split, this.rights, transformer, this.basis, reducer)).fork();
+            }
+            long result = this.basis;
+            for (Bucket bucket; (bucket = this.traverser.next()) != null;) {
+                AtomicLongArray values = bucket.values;
+                if (values == null) {
+                    continue;
+                }
+                for (int i = 0, len = values.length(); i < len; i++) {
+                    long value = values.get(i);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                        result = reducer.applyAsLong(result, transformer.applyAsLong(value & ConcurrentInt62Set.INT_62_BITS));
+                    }
+                }
+            }
+            this.result = result;
+            for (CountedCompleter<?> c = this.firstComplete(); c != null; c = c.nextComplete()) {
+                ReduceTask task = (ReduceTask) c;
+                ReduceTask right = task.rights;
+                while (right != null) {
+                    task.result = reducer.applyAsLong(task.result, right.result);
+                    right = task.rights = right.nextRight;
+                }
+            }
+        }
+    }
+
+    static final class SearchTask extends BulkTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        final LongPredicate predicate;
+        /**
+         * The element found by any of the tasks, shared by all tasks. Negative as long as no element was found.
+         */
+        final AtomicLong result;
+
+        SearchTask(BulkTask<?> parent, int batch, Traverser traverser, LongPredicate predicate, AtomicLong result) {
+            super(parent, batch, traverser);
+            this.predicate = predicate;
+            this.result = result;
+        }
+
+        @Override
+        public Long getRawResult() {
+            return this.result.get();
+        }
+
+        @Override
+        public void compute() {
+            LongPredicate predicate = this.predicate;
+            AtomicLong result = this.result;
+            for (Traverser split; (split = this.trySplit()) != null;) {
+                if (result.get() >= 0) {
+                    return;
+                }
+                this.addToPendingCount(1);
+                new SearchTask(this, this.batch, split, predicate, result).fork();
+            }
+            for (Bucket bucket; result.get() < 0 && (bucket = this.traverser.next()) != null;) {
+                AtomicLongArray values = bucket.values;
+                if (values == null) {
+                    continue;
+                }
+                for (int i = 0, len = values.length(); i < len; i++) {
+                    long value = values.get(i);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0 && predicate.test(value &= ConcurrentInt62Set.INT_62_BITS)) {
+                        if (result.compareAndSet(-1L, value)) {
+                            this.quietlyCompleteRoot();
+                        }
+                        return;
+                    }
+                }
+            }
+            this.propagateCompletion();
+        }
+    }
+
+    /**
+     * Applies grouped elements to ranges of buckets in parallel, splitting the range of buckets until the
+     * amount of elements in each range is small enough.
+     */
+    static final class BatchTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        final Table table;
+        final long[] grouped;
+        final int[] starts;
+        final boolean remove;
+        final int from;
+        final int to;
+        /**
+         * The amount of elements added or removed by all tasks.
+         */
+        final AtomicLong modified;
+
+        BatchTask(BatchTask parent, Table table, long[] grouped, int[] starts, boolean remove, int from, int to, AtomicLong modified) {
+            super(parent);
+            this.table = table;
+            this.grouped = grouped;
+            this.starts = starts;
+            this.remove = remove;
+            this.from = from;
+            this.to = to;
+            this.modified = modified;
+        }
+
+        @Override
+        public void compute() {
+            int from = this.from;
+            int to = this.to;
+            int[] starts = this.starts;
+            while (to - from > 1 && (to == starts.length ? this.grouped.length : starts[to]) - starts[from] > ConcurrentInt62Set.BATCH_SPLIT_SIZE) {
+                int middle = (from + to) >>> 1;
+                this.addToPendingCount(1);
+                new BatchTask(this, this.table, this.grouped, starts, this.remove, middle, to, this.modified).fork();
+                to = middle;
+            }
+            long modified = ConcurrentInt62Set.applyGrouped(this.table, this.grouped, starts, from, to, this.remove);
+            if (modified != 0) {
+                this.modified.addAndGet(modified);
+            }
+            this.propagateCompletion();
+        }
+    }
+
+    /**
+     * A k-way merge of the elements of all buckets of a table. The elements of each bucket are copied into a
+     * contiguous run of a shared array and sorted individually, after which the runs are merged using a binary
+     * min-heap that holds the index of each run which was not yet exhausted, ordered by the next element of the run.
+     */
+    static final class SortedMerge {
+        private final long[] elements;
+        /**
+         * The index of the next element of each run within {@link #elements}.
+         */
+        private final int[] positions;
+        /**
+         * The exclusive end of each run within {@link #elements}.
+         */
+        private final int[] ends;
+        private final int[] heap;
+        /**
+         * The amount of elements that were copied from the buckets, including elements that were observed twice.
+         */
+        private final int size;
+        private int heapSize;
+        private boolean hasCurrent;
+        /**
+         * The element the merge was last advanced to.
+         */
+        long current;
+
+        SortedMerge(Table table) {
+            long[] elements = new long[(int) Math.min(Math.max(0L, table.counter.sum()), Integer.MAX_VALUE - 8)];
+            int[] starts = new int[16];
+            int runs = 0;
+            int count = 0;
+            Traverser traverser = new Traverser(table);
+            for (Bucket bucket; (bucket = traverser.next()) != null;) {
+                AtomicLongArray values = bucket.values;
+                if (values == null) {
+                    continue;
+                }
+                int start = count;
+                for (int i = 0, len = values.length(); i < len; i++) {
+                    long value = values.get(i);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                        continue;
+                    }
+                    if (count == elements.length) {
+                        elements = Arrays.copyOf(elements, Math.max(count + (count >>> 1), count + bucket.size + 1));
+                    }
+                    elements[count++] = value & ConcurrentInt62Set.INT_62_BITS;
+                }
+                if (count == start) {
+                    continue;
+                }
+                Arrays.sort(elements, start, count);
+                if (runs + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length << 1);
+                }
+                starts[runs++] = start;
+            }
+            starts[runs] = count;
+
+            this.elements = elements;
+            this.size = count;
+            this.positions = Arrays.copyOf(starts, runs);
+            this.ends = Arrays.copyOfRange(starts, 1, runs + 1);
+            this.heap = new int[runs];
+            for (int i = 0; i < runs; i++) {
+                this.heap[i] = i;
+            }
+            this.heapSize = runs;
+            for (int i = (runs >>> 1) - 1; i >= 0; i--) {
+                this.siftDown(i);
+            }
+        }
+
+        private long head(int run) {
+            return this.elements[this.positions[run]];
+        }
+
+        private void siftDown(int index) {
+            int[] heap = this.heap;
+            int run = heap[index];
+            long value = this.head(run);
+            while (true) {
+                int child = (index << 1) + 1;
+                if (child >= this.heapSize) {
+                    break;
+                }
+                if (child + 1 < this.heapSize && this.head(heap[child + 1]) < this.head(heap[child])) {
+                    child++;
+                }
+                if (this.head(heap[child]) >= value) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = run;
+        }
+
+        /**
+         * Advances {@link #current} to the smallest remaining element of the merge. Elements which were observed more
+         * than once because they were moved concurrently while the buckets were read are only visited once.
+         *
+         * @return False if the merge is exhausted, in which case {@link #current} is left untouched
+         */
+        boolean advance() {
+            while (this.heapSize != 0) {
+                int run = this.heap[0];
+                long value = this.elements[this.positions[run]++];
+                if (this.positions[run] == this.ends[run]) {
+                    this.heap[0] = this.heap[--this.heapSize];
+                }
+                if (this.heapSize != 0) {
+                    this.siftDown(0);
+                }
+                if (this.hasCurrent && this.current == value) {
+                    continue;
+                }
+                this.hasCurrent = true;
+                this.current = value;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Drains all remaining elements of the merge into a newly allocated array. The runs cannot be merged in place,
+         * so the copied elements and the merged elements are held in two separate arrays until the merge completes,
+         * requiring twice as much memory as the elements themselves. The merge may no longer be used afterwards.
+         *
+         * @return The remaining elements in ascending order
+         */
+        long[] drain() {
+            long[] sorted = new long[this.size];
+            int count = 0;
+            while (this.advance()) {
+                sorted[count++] = this.current;
+            }
+            return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+        }
+    }
+
+    /**
+     * The state of a bucket whose array is incrementally copied into a larger array. While the migration is in
+     * progress, both arrays are reachable through the migration. Threads modifying the bucket help by claiming
+     * chunks of {@link ConcurrentInt62Set#MIGRATION_STRIDE} slots, which are frozen and copied into the target
+     * array one by one. Frozen slots can no longer be modified, so any operation encountering a frozen slot
+     * continues within the target array instead.
+     *
+     * <p>A frozen element is copied at most once into the target array. All threads copying the element race for
+     * the first empty slot of the element's probe sequence within the target array, and as a copy stops once the
+     * element or a tombstone of the element is encountered, an element that was removed from the target array
+     * after it was copied is not resurrected.
+     */
+    static final class Migration {
+        final AtomicLongArray source;
+        final AtomicLongArray target;
+        /**
+         * The index of the first slot of the source array which was not yet claimed by a helping thread.
+         */
+        volatile int claimIndex;
+        /**
+         * The amount of slots of the source array which were claimed and completely migrated.
+         */
+        volatile int migrated;
+        /**
+         * The amount of slots of the target array that are not {@link ConcurrentInt62Set#SLOT_EMPTY}, including
+         * slots reserved by insertions which are yet to be performed.
+         */
+        volatile int fill;
+
+        Migration(AtomicLongArray source, AtomicLongArray target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        /**
+         * Freezes a slot of the source array and copies its element into the target array if there is one.
+         * Slots which were frozen already are copied again, which is why this method may be called any amount
+         * of times for the same slot.
+         *
+         * @param index The index of the slot within the source array
+         */
+        void migrateSlot(int index) {
+            AtomicLongArray source = this.source;
+            while (true) {
+                long value = source.get(index);
+                long ctrl = value & ConcurrentInt62Set.CTRL_BITS;
+                if (ctrl == ConcurrentInt62Set.CTRL_BIT_READ) {
+                    if (source.compareAndSet(index, value, value | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                        this.copy(value & ConcurrentInt62Set.INT_62_BITS);
+                        return;
+                    }
+                } else if (ctrl == ConcurrentInt62Set.CTRL_BITS) {
+                    this.copy(value & ConcurrentInt62Set.INT_62_BITS);
+                    return;
+                } else if (ctrl == ConcurrentInt62Set.CTRL_BIT_MARK) {
+                    if (source.compareAndSet(index, value, ConcurrentInt62Set.SLOT_MOVED_TOMBSTONE)) {
+                        return;
+                    }
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    if (source.compareAndSet(index, ConcurrentInt62Set.SLOT_EMPTY, ConcurrentInt62Set.SLOT_MOVED_EMPTY)) {
+                        return;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Copies a frozen element of the source array into the target array, unless it was copied already.
+         *
+         * @param element The element to copy
+         */
+        void copy(long element) {
+            AtomicLongArray target = this.target;
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            long tombstone = element | ConcurrentInt62Set.CTRL_BIT_MARK;
+            int mask = target.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = target.length(); probes != 0;) {
+                long value = target.get(index);
+                if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    if (target.compareAndSet(index, ConcurrentInt62Set.SLOT_EMPTY, entry)) {
+                        ConcurrentInt62Set.MIGRATION_FILL.incrementAndGet(this);
+                        return;
+                    }
+                    continue;
+                } else if (value == entry || value == tombstone || ConcurrentInt62Set.isMoved(value)) {
+                    // Target arrays are only migrated further once all elements were copied into them
+                    return;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            throw new AssertionError("Target array of a migration exhausted");
+        }
+
+        /**
+         * Reserves a slot of the target array for an insertion. Reservations fail once the target array is filled
+         * beyond its load factor or if the slot might be required by an element which is yet to be copied.
+         *
+         * @return True if a slot was reserved
+         */
+        boolean reserve() {
+            int length = this.target.length();
+            int limit = ConcurrentInt62Set.fillLimit(length);
+            int fill;
+            do {
+                fill = this.fill;
+                if (fill >= limit || fill + 1 + this.source.length() - this.migrated >= length) {
+                    return false;
+                }
+            } while (!ConcurrentInt62Set.MIGRATION_FILL.compareAndSet(this, fill, fill + 1));
+            return true;
+        }
+
+        /**
+         * Looks up an element within the target array.
+         *
+         * @param element The element to look up
+         * @param pending True if the element was found frozen within the source array, in which case the element
+         * is considered present unless the target array holds a tombstone of it
+         * @return 1 if the element is present, 0 if it is absent, or -1 if the target array is migrated itself
+         */
+        int find(long element, boolean pending) {
+            AtomicLongArray target = this.target;
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            long tombstone = element | ConcurrentInt62Set.CTRL_BIT_MARK;
+            boolean removed = false;
+            int mask = target.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = target.length(); probes != 0; probes--) {
+                long value = target.get(index);
+                if (value == entry) {
+                    return 1;
+                } else if (value == tombstone) {
+                    removed = true;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    break;
+                } else if (ConcurrentInt62Set.isMoved(value)) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return pending && !removed ? 1 : 0;
+        }
+    }
+
+    /**
+     * A single bucket of the set. Elements are stored in an open-addressed array using linear probing,
+     * where each present element is stored alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit.
+     * Elements are published by a single CAS from {@link ConcurrentInt62Set#SLOT_EMPTY} to the readable
+     * value, which is why elements are always inserted into the first empty slot of the probe sequence.
+     * As empty slots never reappear until the array is rehashed, two threads inserting the same element
+     * race for the same slot, making duplicate entries impossible.
+     *
+     * <p>Once the array fills up, it is migrated into a larger array by the threads modifying the bucket,
+     * see {@link Migration}. The first empty slot of an element's probe sequence decides where the element is
+     * inserted: If it is still empty, the element is inserted into the current array, whereas if it was
+     * frozen by the migration, the element is inserted into the target array instead. Exclusive access to the
+     * bucket is only required while the bucket is transferred to another table or compacted.
+     */
+    static final class Bucket extends ControlledBucket {
+        static final int INSERT_ADDED = 1;
+        static final int INSERT_PRESENT = 0;
+        static final int INSERT_FULL = -1;
+        /**
+         * The probe sequence of the element reached a slot that was frozen while it was empty.
+         */
+        static final int PROBE_MOVED = -2;
+        /**
+         * The probe sequence of the element reached the frozen element.
+         */
+        static final int PROBE_MOVED_ELEMENT = -3;
+
+        volatile AtomicLongArray values;
+        volatile int size;
+        /**
+         * The amount of slots that are not {@link ConcurrentInt62Set#SLOT_EMPTY}, including tombstones.
+         * Only approximate after the array of the bucket was migrated.
+         */
+        volatile int fill;
+        /**
+         * The migration of the bucket's array into a larger array, or null if the array is not migrated.
+         */
+        volatile Migration migration;
+        /**
+         * The table the contents of this bucket were transferred to, or null if the bucket is still in use.
+         */
+        volatile Table forward;
+
+        Bucket(ControlledBucket.Contention contention) {
+            super(contention);
+        }
+
+        static Bucket forwarding(Table forward) {
+            Bucket bucket = new Bucket(forward.contention);
+            bucket.forward = forward;
+            return bucket;
+        }
+
+        /**
+         * Creates a bucket holding the given readable entries for use in a table that is not yet visible to
+         * other threads.
+         *
+         * @param contention The contention statistics of the set
+         * @param entries The elements alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit
+         * @param count The amount of entries to insert
+         * @return The created bucket
+         */
+        static Bucket of(ControlledBucket.Contention contention, long[] entries, int count) {
+            Bucket bucket = new Bucket(contention);
+            if (count != 0) {
+                AtomicLongArray values = new AtomicLongArray(ConcurrentInt62Set.capacityFor(count));
+                for (int i = 0; i < count; i++) {
+                    ConcurrentInt62Set.insertUnsynchronized(values, entries[i]);
+                }
+                bucket.values = values;
+                bucket.size = count;
+                bucket.fill = count;
+            }
+            return bucket;
+        }
+
+        boolean contains(long element) {
+            Table forward;
+            while ((forward = this.forward) == null) {
+                AtomicLongArray values = this.values;
+                if (values == null) {
+                    break;
+                }
+                int result = ConcurrentInt62Set.find(values, element);
+                if (result == 1) {
+                    return true;
+                } else if (result == 0) {
+                    break;
+                }
+                Migration migration = this.migration;
+                if (migration == null || migration.source != values) {
+                    if (result == Bucket.INSERT_FULL && this.values == values) {
+                        break;
+                    }
+                    // The migration completed in the meantime
+                    continue;
+                }
+                result = migration.find(element, result == Bucket.PROBE_MOVED_ELEMENT);
+                if (result == 1) {
+                    return true;
+                } else if (result == 0) {
+                    break;
+                }
+            }
+            // The bucket may have been transferred while it was probed
+            return (forward = this.forward) != null && forward.contains(element);
+        }
+
+        boolean add(long element) {
+            this.incrementCtrl();
+            Table forward = this.forward;
+            if (forward != null) {
+                this.decrementCtrl();
+                return forward.bucketForWrite(element).add(element);
+            }
+            boolean added = this.addLocked(element);
+            this.decrementCtrl();
+            return added;
+        }
+
+        /**
+         * Adds multiple elements to this bucket, acquiring the reader slot of the bucket only once.
+         *
+         * @param elements The array holding the elements, all of which must map to this bucket
+         * @param from The index of the first element to add (inclusive)
+         * @param to The index of the last element to add (exclusive)
+         * @return The amount of elements that were added
+         */
+        int addAll(long[] elements, int from, int to) {
+            int added = 0;
+            this.incrementCtrl();
+            Table forward = this.forward;
+            if (forward != null) {
+                this.decrementCtrl();
+                for (; from < to; from++) {
+                    if (forward.bucketForWrite(elements[from]).add(elements[from])) {
+                        added++;
+                    }
+                }
+                return added;
+            }
+            for (; from < to; from++) {
+                if (this.addLocked(elements[from])) {
+                    added++;
+                }
+            }
+            this.decrementCtrl();
+            return added;
+        }
+
+        /**
+         * Adds an element to the bucket, helping to migrate the bucket's array if necessary. The caller must
+         * hold a reader slot of the bucket, which must not have been transferred.
+         *
+         * @param element The element to add
+         * @return True if the element was added by this call
+         */
+        private boolean addLocked(long element) {
+            while (true) {
+                Migration migration = this.migration;
+                AtomicLongArray values = this.values;
+                if (values == null) {
+                    ConcurrentInt62Set.BUCKET_VALUES.compareAndSet(this, null, new AtomicLongArray(16));
+                    continue;
+                } else if (migration != null) {
+                    if (migration.source != values) {
+                        ConcurrentInt62Set.BUCKET_MIGRATION.compareAndSet(this, migration, null);
+                        continue;
+                    }
+                    this.helpMigration(migration);
+                }
+
+                int result = this.insert(values, element);
+                if (result == Bucket.INSERT_ADDED) {
+                    if (migration == null && this.fill > ConcurrentInt62Set.fillLimit(values.length())) {
+                        this.startMigration(values);
+                    }
+                    return true;
+                } else if (result == Bucket.INSERT_PRESENT) {
+                    return false;
+                }
+
+                migration = this.migration;
+                if (migration == null || migration.source != values) {
+                    if (result == Bucket.INSERT_FULL) {
+                        // Concurrent insertions exhausted all empty slots before the array could be migrated
+                        this.startMigration(values);
+                    }
+                    continue;
+                }
+                result = this.insertMigrated(migration, element, result == Bucket.PROBE_MOVED_ELEMENT);
+                if (result != Bucket.INSERT_FULL) {
+                    return result == Bucket.INSERT_ADDED;
+                }
+            }
+        }
+
+        /**
+         * Inserts an element into the bucket's array. The caller must hold a reader slot of the bucket.
+         *
+         * @param values The current array of the bucket
+         * @param element The element to insert
+         * @return {@link #INSERT_ADDED}, {@link #INSERT_PRESENT}, {@link #INSERT_FULL} if no empty slot remains,
+         * {@link #PROBE_MOVED} or {@link #PROBE_MOVED_ELEMENT} if the element needs to be inserted into the target
+         * array of the migration of the array
+         */
+        private int insert(AtomicLongArray values, long element) {
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            int mask = values.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            int probes = values.length();
+            while (probes != 0) {
+                long value = values.get(index);
+                if (value == entry) {
+                    return Bucket.INSERT_PRESENT;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    if (!values.compareAndSet(index, ConcurrentInt62Set.SLOT_EMPTY, entry)) {
+                        // Another thread claimed the slot first - it may have inserted the same element
+                        continue;
+                    }
+                    ConcurrentInt62Set.BUCKET_SIZE.incrementAndGet(this);
+                    ConcurrentInt62Set.BUCKET_FILL.incrementAndGet(this);
+                    return Bucket.INSERT_ADDED;
+                } else if (value == ConcurrentInt62Set.SLOT_MOVED_EMPTY) {
+                    return Bucket.PROBE_MOVED;
+                } else if (value == (entry | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                    return Bucket.PROBE_MOVED_ELEMENT;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            return Bucket.INSERT_FULL;
+        }
+
+        /**
+         * Inserts an element into the target array of a migration. The caller must hold a reader slot of the bucket.
+         *
+         * @param migration The migration of the array the element could not be inserted into
+         * @param element The element to insert
+         * @param moved True if the element was found frozen within the source array of the migration
+         * @return {@link #INSERT_ADDED}, {@link #INSERT_PRESENT} or {@link #INSERT_FULL} if the insertion needs to be
+         * retried as the target array became the current array of the bucket in the meantime
+         */
+        private int insertMigrated(Migration migration, long element, boolean moved) {
+            if (moved) {
+                migration.copy(element);
+            }
+            AtomicLongArray target = migration.target;
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            int mask = target.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            boolean reserved = false;
+            for (int probes = target.length(); probes != 0;) {
+                long value = target.get(index);
+                if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    if (!reserved && !(reserved = migration.reserve())) {
+                        // The target array is too crowded to take more insertions before all elements were copied
+                        this.completeMigration(migration);
+                        return Bucket.INSERT_FULL;
+                    } else if (target.compareAndSet(index, ConcurrentInt62Set.SLOT_EMPTY, entry)) {
+                        ConcurrentInt62Set.BUCKET_SIZE.incrementAndGet(this);
+                        return Bucket.INSERT_ADDED;
+                    }
+                    continue;
+                } else if (value == entry || ConcurrentInt62Set.isMoved(value)) {
+                    if (reserved) {
+                        ConcurrentInt62Set.MIGRATION_FILL.decrementAndGet(migration);
+                    }
+                    return value == entry ? Bucket.INSERT_PRESENT : Bucket.INSERT_FULL;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            if (reserved) {
+                ConcurrentInt62Set.MIGRATION_FILL.decrementAndGet(migration);
+            }
+            return Bucket.INSERT_FULL;
+        }
+
+        boolean remove(long element) {
+            this.incrementCtrl();
+            Table forward = this.forward;
+            if (forward != null) {
+                this.decrementCtrl();
+                return forward.remove(element);
+            }
+            boolean removed = this.removeLocked(element);
+            this.decrementCtrl();
+            if (removed) {
+                this.checkShrink();
+            }
+            return removed;
+        }
+
+        /**
+         * Removes multiple elements from this bucket, acquiring the reader slot of the bucket only once.
+         *
+         * @param elements The array holding the elements, all of which must map to this bucket
+         * @param from The index of the first element to remove (inclusive)
+         * @param to The index of the last element to remove (exclusive)
+         * @return The amount of elements that were removed
+         */
+        int removeAll(long[] elements, int from, int to) {
+            int removed = 0;
+            this.incrementCtrl();
+            Table forward = this.forward;
+            if (forward != null) {
+                this.decrementCtrl();
+                for (; from < to; from++) {
+                    if (forward.remove(elements[from])) {
+                        removed++;
+                    }
+                }
+                return removed;
+            }
+            for (; from < to; from++) {
+                if (this.removeLocked(elements[from])) {
+                    removed++;
+                }
+            }
+            this.decrementCtrl();
+            if (removed != 0) {
+                this.checkShrink();
+            }
+            return removed;
+        }
+
+        /**
+         * Removes an element from the bucket, helping to migrate the bucket's array if necessary. The caller must
+         * hold a reader slot of the bucket, which must not have been transferred.
+         *
+         * @param element The element to remove
+         * @return True if the element was removed by this call
+         */
+        private boolean removeLocked(long element) {
+            while (true) {
+                Migration migration = this.migration;
+                AtomicLongArray values = this.values;
+                if (values == null) {
+                    return false;
+                } else if (migration != null) {
+                    if (migration.source != values) {
+                        ConcurrentInt62Set.BUCKET_MIGRATION.compareAndSet(this, migration, null);
+                        continue;
+                    }
+                    this.helpMigration(migration);
+                }
+
+                int result = this.delete(values, element);
+                if (result >= 0) {
+                    return result != 0;
+                }
+                migration = this.migration;
+                if (migration == null || migration.source != values) {
+                    if (result == Bucket.INSERT_FULL && this.values == values) {
+                        return false;
+                    }
+                    continue;
+                }
+                result = this.deleteMigrated(migration, element, result == Bucket.PROBE_MOVED_ELEMENT);
+                if (result >= 0) {
+                    return result != 0;
+                }
+            }
+        }
+
+        /**
+         * Compacts the bucket's array after a removal if it is largely unoccupied. Arrays of the initial length
+         * are never compacted automatically, so that repeatedly adding and removing an element does not cause
+         * the array to be reallocated every time. Arrays that are migrated are not compacted either, as
+         * compacting requires exclusive access to the bucket.
+         */
+        private void checkShrink() {
+            AtomicLongArray values = this.values;
+            if (values == null || this.migration != null) {
+                return;
+            }
+            int len = values.length();
+            if (len > 16 && this.size < (len >>> ConcurrentInt62Set.SHRINK_LOAD_SHIFT)) {
+                this.shrinkValues(values);
+            }
+        }
+
+        /**
+         * Replaces an element of the bucket's array with a tombstone. The caller must hold a reader slot of the bucket.
+         *
+         * @param values The current array of the bucket
+         * @param element The element to remove
+         * @return 1 if the element was removed by this call, 0 if the element is absent, {@link #INSERT_FULL} if the
+         * array was probed exhaustively or {@link #PROBE_MOVED} or {@link #PROBE_MOVED_ELEMENT} if the element needs to
+         * be removed from the target array of the migration of the array
+         */
+        private int delete(AtomicLongArray values, long element) {
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            int mask = values.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = values.length(); probes != 0;) {
+                long value = values.get(index);
+                if (value == entry) {
+                    // A failed CAS means that the element was either removed concurrently or frozen,
+                    // both of which are told apart by reading the slot again.
+                    if (values.compareAndSet(index, entry, element | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                        ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
+                        return 1;
+                    }
+                    continue;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    return 0;
+                } else if (value == ConcurrentInt62Set.SLOT_MOVED_EMPTY) {
+                    return Bucket.PROBE_MOVED;
+                } else if (value == (entry | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                    return Bucket.PROBE_MOVED_ELEMENT;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            return Bucket.INSERT_FULL;
+        }
+
+        /**
+         * Removes an element from the target array of a migration. The caller must hold a reader slot of the bucket.
+         *
+         * @param migration The migration of the array the element could not be removed from
+         * @param element The element to remove
+         * @param moved True if the element was found frozen within the source array of the migration
+         * @return 1 if the element was removed by this call, 0 if the element is absent, or -1 if the removal needs to
+         * be retried as the target array became the current array of the bucket in the meantime
+         */
+        private int deleteMigrated(Migration migration, long element, boolean moved) {
+            if (moved) {
+                migration.copy(element);
+            }
+            AtomicLongArray target = migration.target;
+            long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            int mask = target.length() - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = target.length(); probes != 0;) {
+                long value = target.get(index);
+                if (value == entry) {
+                    if (target.compareAndSet(index, entry, element | ConcurrentInt62Set.CTRL_BIT_MARK)) {
+                        ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
+                        return 1;
+                    }
+                    continue;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    return 0;
+                } else if (ConcurrentInt62Set.isMoved(value)) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            return -1;
+        }
+
+        /**
+         * Starts migrating the bucket's array into an array that is large enough for the bucket's elements,
+         * unless the array is migrated already. Tombstones are dropped while migrating, so the array only
+         * grows if a sizeable portion of the used slots are occupied by actual elements.
+         *
+         * @param values The array of the bucket which is deemed to be too crowded
+         */
+        private void startMigration(AtomicLongArray values) {
+            if (this.migration != null || this.values != values) {
+                return;
+            }
+            int len = values.length();
+            Migration migration = new Migration(values, new AtomicLongArray(Math.max(len, ConcurrentInt62Set.capacityFor(this.size))));
+            if (ConcurrentInt62Set.BUCKET_MIGRATION.compareAndSet(this, null, migration) && this.values != values) {
+                // The array was replaced before the migration was installed
+                ConcurrentInt62Set.BUCKET_MIGRATION.compareAndSet(this, migration, null);
+            }
+        }
+
+        /**
+         * Claims and migrates the next chunk of slots of a migration, if there are any left.
+         * The caller must hold a reader slot of the bucket.
+         *
+         * @param migration The migration of the bucket's array
+         */
+        private void helpMigration(Migration migration) {
+            int len = migration.source.length();
+            int start;
+            do {
+                if ((start = migration.claimIndex) >= len) {
+                    return;
+                }
+            } while (!ConcurrentInt62Set.MIGRATION_CLAIM_INDEX.compareAndSet(migration, start, start + ConcurrentInt62Set.MIGRATION_STRIDE));
+            int end = Math.min(len, start + ConcurrentInt62Set.MIGRATION_STRIDE);
+            for (int i = start; i < end; i++) {
+                migration.migrateSlot(i);
+            }
+            if (ConcurrentInt62Set.MIGRATION_MIGRATED.addAndGet(migration, end - start) == len) {
+                this.publish(migration);
+            }
+        }
+
+        /**
+         * Migrates all slots of a migration without waiting for the threads which claimed chunks of the migration
+         * earlier, and makes the target array the bucket's current array. The caller must either hold a reader slot
+         * or the exclusive lock of the bucket.
+         *
+         * @param migration The migration of the bucket's array
+         */
+        private void completeMigration(Migration migration) {
+            ConcurrentInt62Set.MIGRATION_CLAIM_INDEX.set(migration, Integer.MAX_VALUE);
+            for (int i = 0, len = migration.source.length(); i < len; i++) {
+                migration.migrateSlot(i);
+            }
+            this.publish(migration);
+        }
+
+        private void publish(Migration migration) {
+            if (ConcurrentInt62Set.BUCKET_VALUES.compareAndSet(this, migration.source, migration.target)) {
+                this.fill = migration.fill;
+            }
+            ConcurrentInt62Set.BUCKET_MIGRATION.compareAndSet(this, migration, null);
+        }
+
+        /**
+         * Completes the migration of the bucket's array, if there is one, such that the bucket's array
+         * holds all elements of the bucket. Used before enumerating the elements of the bucket.
+         */
+        void settle() {
+            if (this.migration != null) {
+                this.incrementCtrl();
+                Migration migration = this.migration;
+                if (migration != null && this.forward == null) {
+                    this.completeMigration(migration);
+                }
+                this.decrementCtrl();
+            }
+        }
+
+        /**
+         * Rehashes the bucket's array into an array that is no larger than required for the bucket's elements,
+         * dropping all tombstones. Empty buckets release their array altogether. Does nothing if the array
+         * neither shrinks nor holds any tombstones.
+         *
+         * @param witness The array of the bucket that is deemed to be too large
+         * @return True if the array was replaced
+         */
+        synchronized boolean shrinkValues(AtomicLongArray witness) {
+            if (this.values != witness || witness == null || this.forward != null) {
+                return false;
+            }
+
+            this.lockCtrl();
+            Migration migration = this.migration;
+            if (migration != null) {
+                this.completeMigration(migration);
+            }
+            // A migration may have replaced the array before the bucket was locked
+            witness = this.values;
+            // The size cannot change while the bucket is locked
+            int size = this.size;
+            int capacity = ConcurrentInt62Set.capacityFor(size);
+            if (size == 0) {
+                this.fill = 0;
+                this.values = null;
+            } else if (capacity < witness.length() || this.fill != size) {
+                this.rehash(witness, Math.min(witness.length(), capacity));
+                return true;
+            } else {
+                this.unlockCtrl();
+                return false;
+            }
+            this.unlockCtrl();
+            return true;
+        }
+
+        /**
+         * Appends the elements of the bucket to a list while the bucket is exclusively locked, so that the copied
+         * elements correspond to a state the bucket actually had. Does nothing if the bucket was forwarded.
+         *
+         * @param elements The list to append the elements to
+         * @return False if the bucket was forwarded to the successor of its table
+         */
+        synchronized boolean copyTo(LongArrayList elements) {
+            if (this.forward != null) {
+                return false;
+            }
+
+            this.lockCtrl();
+            try {
+                Migration migration = this.migration;
+                if (migration != null) {
+                    this.completeMigration(migration);
+                }
+                AtomicLongArray values = this.values;
+                if (values != null) {
+                    for (int i = 0, len = values.length(); i < len; i++) {
+                        long value = values.get(i);
+                        if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                            elements.add(value & ConcurrentInt62Set.INT_62_BITS);
+                        }
+                    }
+                }
+            } finally {
+                this.unlockCtrl();
+            }
+            return true;
+        }
+
+        /**
+         * Copies all elements of the bucket's array into a new array and releases the exclusive lock of the bucket.
+         * The caller must hold the exclusive lock obtained via {@link #lockCtrl()}.
+         *
+         * @param witness The current array of the bucket
+         * @param length The length of the new array
+         */
+        private void rehash(AtomicLongArray witness, int length) {
+            AtomicLongArray rehashed = new AtomicLongArray(length);
+            int fill = 0;
+            for (int i = 0, len = witness.length(); i < len; i++) {
+                long value = witness.get(i);
+                if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                    ConcurrentInt62Set.insertUnsynchronized(rehashed, value);
+                    fill++;
+                }
+            }
+            this.fill = fill;
+            this.values = rehashed;
+            this.unlockCtrl();
+        }
+    }
+
+    /**
+     * Creates a resizable set with an initial amount of 16 buckets using {@link HashMode#MIXED}.
+     */
+    public ConcurrentInt62Set() {
+        this(16, true);
+    }
+
+    /**
+     * Creates a set with a fixed amount of buckets using {@link HashMode#MIXED}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     */
+    public ConcurrentInt62Set(int bucketCount) {
+        this(bucketCount, false);
+    }
+
+    /**
+     * Creates a set that is optionally resizable. A resizable set doubles its amount of buckets whenever a
+     * bucket holds too many elements. The amount of buckets of a resizable set is reset to the initial amount
+     * of buckets when {@link #clear()} is called.
+     *
+     * @param bucketCount The (initial) amount of buckets, must be a power of two
+     * @param resizable Whether the amount of buckets should grow alongside the amount of elements
+     */
+    public ConcurrentInt62Set(int bucketCount, boolean resizable) {
+        this(bucketCount, resizable, HashMode.MIXED);
+    }
+
+    /**
+     * Creates a set that is optionally resizable and which maps elements to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The (initial) amount of buckets, must be a power of two
+     * @param resizable Whether the amount of buckets should grow alongside the amount of elements
+     * @param hashMode The strategy used to map elements to buckets
+     */
+    public ConcurrentInt62Set(int bucketCount, boolean resizable, HashMode hashMode) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+        }
+        if (resizable && bucketCount > ConcurrentInt62Set.MAXIMUM_BUCKET_COUNT) {
+            throw new IllegalArgumentException("bucketCount of a resizable set may not exceed " + ConcurrentInt62Set.MAXIMUM_BUCKET_COUNT);
+        }
+        this.initialBucketCount = bucketCount;
+        this.resizable = resizable;
+        this.hashMode = Objects.requireNonNull(hashMode, "hashMode may not be null");
+        this.table = new Table(bucketCount, new SizeCounter(), hashMode, this.contention);
+    }
+
+    /**
+     * Checks whether the set was cleared after a table was obtained. All successors of a table share the same
+     * {@link SizeCounter}, while {@link #clear()} installs a table with a fresh counter. Operations that were
+     * applied to a table of a cleared lineage might not be visible and need to be applied to the current table again.
+     *
+     * @param table The table an operation was applied to
+     * @return True if the table is no longer part of the lineage of the set's current table
+     */
+    private boolean isCleared(Table table) {
+        return this.table.counter != table.counter;
+    }
+
+    public boolean add(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        Table table;
+        boolean added;
+        do {
+            table = this.table;
+            added = table.bucketForWrite(element).add(element);
+            if (added) {
+                table.counter.add(1L);
+            }
+        } while (this.isCleared(table));
+        if (this.resizable) {
+            this.checkResize(table);
+        }
+        return added;
+    }
 
-    private static final long CTRL_BIT_READ = 1L << 63;
-    private static final long INT_32_BITS = 0xFFFF_FFFFL;
-    private static final long INT_63_BITS = ~ConcurrentInt62Set.CTRL_BIT_READ;
-    private static final long INT_62_BITS = ConcurrentInt62Set.INT_63_BITS & ~(1L << 62);
-    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_SIZE = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "size");
-    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_CTRL = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "ctrl");
+    public boolean remove(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        Table table;
+        boolean removed;
+        do {
+            table = this.table;
+            removed = table.remove(element);
+            if (removed) {
+                table.counter.add(-1L);
+            }
+        } while (this.isCleared(table));
+        if (this.resizable) {
+            this.checkResize(table);
+        }
+        return removed;
+    }
 
-    private static int indexFor(long element, int size) {
-        return (int) ((element & ConcurrentInt62Set.INT_32_BITS) ^ (element >> 32)) & (size - 1);
+    public boolean contains(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        Table table;
+        boolean contained;
+        do {
+            table = this.table;
+            contained = table.contains(element);
+        } while (this.isCleared(table));
+        return contained;
     }
 
-    static final class Bucket {
-        volatile int ctrl;
-        volatile AtomicLongArray values;
-        volatile int size;
+    /**
+     * Starts resizing a table if it holds too many elements and assists with transferring the table if it
+     * is being resized.
+     *
+     * @param table The table that was modified
+     */
+    private void checkResize(Table table) {
+        Table next = table.next;
+        if (next == null) {
+            int bucketCount = table.buckets.length();
+            if (table.counter.estimate() < (long) bucketCount * ConcurrentInt62Set.RESIZE_LOAD
+                    || bucketCount >= ConcurrentInt62Set.MAXIMUM_BUCKET_COUNT
+                    || this.table != table) {
+                return;
+            }
+            next = new Table(table.buckets.length() << 1, table.counter, table.hashMode, table.contention);
+            if (!ConcurrentInt62Set.TABLE_NEXT.compareAndSet(table, null, next)) {
+                next = table.next;
+            }
+        }
+        this.transfer(table, next);
+    }
 
-        private final void lockCtrl() {
-            int ctrl;
-            while (!ConcurrentInt62Set.BUCKET_CTRL.compareAndSet(this, ctrl = this.ctrl, -ctrl - 1));
-            while (this.ctrl != -1) {
-                Thread.yield();
+    /**
+     * Resizes the table until its load no longer calls for doubling the amount of buckets. As a batch of elements
+     * may exceed the load of the table several times over, a single call to {@link #checkResize(Table)} would leave
+     * the buckets overloaded until enough single elements are added to trigger the remaining resizes.
+     * Resizes that are being completed by other threads are waited for, so that the load of their successor
+     * can be checked as well.
+     *
+     * @param table The table the batch was applied to
+     */
+    private void checkResizeRepeatedly(Table table) {
+        while (true) {
+            this.checkResize(table);
+            Table current = this.table;
+            if (current == table && table.next == null) {
+                return;
             }
+            table = current;
         }
+    }
 
-        private final void decrementCtrl() {
-            int ctrl;
-            while (!ConcurrentInt62Set.BUCKET_CTRL.compareAndSet(this, ctrl = this.ctrl, ctrl < 0 ? ctrl + 1 : ctrl - 1));
+    /**
+     * Claims ranges of buckets of a table and transfers them to the table's successor until no
+     * buckets remain to be claimed. The thread that completes the last range installs the successor
+     * as the set's table.
+     *
+     * @param table The table that is being resized
+     * @param next The successor of the table
+     */
+    private void transfer(Table table, Table next) {
+        int bucketCount = table.buckets.length();
+        int stride = Math.max((bucketCount >>> 3) / ConcurrentInt62Set.NCPU, ConcurrentInt62Set.MIN_TRANSFER_STRIDE);
+        Bucket forwarder = Bucket.forwarding(next);
+        int end;
+        while ((end = table.transferIndex) > 0) {
+            int start = Math.max(end - stride, 0);
+            if (!ConcurrentInt62Set.TABLE_TRANSFER_INDEX.compareAndSet(table, end, start)) {
+                continue;
+            }
+            for (int i = start; i < end; i++) {
+                ConcurrentInt62Set.transferBucket(table, next, i, forwarder);
+            }
+            if (ConcurrentInt62Set.TABLE_TRANSFERRED.addAndGet(table, end - start) == bucketCount) {
+                ConcurrentInt62Set.TABLE.compareAndSet(this, table, next);
+            }
         }
+    }
 
-        private final void incrementCtrl() {
-            int ctrl;
-            do {
-                while ((ctrl = this.ctrl) < 0) {
-                    Thread.yield();
-                }
-            } while (!ConcurrentInt62Set.BUCKET_CTRL.compareAndSet(this, ctrl, ctrl + 1));
+    /**
+     * Obtains the amount of subtasks a bulk operation should be split into.
+     *
+     * @param table The table the bulk operation operates on
+     * @param parallelismThreshold The (estimated) amount of elements at which the operation should be run in parallel
+     * @return The batch count for the root task, or 0 if the operation should be performed by the calling thread
+     */
+    private static int batchFor(Table table, long parallelismThreshold) {
+        long n;
+        if (parallelismThreshold == Long.MAX_VALUE || (n = table.counter.estimate()) <= 1L || n < parallelismThreshold) {
+            return 0;
         }
+        int sp = ForkJoinPool.getCommonPoolParallelism() << 2;
+        return (parallelismThreshold <= 0L || (n /= parallelismThreshold) >= sp) ? sp : (int) n;
+    }
 
-        boolean contains(long value) {
-            AtomicLongArray values = this.values;
-            if (values == null) {
-                return false;
+    /**
+     * Performs the given action for each element of the set. Much like with {@link ConcurrentHashMap#forEach(long, java.util.function.BiConsumer)},
+     * the action is performed in parallel if the set holds at least <code>parallelismThreshold</code> elements, in which case
+     * the action must be thread-safe and may be invoked in any order.
+     *
+     * @param parallelismThreshold The (estimated) amount of elements needed for this operation to be executed in parallel.
+     * Use {@link Long#MAX_VALUE} to suppress parallelism and 1 to achieve maximal parallelism.
+     * @param action The action to perform for each element
+     */
+    public void forEach(long parallelismThreshold, LongConsumer action) {
+        Objects.requireNonNull(action, "action may not be null");
+        Table table = this.table;
+        new ForEachTask(null, ConcurrentInt62Set.batchFor(table, parallelismThreshold), new Traverser(table), action).invoke();
+    }
+
+    /**
+     * Accumulates the transformation of all elements of the set using the given reducer, performing the operation in
+     * parallel if the set holds at least <code>parallelismThreshold</code> elements. The reducer must be associative, with
+     * <code>basis</code> being its identity element, as the order in which elements are reduced is undefined.
+     *
+     * @param parallelismThreshold The (estimated) amount of elements needed for this operation to be executed in parallel.
+     * Use {@link Long#MAX_VALUE} to suppress parallelism and 1 to achieve maximal parallelism.
+     * @param transformer The transformation applied to each element
+     * @param basis The identity element of the reduction
+     * @param reducer The function combining two (transformed) values
+     * @return The accumulated value
+     */
+    public long reduceToLong(long parallelismThreshold, LongUnaryOperator transformer, long basis, LongBinaryOperator reducer) {
+        Objects.requireNonNull(transformer, "transformer may not be null");
+        Objects.requireNonNull(reducer, "reducer may not be null");
+        Table table = this.table;
+        return new ReduceTask(null, ConcurrentInt62Set.batchFor(table, parallelismThreshold), new Traverser(table), null, transformer, basis, reducer).invoke();
+    }
+
+    /**
+     * Obtains any element of the set matching the given predicate, performing the search in parallel if the set holds
+     * at least <code>parallelismThreshold</code> elements. Once a matching element was found, the remaining subtasks
+     * stop searching at the next bucket boundary. As elements of this set are never negative, -1 is returned if no element
+     * matches the predicate.
+     *
+     * @param parallelismThreshold The (estimated) amount of elements needed for this operation to be executed in parallel.
+     * Use {@link Long#MAX_VALUE} to suppress parallelism and 1 to achieve maximal parallelism.
+     * @param predicate The predicate the element has to match
+     * @return A matching element, or -1 if none was found
+     */
+    public long search(long parallelismThreshold, LongPredicate predicate) {
+        Objects.requireNonNull(predicate, "predicate may not be null");
+        Table table = this.table;
+        return new SearchTask(null, ConcurrentInt62Set.batchFor(table, parallelismThreshold), new Traverser(table), predicate, new AtomicLong(-1L)).invoke();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Unlike the default implementation, no iterator is created. Instead, the array of each bucket is read
+     * exactly once. The action is performed by the calling thread, use {@link #forEach(long, LongConsumer)} for
+     * performing the action in parallel.
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action, "action may not be null");
+        new Traverser(this.table).forEachRemaining(action);
+    }
+
+    /**
+     * Compacts all buckets of the set, such that the memory used by each bucket corresponds to the amount of
+     * elements it holds. Buckets that are empty release their internal array altogether, whereas tombstones
+     * left behind by removed elements are purged from all other buckets. Each bucket is exclusively locked
+     * while it is compacted, which is why concurrent modifications of the bucket need to wait until the
+     * bucket was compacted.
+     *
+     * <p>Buckets are compacted automatically once the load of a bucket drops significantly, so calling this
+     * method is only necessary to release memory as soon as possible, for example after removing a large
+     * amount of elements.
+     */
+    public void trim() {
+        Traverser traverser = new Traverser(this.table);
+        for (Bucket bucket; (bucket = traverser.next()) != null;) {
+            AtomicLongArray values = bucket.values;
+            if (values != null) {
+                bucket.shrinkValues(values);
             }
-            value |= ConcurrentInt62Set.CTRL_BIT_READ;
-            int index = values.length();
-            while (index-- != 0) {
-                if (values.get(index) == value) {
-                    return true;
+        }
+    }
+
+    /**
+     * Appends the elements of a bucket of a table to a list, including the elements of the buckets the bucket was
+     * split into by a resize. Each bucket is copied while it is exclusively locked, so the copy never reflects a
+     * partially applied sequence of modifications of a bucket.
+     *
+     * @param table The table holding the bucket
+     * @param index The index of the bucket within the table
+     * @param elements The list to append the elements to
+     */
+    private static void copyBucket(Table table, int index, LongArrayList elements) {
+        int mark = elements.size();
+        retry:
+        while (true) {
+            Traverser traverser = new Traverser(table, index, index + 1);
+            for (Bucket bucket; (bucket = traverser.next()) != null;) {
+                if (!bucket.copyTo(elements)) {
+                    // The bucket was split after it was enumerated, start over with the buckets it was split into
+                    elements.size(mark);
+                    continue retry;
                 }
             }
-            return false;
+            return;
         }
+    }
 
-        boolean add(long element) {
-            this.incrementCtrl();
-            AtomicLongArray values = this.values;
-            if (values == null) {
-                this.decrementCtrl();
-                this.growValues(values);
-                return this.add(element);
+    /**
+     * Creates a copy of the set which is independent of the set. The copy uses the same amount of buckets,
+     * {@link HashMode} and resizing behaviour as this set.
+     *
+     * <p>The buckets of the set are copied one after another, where each bucket is exclusively locked while it is
+     * copied. Modifications of a bucket hence have to wait at most for the bucket to be copied, and the copy of each
+     * bucket reflects a state the bucket actually had. Modifications of buckets that were not yet copied are included
+     * in the copy, so the copy only corresponds to a single point in time if the set is not modified concurrently.
+     *
+     * @return A copy of the set
+     */
+    public ConcurrentInt62Set snapshot() {
+        Table table = this.table;
+        int bucketCount = table.buckets.length();
+        ConcurrentInt62Set copy = new ConcurrentInt62Set(this.initialBucketCount, this.resizable, this.hashMode);
+        Table target = copy.table;
+        if (bucketCount != this.initialBucketCount) {
+            target = new Table(bucketCount, target.counter, target.hashMode, copy.contention);
+        }
+
+        LongArrayList elements = new LongArrayList();
+        long total = 0L;
+        for (int i = 0; i < bucketCount; i++) {
+            elements.clear();
+            ConcurrentInt62Set.copyBucket(table, i, elements);
+            int count = elements.size();
+            if (count == 0) {
+                continue;
             }
+            long[] entries = elements.elements();
+            for (int j = 0; j < count; j++) {
+                entries[j] |= ConcurrentInt62Set.CTRL_BIT_READ;
+            }
+            target.buckets.set(i, Bucket.of(copy.contention, entries, count));
+            total += count;
+        }
 
+        target.counter.add(total);
+        copy.table = target;
+        return copy;
+    }
 
-            int len = ConcurrentInt62Set.BUCKET_SIZE.incrementAndGet(this);
-            if (len >= values.length()) {
-                this.decrementCtrl();
-                this.growValues(values);
-                ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
-                return this.add(element);
-            }
+    /**
+     * Creates an iterator which copies each bucket of the set at the time the iterator reaches the bucket, in the
+     * same way as {@link #snapshot()} does. Unlike the iterator returned by {@link #iterator()}, elements that
+     * belong to the same bucket are hence enumerated as of a single point in time, while only a single bucket needs
+     * to be held in memory at once.
+     *
+     * <p>{@link LongIterator#remove()} removes the last returned element from the set.
+     *
+     * @return An iterator over copies of the buckets of the set
+     */
+    public LongIterator snapshotIterator() {
+        return new LongIterator() {
+            private final Table table = ConcurrentInt62Set.this.table;
+            private final LongArrayList elements = new LongArrayList();
+            private int bucketIndex;
+            private int index;
+            private boolean hasLast;
+            private long lastValue;
 
-            int index = values.length();
-            int storeIndex = -1;
-            while (index-- != 0) {
-                if (storeIndex == -1 && values.compareAndSet(index, 0, element)) {
-                    storeIndex = index;
-                } else {
-                    if ((values.get(index) & ~ConcurrentInt62Set.CTRL_BIT_READ) == element) {
-                        if (storeIndex >= 0) {
-                            values.set(storeIndex, 0);
-                        }
-                        ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
-                        this.decrementCtrl();
+            @Override
+            public boolean hasNext() {
+                while (this.index == this.elements.size()) {
+                    if (this.bucketIndex == this.table.buckets.length()) {
                         return false;
                     }
+                    this.elements.clear();
+                    this.index = 0;
+                    ConcurrentInt62Set.copyBucket(this.table, this.bucketIndex++, this.elements);
                 }
+                return true;
             }
 
-            if (storeIndex >= 0) {
-                if (!values.compareAndSet(storeIndex, element, element | CTRL_BIT_READ)) {
-                    ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
-                    this.decrementCtrl();
-                    throw new AssertionError("Unable to CAS back to read-enabled (but not write-disabled) state.");
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
                 }
-                this.decrementCtrl();
-                return true;
+                this.hasLast = true;
+                return this.lastValue = this.elements.getLong(this.index++);
             }
 
-            ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
-            this.decrementCtrl();
-            return this.add(element);
-        }
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
 
-        boolean remove(long element) {
-            this.incrementCtrl();
-            AtomicLongArray values = this.values;
-            if (values == null) {
-                this.decrementCtrl();
-                return false;
+                if (!ConcurrentInt62Set.this.remove(this.lastValue)) {
+                    throw new IllegalStateException("Element already removed.");
+                }
             }
+        };
+    }
 
-            int index = values.length();
-            while (index-- != 0) {
-                long value = values.get(index);
-                if ((value & ~ConcurrentInt62Set.CTRL_BIT_READ) != element) {
-                    continue;
+    /**
+     * Creates an iterator which returns the elements of the set in ascending order. Creating the iterator copies every
+     * element of the set up front into a single array, sorting the elements of each bucket individually. The sorted
+     * buckets are then merged lazily as the iterator advances. The iterator hence occupies 8 bytes per element of the
+     * set regardless of how many elements are consumed, but unlike {@link #toSortedLongArray()} it does not allocate
+     * a second array for the merged elements.
+     *
+     * <p>The buckets are read without locking them, so elements that are added or removed while the iterator is
+     * created may or may not be returned, whereas later modifications are not reflected by the iterator at all.
+     * Each element is returned at most once.
+     * {@link LongIterator#remove()} removes the last returned element from the set.
+     *
+     * @return An iterator over the elements of the set in ascending order
+     */
+    public LongIterator sortedIterator() {
+        return new LongIterator() {
+            private final SortedMerge merge = new SortedMerge(ConcurrentInt62Set.this.table);
+            private boolean hasNextValue;
+            private boolean hasLast;
+            private long lastValue;
+
+            @Override
+            public boolean hasNext() {
+                return this.hasNextValue || (this.hasNextValue = this.merge.advance());
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
                 }
-                if (!values.compareAndSet(index, value, 0)) {
-                    index++;
-                    continue;
+                this.hasNextValue = false;
+                this.hasLast = true;
+                return this.lastValue = this.merge.current;
+            }
+
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+
+                this.hasLast = false;
+                if (!ConcurrentInt62Set.this.remove(this.lastValue)) {
+                    throw new IllegalStateException("Element already removed.");
                 }
-                ConcurrentInt62Set.BUCKET_SIZE.decrementAndGet(this);
-                this.decrementCtrl();
-                return true;
             }
+        };
+    }
 
-            this.decrementCtrl();
-            return false;
-        }
+    /**
+     * Obtains the elements of the set in ascending order. Instead of sorting a copy of all elements at once,
+     * the elements of each bucket are sorted individually while being copied, after which the sorted buckets are
+     * merged into the returned array. Until the merge completes, both the copy and the returned array are held in
+     * memory, so this method temporarily requires 16 bytes per element of the set. {@link #sortedIterator()} only
+     * requires the copy.
+     *
+     * <p>The set is not locked while it is copied, so elements that are added or removed concurrently may or may not
+     * be contained in the returned array. Each element is contained at most once.
+     *
+     * @return A newly allocated array holding the elements of the set in ascending order
+     */
+    public long[] toSortedLongArray() {
+        return new SortedMerge(this.table).drain();
+    }
 
-        synchronized void growValues(AtomicLongArray witness) {
-            if (this.values != witness) {
-                return;
+    /**
+     * Writes the elements of the set to a channel, from which the set can be restored using
+     * {@link #readFrom(ReadableByteChannel)}. The elements are written bucket by bucket in ascending order of
+     * the bucket indices, where the elements of each bucket are sorted and stored as the variable-length encoded
+     * differences between consecutive elements. Sets whose elements lie close to each other hence occupy considerably
+     * less than eight bytes per element, especially if the set has few buckets.
+     *
+     * <p>The set is not locked while it is written, so elements that are added or removed concurrently may or may not
+     * be written. However, each element that is neither added nor removed while the set is written will be written
+     * exactly once.
+     *
+     * <p>The channel is neither flushed nor closed by this method.
+     *
+     * @param channel The channel to write the set to
+     * @throws IOException If writing to the channel fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "channel may not be null");
+        Table table = this.table;
+        int bucketCount = table.buckets.length();
+        ByteBuffer buffer = ByteBuffer.allocate(ConcurrentInt62Set.SNAPSHOT_BUFFER_SIZE);
+        buffer.putInt(ConcurrentInt62Set.SNAPSHOT_MAGIC);
+        buffer.put(ConcurrentInt62Set.SNAPSHOT_VERSION);
+        buffer.put((byte) (this.resizable ? 1 : 0));
+        buffer.put((byte) table.hashMode.ordinal());
+        buffer.putInt(this.initialBucketCount);
+        buffer.putInt(bucketCount);
+
+        long[] elements = new long[16];
+        for (int i = 0; i < bucketCount; i++) {
+            int count = 0;
+            // Buckets which were split by a concurrent resize are written as the bucket they were split from
+            Traverser traverser = new Traverser(table, i, i + 1);
+            for (Bucket bucket; (bucket = traverser.next()) != null;) {
+                AtomicLongArray values = bucket.values;
+                if (values == null) {
+                    continue;
+                }
+                for (int j = 0, len = values.length(); j < len; j++) {
+                    long value = values.get(j);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                        continue;
+                    }
+                    if (count == elements.length) {
+                        elements = Arrays.copyOf(elements, count << 1);
+                    }
+                    elements[count++] = value & ConcurrentInt62Set.INT_62_BITS;
+                }
             }
-            if (witness == null) {
-                this.values = new AtomicLongArray(16);
-                return;
+            Arrays.sort(elements, 0, count);
+            int unique = 0;
+            for (int j = 0; j < count; j++) {
+                if (unique == 0 || elements[j] != elements[unique - 1]) {
+                    elements[unique++] = elements[j];
+                }
             }
 
-            this.lockCtrl();
-
-            int len = witness.length();
-            AtomicLongArray grown = new AtomicLongArray(len << 1);
-            for (int i = 0; i < len; i++) {
-                grown.set(i + len, witness.get(i));
+            ConcurrentInt62Set.writeVarLong(channel, buffer, unique);
+            long previous = 0L;
+            for (int j = 0; j < unique; j++) {
+                ConcurrentInt62Set.writeVarLong(channel, buffer, elements[j] - previous);
+                previous = elements[j];
             }
-            this.values = grown;
-            ConcurrentInt62Set.BUCKET_CTRL.incrementAndGet(this);
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
     }
 
-    public ConcurrentInt62Set(int bucketCount) {
-        if (Integer.bitCount(bucketCount) != 1) {
-            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+    /**
+     * Restores a set that was written using {@link #writeTo(WritableByteChannel)}. The restored set uses the same
+     * amount of buckets, {@link HashMode} and resizing behaviour as the set that was written. Each bucket is restored
+     * as a whole before the set is returned, so restoring the set is considerably cheaper than adding the
+     * elements one by one.
+     *
+     * <p>The channel is read using a buffer, so bytes following the written set may have been consumed from the
+     * channel once this method returns. The channel is not closed by this method.
+     *
+     * @param channel The channel to read the set from
+     * @return The restored set
+     * @throws IOException If reading from the channel fails or the channel does not hold a valid set
+     */
+    public static ConcurrentInt62Set readFrom(ReadableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "channel may not be null");
+        ByteBuffer buffer = ByteBuffer.allocate(ConcurrentInt62Set.SNAPSHOT_BUFFER_SIZE);
+        buffer.flip();
+        ConcurrentInt62Set.require(channel, buffer, 15);
+        if (buffer.getInt() != ConcurrentInt62Set.SNAPSHOT_MAGIC) {
+            throw new IOException("The channel does not hold a ConcurrentInt62Set");
+        }
+        byte version = buffer.get();
+        if (version != ConcurrentInt62Set.SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        byte resizable = buffer.get();
+        int hashMode = buffer.get();
+        int initialBucketCount = buffer.getInt();
+        int bucketCount = buffer.getInt();
+        if ((resizable & ~1) != 0 || hashMode < 0 || hashMode >= HashMode.values().length
+                || Integer.bitCount(initialBucketCount) != 1 || Integer.bitCount(bucketCount) != 1
+                || (resizable == 0 ? bucketCount != initialBucketCount : bucketCount > ConcurrentInt62Set.MAXIMUM_BUCKET_COUNT)) {
+            throw new IOException("Malformed snapshot header");
+        }
+
+        ConcurrentInt62Set set;
+        try {
+            set = new ConcurrentInt62Set(initialBucketCount, resizable != 0, HashMode.values()[hashMode]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot header", e);
+        }
+        Table table = set.table;
+        if (bucketCount != initialBucketCount) {
+            table = new Table(bucketCount, table.counter, table.hashMode, set.contention);
         }
-        this.bucketCount = bucketCount;
-        this.buckets = new Bucket[bucketCount];
-        for (int i = 0; i < this.bucketCount; i++) {
-            this.buckets[i] = new Bucket();
+
+        long total = 0L;
+        long[] entries = new long[16];
+        for (int i = 0; i < bucketCount; i++) {
+            long count = ConcurrentInt62Set.readVarLong(channel, buffer);
+            if (count > Integer.MAX_VALUE - 8) {
+                throw new IOException("Bucket " + i + " holds too many elements: " + count);
+            }
+            long element = 0L;
+            for (int j = 0; j < count; j++) {
+                long delta = ConcurrentInt62Set.readVarLong(channel, buffer);
+                if ((delta == 0L && j != 0) || delta > ConcurrentInt62Set.INT_62_BITS - element) {
+                    throw new IOException("Malformed element within bucket " + i);
+                }
+                element += delta;
+                if (table.indexFor(element) != i) {
+                    throw new IOException("Element " + element + " does not belong to bucket " + i);
+                }
+                if (j == entries.length) {
+                    entries = Arrays.copyOf(entries, (int) Math.min(count, (long) j << 1));
+                }
+                entries[j] = element | ConcurrentInt62Set.CTRL_BIT_READ;
+            }
+            if (count != 0) {
+                table.buckets.set(i, Bucket.of(set.contention, entries, (int) count));
+                total += count;
+            }
         }
+
+        table.counter.add(total);
+        set.table = table;
+        return set;
     }
 
-    public boolean add(long element) {
-        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
-            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+    private static void writeVarLong(WritableByteChannel channel, ByteBuffer buffer, long value) throws IOException {
+        if (buffer.remaining() < ConcurrentInt62Set.VARINT_MAX_BYTES) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
         }
-        element++;
-        return this.buckets[ConcurrentInt62Set.indexFor(element, this.bucketCount)].add(element);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
     }
 
-    public boolean remove(long element) {
-        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
-            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+    private static long readVarLong(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        long value = 0L;
+        for (int shift = 0; shift < 7 * ConcurrentInt62Set.VARINT_MAX_BYTES; shift += 7) {
+            ConcurrentInt62Set.require(channel, buffer, 1);
+            byte b = buffer.get();
+            value |= (b & 0x7FL) << shift;
+            if (b >= 0) {
+                return value;
+            }
         }
-        element++;
-        return this.buckets[ConcurrentInt62Set.indexFor(element, this.bucketCount)].remove(element);
+        throw new IOException("Malformed variable-length value");
     }
 
-    public boolean contains(long element) {
-        element++;
-        return this.buckets[ConcurrentInt62Set.indexFor(element, this.bucketCount)].contains(element);
+    /**
+     * Reads from a channel until a buffer in read mode holds at least the given amount of bytes.
+     *
+     * @param channel The channel to read from
+     * @param buffer The buffer to read into, which is in read mode both before and after the call
+     * @param length The amount of bytes that need to be available
+     * @throws IOException If reading from the channel fails or the channel ends prematurely
+     */
+    private static void require(ReadableByteChannel channel, ByteBuffer buffer, int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < length) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Unexpected end of snapshot");
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned array is sized according to the amount of elements of the set, and only grows if elements are
+     * added concurrently.
+     */
     @Override
     public long[] toLongArray() {
-        LongArrayList list = new LongArrayList();
-        this.iterator().forEachRemaining(list::add);
-        return list.toLongArray();
+        Table table = this.table;
+        long[] array = new long[(int) Math.min(Math.max(0L, table.counter.sum()), Integer.MAX_VALUE - 8)];
+        int count = 0;
+        Traverser traverser = new Traverser(table);
+        for (Bucket bucket; (bucket = traverser.next()) != null;) {
+            AtomicLongArray values = bucket.values;
+            if (values == null) {
+                continue;
+            }
+            for (int i = 0, len = values.length(); i < len; i++) {
+                long value = values.get(i);
+                if ((value & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                    continue;
+                }
+                if (count == array.length) {
+                    array = Arrays.copyOf(array, Math.max(count + (count >>> 1), count + bucket.size + 1));
+                }
+                array[count++] = value & ConcurrentInt62Set.INT_62_BITS;
+            }
+        }
+        return count == array.length ? array : Arrays.copyOf(array, count);
     }
 
     @Override
@@ -302,48 +2674,187 @@ public final class ConcurrentInt62Set implements LongSet {
         }
     }
 
+    /**
+     * Checks whether a batch of elements is too small compared to the amount of buckets of a table for grouping
+     * the elements by bucket to be worthwhile.
+     *
+     * @param table The table the batch is applied to
+     * @param length The amount of elements in the batch
+     * @return True if the elements should be applied one by one
+     */
+    private static boolean isSparseBatch(Table table, int length) {
+        return length < ConcurrentInt62Set.MIN_TRANSFER_STRIDE || length < (table.buckets.length() >>> 2);
+    }
+
+    /**
+     * Adds or removes a batch of already validated elements from a table.
+     *
+     * @param table The table to modify
+     * @param elements The array holding the elements
+     * @param offset The index of the first element of the batch
+     * @param length The amount of elements in the batch
+     * @param remove Whether the elements should be removed instead of added
+     * @return The amount of elements that were added or removed
+     */
+    private static long applyBatch(Table table, long[] elements, int offset, int length, boolean remove) {
+        if (ConcurrentInt62Set.isSparseBatch(table, length)) {
+            long modified = 0;
+            for (int i = offset; i < offset + length; i++) {
+                if (remove ? table.remove(elements[i]) : table.bucketForWrite(elements[i]).add(elements[i])) {
+                    modified++;
+                }
+            }
+            return modified;
+        }
+        long[] grouped = new long[length];
+        int[] starts = ConcurrentInt62Set.groupByBucket(table, elements, offset, length, grouped);
+        if (length >= ConcurrentInt62Set.PARALLEL_BATCH_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            AtomicLong modified = new AtomicLong();
+            new BatchTask(null, table, grouped, starts, remove, 0, starts.length, modified).invoke();
+            return modified.get();
+        }
+        return ConcurrentInt62Set.applyGrouped(table, grouped, starts, 0, starts.length, remove);
+    }
+
+    /**
+     * Adds a range of elements of an array to this set. The elements are grouped by the bucket they belong to,
+     * so that each bucket only needs to be acquired once for all of its elements. Very large batches are applied
+     * to the buckets in parallel using the {@link ForkJoinPool#commonPool()}.
+     *
+     * <p>Much like {@link #addAll(LongCollection)}, this operation is not atomic. However, all elements are validated
+     * before any element is added.
+     *
+     * @param elements The array holding the elements to add
+     * @param offset The index of the first element to add
+     * @param length The amount of elements to add
+     * @return True if at least one element was added
+     * @throws IllegalArgumentException If any of the elements is not a 62-bit unsigned integer
+     */
+    public boolean addAll(long[] elements, int offset, int length) {
+        LongArrays.ensureOffsetLength(elements, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            if ((elements[i] & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+                throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + elements[i]);
+            }
+        }
+        Table table;
+        long added;
+        do {
+            table = this.table;
+            added = ConcurrentInt62Set.applyBatch(table, elements, offset, length, false);
+            if (added != 0) {
+                table.counter.add(added);
+            }
+        } while (this.isCleared(table));
+        if (this.resizable) {
+            this.checkResizeRepeatedly(table);
+        }
+        return added != 0;
+    }
+
+    /**
+     * Removes a range of elements of an array from this set. The elements are grouped by the bucket they belong to,
+     * so that each bucket only needs to be acquired once for all of its elements.
+     *
+     * @param elements The array holding the elements to remove
+     * @param offset The index of the first element to remove
+     * @param length The amount of elements to remove
+     * @return True if at least one element was removed
+     * @throws IllegalArgumentException If any of the elements is not a 62-bit unsigned integer
+     */
+    public boolean removeAll(long[] elements, int offset, int length) {
+        LongArrays.ensureOffsetLength(elements, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            if ((elements[i] & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+                throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + elements[i]);
+            }
+        }
+        Table table;
+        long removed;
+        do {
+            table = this.table;
+            removed = ConcurrentInt62Set.applyBatch(table, elements, offset, length, true);
+            if (removed != 0) {
+                table.counter.add(-removed);
+            }
+        } while (this.isCleared(table));
+        return removed != 0;
+    }
+
     @Override
     public boolean addAll(LongCollection c) {
-        LongIterator lt = c.longIterator();
-        boolean modified = false;
-        while (lt.hasNext()) {
-            modified |= this.add(lt.nextLong());
-        }
-        return modified;
+        long[] elements = c.toLongArray();
+        return this.addAll(elements, 0, elements.length);
     }
 
     @Override
     public boolean containsAll(LongCollection c) {
-        LongIterator lt = c.longIterator();
-        while (lt.hasNext()) {
-            if (!this.contains(lt.nextLong())) {
+        long[] elements = c.toLongArray();
+        Table table = this.table;
+        if (ConcurrentInt62Set.isSparseBatch(table, elements.length)) {
+            for (long element : elements) {
+                if (!this.contains(element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (long element : elements) {
+            if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+                return false;
+            }
+        }
+        long[] grouped = new long[elements.length];
+        int[] starts = ConcurrentInt62Set.groupByBucket(table, elements, 0, elements.length, grouped);
+        for (int i = 0; i < starts.length; i++) {
+            int start = starts[i];
+            int end = i + 1 == starts.length ? grouped.length : starts[i + 1];
+            if (start == end) {
+                continue;
+            }
+            Bucket bucket = table.buckets.get(i);
+            if (bucket == null) {
                 return false;
             }
+            for (int j = start; j < end; j++) {
+                if (!bucket.contains(grouped[j])) {
+                    return false;
+                }
+            }
         }
         return true;
     }
 
     @Override
     public boolean removeAll(LongCollection c) {
-        LongIterator lt = c.longIterator();
-        boolean modified = false;
-        while (lt.hasNext()) {
-            modified |= this.remove(lt.nextLong());
-        }
-        return modified;
+        long[] elements = c.toLongArray();
+        return this.removeAll(elements, 0, elements.length);
     }
 
     @Override
     public boolean retainAll(LongCollection c) {
-        LongIterator it = this.longIterator();
+        Objects.requireNonNull(c, "c may not be null");
+        return this.removeIf((long value) -> !c.contains(value));
+    }
+
+    @Override
+    public boolean removeIf(LongPredicate filter) {
+        Objects.requireNonNull(filter, "filter may not be null");
         boolean modified = false;
-        while (it.hasNext()) {
-            if (!c.contains(it.nextLong())) {
-                it.remove();
-                modified = true;
+        Traverser traverser = new Traverser(this.table);
+        for (Bucket bucket; (bucket = traverser.next()) != null;) {
+            AtomicLongArray values = bucket.values;
+            if (values == null) {
+                continue;
+            }
+            for (int i = 0, len = values.length(); i < len; i++) {
+                long value = values.get(i);
+                if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0 && filter.test(value &= ConcurrentInt62Set.INT_62_BITS)
+                        && this.remove(value)) {
+                    modified = true;
+                }
             }
         }
-
         return modified;
     }
 
@@ -357,32 +2868,68 @@ public final class ConcurrentInt62Set implements LongSet {
         return modified;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The amount of elements is tracked by a striped counter, which is why this method runs in time proportional
+     * to the amount of stripes (which never exceeds the amount of processors) rather than the amount of buckets.
+     * Modifications that happen concurrently to this method call may not be reflected by the returned value.
+     */
     @Override
     public int size() {
-        int size = 0;
-        for (Bucket b : this.buckets) {
-            size += b.size;
-        }
-        return size;
+        long size = this.table.counter.sum();
+        return size <= 0 ? 0 : (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Obtains an estimate of the amount of elements in this set. Unlike {@link #size()}, this method runs in constant
+     * time, never allocates and never blocks, making it suitable for frequent polling such as for monitoring purposes.
+     *
+     * <p>If the set is only ever modified by one thread at a time, the returned value is exact. Otherwise it may deviate
+     * from the actual amount of elements by up to 32 times the smallest power of two that is no smaller than the amount
+     * of available processors.
+     *
+     * @return The estimated amount of elements, as a long
+     */
+    public long estimatedSize() {
+        return Math.max(0L, this.table.counter.estimate());
+    }
+
+    /**
+     * Obtains the amount of times a thread could not access a bucket immediately because the bucket was being
+     * rehashed or transferred during a resize, or because the thread had to wait for other threads to leave the bucket
+     * before rehashing or transferring it. The count is maintained over the entire lifetime of the set.
+     *
+     * @return The amount of contended accesses to buckets
+     */
+    public long getContendedAccessCount() {
+        return this.contention.contended.sum();
+    }
+
+    /**
+     * Obtains the amount of times a thread parked while waiting for a bucket to become available, which only happens
+     * if waiting takes longer than a short period of busy-waiting. The count is maintained over the entire lifetime
+     * of the set.
+     *
+     * @return The amount of times threads parked
+     */
+    public long getParkCount() {
+        return this.contention.parked.sum();
     }
 
     @Override
     public boolean isEmpty() {
-        return size() == 0;
+        return this.table.counter.sum() <= 0;
     }
 
     @Override
     public Object[] toArray() {
-        LongArrayList list = new LongArrayList();
-        this.iterator().forEachRemaining(list::add);
-        return list.toArray();
+        return LongArrayList.wrap(this.toLongArray()).toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        LongArrayList list = new LongArrayList();
-        this.iterator().forEachRemaining(list::add);
-        return list.toArray(a);
+        return LongArrayList.wrap(this.toLongArray()).toArray(a);
     }
 
     @Override
@@ -398,16 +2945,8 @@ public final class ConcurrentInt62Set implements LongSet {
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        LongIterator it = this.longIterator();
-        boolean modified = false;
-        while (it.hasNext()) {
-            if (!c.contains(it.nextLong())) {
-                it.remove();
-                modified = true;
-            }
-        }
-
-        return modified;
+        Objects.requireNonNull(c, "c may not be null");
+        return this.removeIf((long value) -> !c.contains(value));
     }
 
     @Override
@@ -422,87 +2961,110 @@ public final class ConcurrentInt62Set implements LongSet {
         return modified;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The set is cleared by atomically replacing the table with an empty table whose buckets are allocated lazily,
+     * which is why this method neither blocks nor depends on the amount of elements. Operations that were still in
+     * progress on the previous table are applied to the new table again, so that an element added concurrently
+     * to this method call is either cleared or remains present afterwards, but is never silently lost.
+     */
     @Override
     public void clear() {
-        // Not that efficient but should do the job for now
-        for (int i = 0; i < this.bucketCount; i++) {
-            this.buckets[i] = new Bucket();
-        }
+        this.table = new Table(this.initialBucketCount, new SizeCounter(), this.hashMode, this.contention);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned spliterator is split by ranges of buckets and reports {@link Spliterator#CONCURRENT},
+     * {@link Spliterator#DISTINCT} and {@link Spliterator#NONNULL}. The size estimate is based on the amount of
+     * elements at the time the spliterator was created and is halved alongside the range of buckets whenever
+     * the spliterator is split.
+     */
+    @Override
+    public LongSpliterator spliterator() {
+        Table table = this.table;
+        return new BucketSpliterator(new Traverser(table), Math.max(0L, table.counter.sum()));
     }
 
     @Override
     public LongIterator iterator() {
         return new LongIterator() {
-            private final Bucket[] buckets = ConcurrentInt62Set.this.buckets;
-            private int indexGlobal = -1;
+            private final Traverser traverser = new Traverser(ConcurrentInt62Set.this.table);
             private int indexBucket;
-            private int lastIdxG = -1;
             private AtomicLongArray currentBucketArray;
+            /**
+             * Whether {@link #nextValue} holds the element that is returned by the next call to {@link #nextLong()}.
+             * The element is read as soon as its slot is found, so that concurrent removals cannot exhaust the
+             * iterator between {@link #hasNext()} and {@link #nextLong()}.
+             */
+            private boolean hasNextValue;
+            private long nextValue;
+            private boolean hasLast;
             private long lastValue;
 
             @Override
             public boolean hasNext() {
-                if (this.indexGlobal == -1) {
-                    this.indexGlobal = 0;
-                    this.currentBucketArray = this.buckets[0].values;
-                }
-                if (this.indexGlobal >= this.buckets.length || this.currentBucketArray == null) {
-                    return false;
+                if (this.hasNextValue) {
+                    return true;
                 }
-                int len = this.currentBucketArray.length();
-                while ((this.currentBucketArray.get(this.indexBucket) & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
-                    if (++this.indexBucket == len) {
-                        if (++this.indexGlobal >= this.buckets.length) {
-                            return false;
+                while (true) {
+                    // As elements are hashed within their bucket, any slot may be empty (including the last one)
+                    // and buckets that never had an element added to them do not have an array at all.
+                    AtomicLongArray values = this.currentBucketArray;
+                    if (values != null) {
+                        int len = values.length();
+                        while (this.indexBucket < len) {
+                            long value = values.get(this.indexBucket++);
+                            if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                                this.nextValue = value & ConcurrentInt62Set.INT_62_BITS;
+                                return this.hasNextValue = true;
+                            }
                         }
-                        this.currentBucketArray = this.buckets[this.indexGlobal].values;
-                        len = this.currentBucketArray.length();
                     }
+                    Bucket bucket = this.traverser.next();
+                    if (bucket == null) {
+                        this.currentBucketArray = null;
+                        return false;
+                    }
+                    this.currentBucketArray = bucket.values;
+                    this.indexBucket = 0;
                 }
-                return true;
             }
 
             @Override
             public long nextLong() {
-                if (this.indexGlobal == -1) {
-                    this.hasNext();
-                }
-
-                if (this.indexGlobal > this.buckets.length) {
-                    throw new NoSuchElementException("Iterator exhausted. (Note: In very rare cases this can be caused by resizing internal Arrays. In other cases this can be traced back to concurrency problems. The usage of the iterator in concurrent environments is dangerous.)");
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
                 }
+                this.hasNextValue = false;
+                this.hasLast = true;
+                return this.lastValue = this.nextValue;
+            }
 
-                long val = this.currentBucketArray.get(this.indexBucket);
-                while ((val & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
-                    if (this.hasNext()) {
-                        val = this.currentBucketArray.get(this.indexBucket);
-                    } else {
-                        throw new NoSuchElementException("Iterator exhausted. (Note: In very rare cases this can be caused by resizing internal Arrays. In other cases this can be traced back to concurrency problems. The usage of the iterator in concurrent environments is dangerous.)");
-                    }
+            @Override
+            public void forEachRemaining(LongConsumer action) {
+                Objects.requireNonNull(action, "action may not be null");
+                if (this.hasNextValue) {
+                    this.hasNextValue = false;
+                    action.accept(this.nextValue);
                 }
-
-                this.lastIdxG = this.indexGlobal;
-                this.lastValue = val &= ConcurrentInt62Set.INT_63_BITS;
-
-                if (++this.indexBucket == this.currentBucketArray.length()) {
-                    this.indexBucket = 0;
-                    if (++this.indexGlobal == this.buckets.length) {
-                        this.currentBucketArray = null;
-                    } else {
-                        this.currentBucketArray = this.buckets[this.indexGlobal].values;
-                    }
+                AtomicLongArray values = this.currentBucketArray;
+                if (values != null) {
+                    this.currentBucketArray = null;
+                    ConcurrentInt62Set.forEachInArray(values, this.indexBucket, action);
                 }
-
-                return val - 1;
+                this.traverser.forEachRemaining(action);
             }
 
             @Override
             public void remove() {
-                if (this.lastIdxG == -1) {
+                if (!this.hasLast) {
                     throw new IllegalStateException("#next() has not been called!");
                 }
 
-                if (!this.buckets[this.lastIdxG].remove(this.lastValue)) {
+                if (!ConcurrentInt62Set.this.remove(this.lastValue)) {
                     throw new IllegalStateException("Element already removed.");
                 }
             }
@@ -0,0 +1,189 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent set accepting every long, including negative values. The set is a thin layer over four
+ * {@link ConcurrentInt62Set} partitions: The two most significant bits of an element select the partition, while the
+ * remaining 62 bits are stored within the partition. The two bits that {@link ConcurrentInt62Set} reserves for control
+ * state are hence implied by the partition an element is stored in rather than stored alongside the element, so the
+ * set performs the same as a {@link ConcurrentInt62Set} and never boxes elements.
+ *
+ * <p>All guarantees of {@link ConcurrentInt62Set} apply to each partition. In particular, iterators are weakly
+ * consistent and never fail after {@link LongIterator#hasNext()} returned true. Elements which are distributed
+ * uniformly, such as hashes or fingerprints, are split evenly across the partitions.
+ */
+public final class ConcurrentLongSet extends AbstractLongSet {
+
+    private static final int PARTITION_SHIFT = 62;
+
+    private final ConcurrentInt62Set[] partitions = new ConcurrentInt62Set[4];
+
+    /**
+     * Creates a resizable set whose partitions have an initial amount of 16 buckets each, using {@link HashMode#MIXED}.
+     */
+    public ConcurrentLongSet() {
+        this(16, true, HashMode.MIXED);
+    }
+
+    /**
+     * Creates a set that is optionally resizable and which maps elements to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The (initial) amount of buckets of each of the four partitions, must be a power of two
+     * @param resizable Whether the amount of buckets should grow alongside the amount of elements
+     * @param hashMode The strategy used to map the lower 62 bits of elements to buckets
+     * @see ConcurrentInt62Set#ConcurrentInt62Set(int, boolean, HashMode)
+     */
+    public ConcurrentLongSet(int bucketCount, boolean resizable, HashMode hashMode) {
+        for (int i = 0; i < this.partitions.length; i++) {
+            this.partitions[i] = new ConcurrentInt62Set(bucketCount, resizable, hashMode);
+        }
+    }
+
+    private ConcurrentInt62Set partitionFor(long element) {
+        return this.partitions[(int) (element >>> ConcurrentLongSet.PARTITION_SHIFT)];
+    }
+
+    @Override
+    public boolean add(long element) {
+        return this.partitionFor(element).add(element & ConcurrentInt62Set.INT_62_BITS);
+    }
+
+    @Override
+    public boolean remove(long element) {
+        return this.partitionFor(element).remove(element & ConcurrentInt62Set.INT_62_BITS);
+    }
+
+    @Override
+    public boolean contains(long element) {
+        return this.partitionFor(element).contains(element & ConcurrentInt62Set.INT_62_BITS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The partitions are cleared one after another, so elements added to a partition that was already cleared
+     * remain in the set.
+     */
+    @Override
+    public void clear() {
+        for (ConcurrentInt62Set partition : this.partitions) {
+            partition.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = 0L;
+        for (ConcurrentInt62Set partition : this.partitions) {
+            size += partition.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentInt62Set partition : this.partitions) {
+            if (!partition.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compacts the buckets of all partitions of the set.
+     *
+     * @see ConcurrentInt62Set#trim()
+     */
+    public void trim() {
+        for (ConcurrentInt62Set partition : this.partitions) {
+            partition.trim();
+        }
+    }
+
+    @Override
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action, "action may not be null");
+        for (int i = 0; i < this.partitions.length; i++) {
+            long high = (long) i << ConcurrentLongSet.PARTITION_SHIFT;
+            this.partitions[i].forEach((long element) -> action.accept(element | high));
+        }
+    }
+
+    @Override
+    public LongIterator iterator() {
+        return new LongIterator() {
+            private int partitionIndex = -1;
+            private LongIterator partition;
+            /**
+             * The iterator of the partition that returned the last element, which may differ from {@link #partition}
+             * once {@link #hasNext()} advanced to the next partition.
+             */
+            private LongIterator last;
+            private long high;
+
+            @Override
+            public boolean hasNext() {
+                while (this.partition == null || !this.partition.hasNext()) {
+                    if (this.partitionIndex == ConcurrentLongSet.this.partitions.length - 1) {
+                        return false;
+                    }
+                    this.partition = ConcurrentLongSet.this.partitions[++this.partitionIndex].iterator();
+                    this.high = (long) this.partitionIndex << ConcurrentLongSet.PARTITION_SHIFT;
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
+                }
+                this.last = this.partition;
+                return this.partition.nextLong() | this.high;
+            }
+
+            @Override
+            public void remove() {
+                if (this.last == null) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+                this.last.remove();
+            }
+        };
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bucket whose storage is guarded by a control word. Non-negative values of the control word correspond to the
+ * amount of threads that hold a reader slot of the bucket, which may access the bucket's storage concurrently.
+ * A thread obtaining exclusive access to the bucket sets the control word to <code>-readers - 1</code> and waits
+ * until all readers have left, after which the control word is -1. Threads that need to wait for a bucket spin for a
+ * short while before parking until the bucket becomes available again.
+ */
+abstract class ControlledBucket {
+
+    /**
+     * Statistics about how often threads had to wait for a bucket to become available.
+     */
+    static final class Contention {
+        /**
+         * The amount of times a thread could not access a bucket immediately.
+         */
+        final LongAdder contended = new LongAdder();
+        /**
+         * The amount of times a thread parked while waiting for a bucket.
+         */
+        final LongAdder parked = new LongAdder();
+    }
+
+    /**
+     * A thread parked while waiting for a bucket, forming a stack of waiting threads.
+     */
+    static final class Waiter {
+        final Thread thread;
+        final Waiter next;
+        /**
+         * Whether the waiter was removed from the stack by {@link ControlledBucket#signalWaiters()}.
+         */
+        volatile boolean signalled;
+
+        Waiter(Thread thread, Waiter next) {
+            this.thread = thread;
+            this.next = next;
+        }
+    }
+
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+    /**
+     * The amount of times a thread busy-waits for a bucket to become available before yielding. Spinning is
+     * pointless on a single processor, as the thread holding the bucket cannot make progress in the meantime.
+     */
+    private static final int SPIN_LIMIT = ControlledBucket.NCPU > 1 ? 1 << 7 : 0;
+    /**
+     * The amount of times a thread yields while waiting for a bucket to become available before parking.
+     */
+    private static final int YIELD_LIMIT = 1 << 3;
+    /**
+     * The maximum amount of nanoseconds a thread parks at once while waiting for a bucket. Parked threads are
+     * woken up once the bucket becomes available, the timeout only guards against missed wakeups.
+     */
+    private static final long PARK_TIMEOUT_NANOS = 1_000_000L;
+    /**
+     * A handle to <code>Thread.onSpinWait()</code>, which only exists as of Java 9. Null on older releases.
+     */
+    private static final MethodHandle ON_SPIN_WAIT;
+    static final AtomicIntegerFieldUpdater<ControlledBucket> BUCKET_CTRL = AtomicIntegerFieldUpdater.newUpdater(ControlledBucket.class, "ctrl");
+    static final AtomicReferenceFieldUpdater<ControlledBucket, Waiter> BUCKET_WAITERS = AtomicReferenceFieldUpdater.newUpdater(ControlledBucket.class, Waiter.class, "waiters");
+
+    static {
+        MethodHandle onSpinWait;
+        try {
+            onSpinWait = MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            onSpinWait = null;
+        }
+        ON_SPIN_WAIT = onSpinWait;
+    }
+
+    /**
+     * Hints the processor that the calling thread is busy-waiting, if supported by the running JVM.
+     */
+    private static void onSpinWait() {
+        MethodHandle onSpinWait = ControlledBucket.ON_SPIN_WAIT;
+        if (onSpinWait != null) {
+            try {
+                onSpinWait.invokeExact();
+            } catch (Throwable t) {
+                throw new AssertionError(t);
+            }
+        }
+    }
+
+    volatile int ctrl;
+    /**
+     * The threads that are parked until the bucket becomes available.
+     */
+    volatile Waiter waiters;
+    final Contention contention;
+
+    ControlledBucket(Contention contention) {
+        this.contention = contention;
+    }
+
+    /**
+     * Obtains exclusive access to the bucket, waiting until all threads holding a reader slot have left the bucket.
+     * Exclusive access is not mutually exclusive with other threads calling this method, which is why the caller
+     * must hold the monitor of the bucket.
+     */
+    final void lockCtrl() {
+        int ctrl;
+        while (!ControlledBucket.BUCKET_CTRL.compareAndSet(this, ctrl = this.ctrl, -ctrl - 1));
+        if (this.ctrl != -1) {
+            this.awaitCtrl(true);
+        }
+    }
+
+    /**
+     * Releases the exclusive lock obtained via {@link #lockCtrl()} and wakes up all threads waiting for the bucket.
+     */
+    final void unlockCtrl() {
+        ControlledBucket.BUCKET_CTRL.incrementAndGet(this);
+        this.signalWaiters();
+    }
+
+    /**
+     * Releases a reader slot obtained via {@link #incrementCtrl()}.
+     */
+    final void decrementCtrl() {
+        int ctrl;
+        while (!ControlledBucket.BUCKET_CTRL.compareAndSet(this, ctrl = this.ctrl, ctrl < 0 ? ctrl + 1 : ctrl - 1));
+        if (ctrl == -2) {
+            // The last reader left the bucket while another thread waits for exclusive access
+            this.signalWaiters();
+        }
+    }
+
+    /**
+     * Obtains a reader slot of the bucket, waiting while the bucket is locked exclusively.
+     */
+    final void incrementCtrl() {
+        int ctrl;
+        do {
+            if ((ctrl = this.ctrl) < 0) {
+                this.awaitCtrl(false);
+                ctrl = this.ctrl;
+            }
+        } while (ctrl < 0 || !ControlledBucket.BUCKET_CTRL.compareAndSet(this, ctrl, ctrl + 1));
+    }
+
+    /**
+     * Waits until the bucket becomes available. Threads first busy-wait for a bounded amount of iterations,
+     * then yield and finally park until they are woken up by {@link #signalWaiters()}.
+     *
+     * @param exclusive True to wait until all readers left the bucket, false to wait until the bucket is no
+     * longer locked exclusively
+     */
+    private final void awaitCtrl(boolean exclusive) {
+        this.contention.contended.increment();
+        int attempts = 0;
+        Waiter waiter = null;
+        while (exclusive ? this.ctrl != -1 : this.ctrl < 0) {
+            if (attempts < ControlledBucket.SPIN_LIMIT) {
+                ControlledBucket.onSpinWait();
+            } else if (attempts < ControlledBucket.SPIN_LIMIT + ControlledBucket.YIELD_LIMIT) {
+                Thread.yield();
+            } else {
+                // A waiter that is still on the stack is reused after the park timed out, so that each thread is
+                // only unparked once per signal
+                if (waiter == null || waiter.signalled) {
+                    do {
+                        waiter = new Waiter(Thread.currentThread(), this.waiters);
+                    } while (!ControlledBucket.BUCKET_WAITERS.compareAndSet(this, waiter.next, waiter));
+                }
+                // The state needs to be checked again after enqueuing, as the thread releasing the bucket
+                // might not have observed the waiter
+                if (exclusive ? this.ctrl != -1 : this.ctrl < 0) {
+                    this.contention.parked.increment();
+                    LockSupport.parkNanos(this, ControlledBucket.PARK_TIMEOUT_NANOS);
+                }
+            }
+            attempts++;
+        }
+    }
+
+    private final void signalWaiters() {
+        if (this.waiters == null) {
+            return;
+        }
+        for (Waiter waiter = ControlledBucket.BUCKET_WAITERS.getAndSet(this, null); waiter != null; waiter = waiter.next) {
+            waiter.signalled = true;
+            LockSupport.unpark(waiter.thread);
+        }
+    }
+}
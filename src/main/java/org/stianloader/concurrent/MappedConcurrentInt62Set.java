@@ -0,0 +1,497 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent set for 62 bit <b>unsigned</b> integers whose elements are stored in a memory-mapped file. The set
+ * operates directly on the mapped file, so that a set can be reopened by another process and serve requests right
+ * away, without having to add the elements one by one.
+ *
+ * <p>Apart from where the slots of the buckets are stored, the set behaves exactly like an {@link OffHeapConcurrentInt62Set}:
+ * The set has a fixed amount of buckets, each of which is an open-addressed hash table using linear probing where present
+ * elements are stored alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit. Every operation holds a reader slot of
+ * the bucket it accesses, while rehashing a bucket locks the bucket exclusively.
+ *
+ * <h2>File layout</h2>
+ *
+ * <p>All values are stored in the native byte order, so files cannot be exchanged between machines of a different
+ * byte order. The file starts with a header of 224 bytes:
+ * <ul>
+ * <li>The magic value <code>0x43493632</code> (int)</li>
+ * <li>The version of the layout, currently 3 (int)</li>
+ * <li>The amount of buckets (int)</li>
+ * <li>The ordinal of the {@link HashMode} (int)</li>
+ * <li>The offset of the first unused byte of the file (long)</li>
+ * <li>1 if the set was closed properly, 0 otherwise (int)</li>
+ * <li>4 unused bytes</li>
+ * <li>For each amount of slots from 2<sup>0</sup> to 2<sup>23</sup>, the offset of the first released region of
+ * that many slots, or 0 if there is none (24 longs). The first 8 bytes of a released region hold the offset of the
+ * next released region of the same size, or 0.</li>
+ * </ul>
+ *
+ * <p>The header is followed by a directory of 16 bytes per bucket, holding the location of the bucket's slots (long),
+ * the amount of elements (int) and the amount of used slots, including tombstones (int). The location combines the
+ * offset of the slots within the file, shifted to the left by 5 bits, with the base 2 logarithm of the amount of slots
+ * plus one in the lowest 5 bits, and is 0 for buckets without slots. As the location is written with a single store,
+ * a bucket whose slots were replaced right before a crash either refers to its old or its new slots, but never to a
+ * mixture of both. The slots of the buckets follow the directory. The slots of a bucket never cross a boundary of
+ * 64 MiB, which limits the amount of slots a single bucket may have.
+ *
+ * <h2>Durability</h2>
+ *
+ * <p>The amount of elements of each bucket is only written to the directory by {@link #flush()} and {@link #close()}.
+ * Should a set not be closed properly, the amount of elements is recounted when the file is reopened, which requires
+ * every slot to be read once. Changes are only guaranteed to reach the storage device once {@link #flush()} or
+ * {@link #close()} returns.
+ *
+ * <h2>Space reuse</h2>
+ *
+ * <p>Once the slots of a bucket are replaced or the set is cleared, the region of the file occupied by the previous
+ * slots is put onto the list of released regions of its size, from which later allocations of the same amount of
+ * slots are served. The file is only extended if no released region of the required size is left, that is if the
+ * set needs more regions of a size at once than it ever needed before. Repeatedly filling and clearing the set
+ * hence does not grow the file, see {@link #getUsedFileSize()}. The file never shrinks. Should a set not be closed properly, the lists of released regions are discarded when the file is
+ * reopened, and the regions they held are never reused.
+ *
+ * <p>The set relies on <code>sun.misc.Unsafe</code> for accessing the mapped file. On JVMs that do not provide
+ * <code>sun.misc.Unsafe</code>, the set cannot be created or opened.
+ */
+public final class MappedConcurrentInt62Set extends NativeInt62Set {
+
+    private static final int MAGIC = 0x43493632;
+    private static final int VERSION = 3;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_BUCKET_COUNT = 8;
+    private static final int HEADER_HASH_MODE = 12;
+    private static final int HEADER_END = 16;
+    private static final int HEADER_CLEAN = 24;
+    private static final int HEADER_FREE_LISTS = 32;    private static final int DIRECTORY_ENTRY_SIZE = 16;
+    private static final int ENTRY_LOCATION = 0;
+    private static final int ENTRY_SIZE = 8;
+    private static final int ENTRY_FILL = 12;
+    /**
+     * The amount of bits of a directory entry's location that hold the logarithm of the amount of slots.
+     */
+    private static final int LOCATION_LENGTH_BITS = 5;
+    private static final int SEGMENT_SHIFT = 26;
+    /**
+     * The amount of bytes that are mapped at once. Larger files are mapped in several segments.
+     */
+    private static final long SEGMENT_SIZE = 1L << MappedConcurrentInt62Set.SEGMENT_SHIFT;
+    /**
+     * The amount of lists of released regions, one for each amount of slots a bucket may have.
+     */
+    private static final int FREE_LIST_COUNT = MappedConcurrentInt62Set.SEGMENT_SHIFT - 3 + 1;
+    private static final int HEADER_SIZE = MappedConcurrentInt62Set.HEADER_FREE_LISTS + MappedConcurrentInt62Set.FREE_LIST_COUNT * 8;
+    private final FileChannel channel;
+    /**
+     * The mapped segments of the file. The buffers need to stay reachable for as long as the set is in use, as
+     * they are unmapped once they are garbage collected.
+     */
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private long[] segmentAddresses = new long[0];
+    private final long header;
+    /**
+     * The offset of the first unused byte of the file.
+     */
+    private long end;
+    /**
+     * The offset of the first byte following the directory.
+     */
+    private final long directoryEnd;
+    private final Object allocationLock = new Object();
+
+    private MappedConcurrentInt62Set(FileChannel channel, int bucketCount, HashMode hashMode, long end) throws IOException {
+        super(bucketCount, hashMode);
+        if (!NativeMemory.isBufferAddressAvailable()) {
+            throw new UnsupportedOperationException("The addresses of direct buffers cannot be obtained on this JVM");
+        }
+        this.channel = channel;
+        this.end = end;
+        this.directoryEnd = MappedConcurrentInt62Set.directoryEnd(bucketCount);
+        this.map((int) ((end - 1) >>> MappedConcurrentInt62Set.SEGMENT_SHIFT));
+        this.header = this.segmentAddresses[0];
+    }
+
+    /**
+     * Creates a new file holding an empty set.
+     *
+     * @param path The path of the file, which must not exist yet
+     * @param bucketCount The amount of buckets, must be a power of two
+     * @param hashMode The strategy used to map elements to buckets
+     * @return The created set, which needs to be closed once it is no longer used
+     * @throws IOException If the file could not be created
+     */
+    public static MappedConcurrentInt62Set create(Path path, int bucketCount, HashMode hashMode) throws IOException {
+        Objects.requireNonNull(hashMode, "hashMode may not be null");
+        long directoryEnd = MappedConcurrentInt62Set.directoryEnd(bucketCount);
+        if (bucketCount <= 0 || directoryEnd > MappedConcurrentInt62Set.SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Illegal bucketCount: " + bucketCount);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedConcurrentInt62Set set = new MappedConcurrentInt62Set(channel, bucketCount, hashMode, (directoryEnd + 63) & ~63L);
+            long header = set.header;
+            NativeMemory.putInt(header + MappedConcurrentInt62Set.HEADER_VERSION, MappedConcurrentInt62Set.VERSION);
+            NativeMemory.putInt(header + MappedConcurrentInt62Set.HEADER_BUCKET_COUNT, bucketCount);
+            NativeMemory.putInt(header + MappedConcurrentInt62Set.HEADER_HASH_MODE, hashMode.ordinal());
+            NativeMemory.putLong(header + MappedConcurrentInt62Set.HEADER_END, set.end);
+            NativeMemory.putInt(header + MappedConcurrentInt62Set.HEADER_CLEAN, 0);
+            // The magic value is written last, so that an incompletely written header is never mistaken for a set
+            set.segments[0].force();
+            NativeMemory.putInt(header + MappedConcurrentInt62Set.HEADER_MAGIC, MappedConcurrentInt62Set.MAGIC);
+            set.segments[0].force();
+            return set;
+        } catch (IOException | RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file created by {@link #create(Path, int, HashMode)}. The amount of buckets and the {@link HashMode}
+     * are read from the file. Unless the set was not closed properly, the set is usable without having to read the
+     * elements of the set.
+     *
+     * @param path The path of the file
+     * @return The opened set, which needs to be closed once it is no longer used
+     * @throws IOException If the file could not be opened or does not hold a set
+     */
+    public static MappedConcurrentInt62Set open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(MappedConcurrentInt62Set.HEADER_SIZE).order(ByteOrder.nativeOrder());
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0);
+            if (buffer.hasRemaining() || buffer.getInt(MappedConcurrentInt62Set.HEADER_MAGIC) != MappedConcurrentInt62Set.MAGIC) {
+                throw new IOException("The file " + path + " does not hold a set (or was written using a different byte order)");
+            }
+            int version = buffer.getInt(MappedConcurrentInt62Set.HEADER_VERSION);
+            if (version != MappedConcurrentInt62Set.VERSION) {
+                throw new IOException("Unsupported version " + version + " of file " + path);
+            }
+            int bucketCount = buffer.getInt(MappedConcurrentInt62Set.HEADER_BUCKET_COUNT);
+            int hashMode = buffer.getInt(MappedConcurrentInt62Set.HEADER_HASH_MODE);
+            long end = buffer.getLong(MappedConcurrentInt62Set.HEADER_END);
+            // The directory needs to lie within the first segment, as it is accessed relative to the header
+            long directoryEnd = MappedConcurrentInt62Set.directoryEnd(bucketCount);
+            if (Integer.bitCount(bucketCount) != 1 || hashMode < 0 || hashMode >= HashMode.values().length
+                    || directoryEnd > MappedConcurrentInt62Set.SEGMENT_SIZE || end < directoryEnd || end > channel.size()) {
+                throw new IOException("Corrupt header of file " + path);
+            }
+            MappedConcurrentInt62Set set = new MappedConcurrentInt62Set(channel, bucketCount, HashMode.values()[hashMode], end);
+            set.load();
+            return set;
+        } catch (IOException | RuntimeException | Error e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static long directoryEnd(int bucketCount) {
+        return MappedConcurrentInt62Set.HEADER_SIZE + (long) bucketCount * MappedConcurrentInt62Set.DIRECTORY_ENTRY_SIZE;
+    }
+
+    /**
+     * Checks whether a region of the file may hold the slots of a bucket, which is the case if it lies between the
+     * directory and the first unused byte of the file without crossing the boundary of a segment.
+     *
+     * @param offset The offset of the region within the file
+     * @param bytes The size of the region
+     * @return True if the region is valid
+     */
+    private boolean isValidRegion(long offset, long bytes) {
+        return offset >= this.directoryEnd && (offset & 7) == 0 && offset + bytes <= this.end
+                && (offset & (MappedConcurrentInt62Set.SEGMENT_SIZE - 1)) + bytes <= MappedConcurrentInt62Set.SEGMENT_SIZE;
+    }
+
+    /**
+     * Obtains the address of the list head of the released regions of a given amount of slots.
+     *
+     * @param capacity The amount of slots of the regions, must be a power of two
+     * @return The address of the offset of the first released region
+     */
+    private long freeList(int capacity) {
+        return this.header + MappedConcurrentInt62Set.HEADER_FREE_LISTS + ((long) Integer.numberOfTrailingZeros(capacity) << 3);
+    }
+
+    /**
+     * Reads the directory of the file into the buckets. If the set was not closed properly, the amount of elements
+     * of each bucket is recounted and the lists of released regions are discarded, as they may be inconsistent with
+     * the directory. Otherwise the lists are validated. Marks the file as being in use afterwards.
+     *
+     * @throws IOException If the directory or the lists of released regions are corrupt
+     */
+    private void load() throws IOException {
+        boolean clean = NativeMemory.getInt(this.header + MappedConcurrentInt62Set.HEADER_CLEAN) != 0;
+        long total = 0L;
+        for (Bucket bucket : this.buckets) {
+            long entry = this.entry(bucket);
+            long location = NativeMemory.getLong(entry + MappedConcurrentInt62Set.ENTRY_LOCATION);
+            long offset = location >>> MappedConcurrentInt62Set.LOCATION_LENGTH_BITS;
+            int lengthBits = (int) location & ((1 << MappedConcurrentInt62Set.LOCATION_LENGTH_BITS) - 1);
+            int length = lengthBits == 0 ? 0 : 1 << (lengthBits - 1);
+            if (location != 0L) {
+                if (lengthBits == 0 || lengthBits > MappedConcurrentInt62Set.FREE_LIST_COUNT || !this.isValidRegion(offset, (long) length << 3)) {
+                    throw new IOException("Corrupt directory entry for bucket " + bucket.index);
+                }
+                bucket.address = this.addressOf(offset);
+                bucket.length = length;
+            }
+            if (clean) {
+                bucket.size = NativeMemory.getInt(entry + MappedConcurrentInt62Set.ENTRY_SIZE);
+                bucket.fill = NativeMemory.getInt(entry + MappedConcurrentInt62Set.ENTRY_FILL);
+            } else {
+                int size = 0;
+                int fill = 0;
+                for (int i = 0; i < length; i++) {
+                    long value = NativeInt62Set.getSlot(bucket, i);
+                    if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                        size++;
+                    }
+                    if (value != ConcurrentInt62Set.SLOT_EMPTY) {
+                        fill++;
+                    }
+                }
+                bucket.size = size;
+                bucket.fill = fill;
+            }
+            total += bucket.size;
+        }
+        for (int i = 0; i < MappedConcurrentInt62Set.FREE_LIST_COUNT; i++) {
+            long head = this.header + MappedConcurrentInt62Set.HEADER_FREE_LISTS + ((long) i << 3);
+            if (!clean) {
+                NativeMemory.putLong(head, 0L);
+                continue;
+            }
+            long bytes = 8L << i;
+            // Every region occupies distinct space, which bounds the length of a list that does not contain a cycle
+            long remaining = (this.end - this.directoryEnd) / bytes;
+            for (long offset = NativeMemory.getLong(head); offset != 0L; offset = NativeMemory.getLong(this.addressOf(offset))) {
+                if (remaining-- == 0 || !this.isValidRegion(offset, bytes)) {
+                    throw new IOException("Corrupt list of released regions with " + (1 << i) + " slots");
+                }
+            }
+        }
+        this.counter.add(total);
+        NativeMemory.putInt(this.header + MappedConcurrentInt62Set.HEADER_CLEAN, 0);
+        this.segments[0].force();
+    }
+
+    /**
+     * Maps all segments of the file up to (and including) a given segment, extending the file if required.
+     *
+     * @param segment The index of the last segment to map
+     * @throws IOException If the file could not be mapped
+     */
+    private void map(int segment) throws IOException {
+        int mapped = this.segments.length;
+        if (segment < mapped) {
+            return;
+        }
+        MappedByteBuffer[] segments = Arrays.copyOf(this.segments, segment + 1);
+        long[] segmentAddresses = Arrays.copyOf(this.segmentAddresses, segment + 1);
+        for (int i = mapped; i <= segment; i++) {
+            segments[i] = this.channel.map(MapMode.READ_WRITE, (long) i << MappedConcurrentInt62Set.SEGMENT_SHIFT, MappedConcurrentInt62Set.SEGMENT_SIZE);
+            segmentAddresses[i] = NativeMemory.bufferAddress(segments[i]);
+        }
+        this.segments = segments;
+        this.segmentAddresses = segmentAddresses;
+    }
+
+    private long entry(Bucket bucket) {
+        return this.header + MappedConcurrentInt62Set.HEADER_SIZE + (long) bucket.index * MappedConcurrentInt62Set.DIRECTORY_ENTRY_SIZE;
+    }
+
+    /**
+     * Obtains the address of an offset within the mapped segments of the file.
+     *
+     * @param offset The offset within the file
+     * @return The address
+     */
+    private long addressOf(long offset) {
+        return this.segmentAddresses[(int) (offset >>> MappedConcurrentInt62Set.SEGMENT_SHIFT)] + (offset & (MappedConcurrentInt62Set.SEGMENT_SIZE - 1));
+    }
+
+    /**
+     * Obtains the offset within the file of an address within one of the mapped segments.
+     *
+     * @param address The address
+     * @return The offset within the file
+     */
+    private long offsetOf(long address) {
+        long[] segmentAddresses = this.segmentAddresses;
+        for (int i = 0; i < segmentAddresses.length; i++) {
+            long base = segmentAddresses[i];
+            if (address >= base && address < base + MappedConcurrentInt62Set.SEGMENT_SIZE) {
+                return ((long) i << MappedConcurrentInt62Set.SEGMENT_SHIFT) + (address - base);
+            }
+        }
+        throw new IllegalStateException("Address " + address + " is not part of a mapped segment");
+    }
+
+    @Override
+    long allocate(int capacity) {
+        long bytes = (long) capacity << 3;
+        if (bytes > MappedConcurrentInt62Set.SEGMENT_SIZE) {
+            throw new IllegalStateException("A bucket may not hold more than " + (MappedConcurrentInt62Set.SEGMENT_SIZE >> 3) + " slots. Use a larger amount of buckets.");
+        }
+        synchronized (this.allocationLock) {
+            long freeList = this.freeList(capacity);
+            long released = NativeMemory.getLong(freeList);
+            if (released != 0L) {
+                long address = this.addressOf(released);
+                NativeMemory.putLongVolatile(freeList, NativeMemory.getLong(address));
+                return address;
+            }
+
+            long offset = this.end;
+            if ((offset & (MappedConcurrentInt62Set.SEGMENT_SIZE - 1)) + bytes > MappedConcurrentInt62Set.SEGMENT_SIZE) {
+                offset = (offset + MappedConcurrentInt62Set.SEGMENT_SIZE) & ~(MappedConcurrentInt62Set.SEGMENT_SIZE - 1);
+            }
+            int segment = (int) (offset >>> MappedConcurrentInt62Set.SEGMENT_SHIFT);
+            try {
+                this.map(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to extend the mapped file", e);
+            }
+            this.end = offset + bytes;
+            NativeMemory.putLongVolatile(this.header + MappedConcurrentInt62Set.HEADER_END, this.end);
+            return this.addressOf(offset);
+        }
+    }
+
+    @Override
+    void free(long address, int capacity) {
+        // The directory no longer refers to the region, so its first slot may be overwritten by the link of the list
+        synchronized (this.allocationLock) {
+            long freeList = this.freeList(capacity);
+            NativeMemory.putLong(address, NativeMemory.getLong(freeList));
+            NativeMemory.putLongVolatile(freeList, this.offsetOf(address));
+        }
+    }
+
+    @Override
+    void rehashed(Bucket bucket) {
+        long location = 0L;
+        if (bucket.length != 0) {
+            location = (this.offsetOf(bucket.address) << MappedConcurrentInt62Set.LOCATION_LENGTH_BITS) | (Integer.numberOfTrailingZeros(bucket.length) + 1);
+        }
+        // Offset and length are written at once, so that the entry never mixes the old and the new slots of the bucket
+        NativeMemory.putLongVolatile(this.entry(bucket) + MappedConcurrentInt62Set.ENTRY_LOCATION, location);
+        this.writeCounts(bucket);
+    }
+
+    @Override
+    void closeBucket(Bucket bucket) {
+        this.writeCounts(bucket);
+    }
+
+    private void writeCounts(Bucket bucket) {
+        long entry = this.entry(bucket);
+        NativeMemory.putInt(entry + MappedConcurrentInt62Set.ENTRY_SIZE, bucket.size);
+        NativeMemory.putInt(entry + MappedConcurrentInt62Set.ENTRY_FILL, bucket.fill);
+    }
+
+    /**
+     * Obtains the amount of bytes of the file that are in use, including released regions that are available for
+     * reuse. The file itself may be larger, as it is extended in segments of 64 MiB.
+     *
+     * @return The offset of the first unused byte of the file
+     */
+    public long getUsedFileSize() {
+        synchronized (this.allocationLock) {
+            return this.end;
+        }
+    }
+
+    /**
+     * Writes the amount of elements of each bucket to the directory of the file and forces all changes to the file
+     * onto the storage device. Concurrent modifications of the set may or may not be written.
+     *
+     * @throws IllegalStateException If the set was closed
+     */
+    public void flush() {
+        for (Bucket bucket : this.buckets) {
+            bucket.incrementCtrl();
+            if (this.closed) {
+                bucket.decrementCtrl();
+                throw new IllegalStateException("The set was closed");
+            }
+            this.writeCounts(bucket);
+            bucket.decrementCtrl();
+        }
+        synchronized (this.allocationLock) {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Writes all changes to the file and closes the file. Afterwards, all operations on the set throw an
+     * {@link IllegalStateException}. Waits for operations that are in progress to complete. Closing a set
+     * that was closed already has no effect.
+     *
+     * @throws UncheckedIOException If the file could not be closed
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        super.close();
+        synchronized (this.allocationLock) {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+            NativeMemory.putInt(this.header + MappedConcurrentInt62Set.HEADER_CLEAN, 1);
+            this.segments[0].force();
+            this.segments = new MappedByteBuffer[0];
+            this.segmentAddresses = new long[0];
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to close the mapped file", e);
+        }
+    }
+}
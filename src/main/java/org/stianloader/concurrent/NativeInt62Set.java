@@ -0,0 +1,491 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/**
+ * The shared implementation of the sets whose slots are stored in native memory, that is {@link OffHeapConcurrentInt62Set}
+ * and {@link MappedConcurrentInt62Set}. The layout of such sets matches the layout of a {@link ConcurrentInt62Set} with a fixed
+ * amount of buckets: Each bucket is an open-addressed hash table using linear probing, where present elements are stored
+ * alongside the {@link ConcurrentInt62Set#CTRL_BIT_READ} bit and are published by a single CAS from an empty slot. The slots
+ * of a bucket are allocated lazily once the first element is added to the bucket, grow in factors of two and are compacted
+ * once most elements of the bucket were removed.
+ *
+ * <p>As the native memory of a bucket may be released as soon as the bucket is rehashed, every operation, including
+ * {@link #contains(long)}, holds a reader slot of the bucket while accessing it. Rehashing a bucket locks the bucket
+ * exclusively. Subclasses only decide where the slots of the buckets are allocated.
+ */
+abstract class NativeInt62Set extends AbstractLongSet implements AutoCloseable {
+
+    /**
+     * A single bucket of the set, whose slots are stored in native memory. The address and length of the slots
+     * are only modified while the bucket is locked exclusively and may thus only be read while holding a reader
+     * slot of the bucket.
+     */
+    static final class Bucket extends ControlledBucket {
+        /**
+         * The address of the first slot of the bucket, or 0 if no memory was allocated for the bucket.
+         */
+        long address;
+        /**
+         * The amount of slots of the bucket, which is always a power of two unless it is 0.
+         */
+        int length;
+        volatile int size;
+        /**
+         * The amount of slots that are not {@link ConcurrentInt62Set#SLOT_EMPTY}, including tombstones.
+         */
+        volatile int fill;
+        /**
+         * The index of the bucket within the set.
+         */
+        final int index;
+
+        Bucket(ControlledBucket.Contention contention, int index) {
+            super(contention);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Marker for a slot whose element was removed, see {@link ConcurrentInt62Set#SLOT_EMPTY}.
+     */
+    private static final long SLOT_TOMBSTONE = 1L;
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_SIZE = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "size");
+    static final AtomicIntegerFieldUpdater<Bucket> BUCKET_FILL = AtomicIntegerFieldUpdater.newUpdater(Bucket.class, "fill");
+
+    final Bucket[] buckets;
+    final HashMode hashMode;
+    final ControlledBucket.Contention contention = new ControlledBucket.Contention();
+    final ConcurrentInt62Set.SizeCounter counter = new ConcurrentInt62Set.SizeCounter();
+    volatile boolean closed;
+
+    NativeInt62Set(int bucketCount, HashMode hashMode) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalArgumentException("bucketCount must be a power of 2.");
+        }
+        if (!NativeMemory.isAvailable()) {
+            throw new UnsupportedOperationException("sun.misc.Unsafe is not available on this JVM");
+        }
+        this.hashMode = Objects.requireNonNull(hashMode, "hashMode may not be null");
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            this.buckets[i] = new Bucket(this.contention, i);
+        }
+    }
+
+    /**
+     * Allocates native memory for the slots of a bucket. The caller holds the exclusive lock of the bucket.
+     *
+     * @param capacity The amount of slots to allocate
+     * @return The address of the allocated memory, which is not necessarily zeroed
+     */
+    abstract long allocate(int capacity);
+
+    /**
+     * Releases native memory obtained via {@link #allocate(int)}. The caller holds the exclusive lock of the
+     * bucket that used the memory. When the slots of a bucket are replaced, the previous slots are only released
+     * after {@link #rehashed(Bucket)} was invoked.
+     *
+     * @param address The address of the memory
+     * @param capacity The amount of slots of the memory
+     */
+    abstract void free(long address, int capacity);
+
+    /**
+     * Invoked after the slots of a bucket were replaced. The caller holds the exclusive lock of the bucket.
+     *
+     * @param bucket The bucket whose slots were replaced
+     */
+    void rehashed(Bucket bucket) {
+        // NOP by default
+    }
+
+    /**
+     * Invoked for every bucket while the set is closed. The caller holds the exclusive lock of the bucket.
+     *
+     * @param bucket The bucket of the closed set
+     */
+    abstract void closeBucket(Bucket bucket);
+
+    static long slotAddress(Bucket bucket, int index) {
+        return bucket.address + ((long) index << 3);
+    }
+
+    static long getSlot(Bucket bucket, int index) {
+        return NativeMemory.getLongVolatile(NativeInt62Set.slotAddress(bucket, index));
+    }
+
+    static boolean casSlot(Bucket bucket, int index, long expected, long value) {
+        return NativeMemory.compareAndSwapLong(NativeInt62Set.slotAddress(bucket, index), expected, value);
+    }
+
+    /**
+     * Obtains a reader slot of the bucket of an element.
+     *
+     * @param element The element whose bucket should be acquired
+     * @return The bucket, whose reader slot needs to be released via {@link ControlledBucket#decrementCtrl()}
+     * @throws IllegalStateException If the set was closed
+     */
+    Bucket acquire(long element) {
+        Bucket bucket = this.buckets[this.hashMode.hash(element) & (this.buckets.length - 1)];
+        bucket.incrementCtrl();
+        if (this.closed) {
+            bucket.decrementCtrl();
+            throw new IllegalStateException("The set was closed");
+        }
+        return bucket;
+    }
+
+    @Override
+    public boolean add(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+        while (true) {
+            Bucket bucket = this.acquire(element);
+            int length = bucket.length;
+            if (length == 0) {
+                bucket.decrementCtrl();
+                this.rehash(bucket, length, ConcurrentInt62Set.capacityFor(0));
+                continue;
+            }
+            int mask = length - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            int probes = length;
+            boolean added = false;
+            while (probes != 0) {
+                long value = NativeInt62Set.getSlot(bucket, index);
+                if (value == entry) {
+                    break;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    if (!NativeInt62Set.casSlot(bucket, index, ConcurrentInt62Set.SLOT_EMPTY, entry)) {
+                        // Another thread claimed the slot first - it may have inserted the same element
+                        continue;
+                    }
+                    NativeInt62Set.BUCKET_SIZE.incrementAndGet(bucket);
+                    NativeInt62Set.BUCKET_FILL.incrementAndGet(bucket);
+                    added = true;
+                    break;
+                }
+                index = (index + 1) & mask;
+                probes--;
+            }
+            bucket.decrementCtrl();
+            if (probes == 0) {
+                // Concurrent insertions exhausted all empty slots before the bucket could be rehashed
+                this.rehash(bucket, length, Math.max(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+                continue;
+            }
+            if (added) {
+                this.counter.add(1L);
+                if (bucket.fill > ConcurrentInt62Set.fillLimit(length)) {
+                    this.rehash(bucket, length, Math.max(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+                }
+            }
+            return added;
+        }
+    }
+
+    @Override
+    public boolean remove(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            throw new IllegalArgumentException("Input element is not a 62-bit unsigned integer: " + element);
+        }
+        long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.acquire(element);
+        int length = bucket.length;
+        boolean removed = false;
+        if (length != 0) {
+            int mask = length - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = length; probes != 0; probes--) {
+                long value = NativeInt62Set.getSlot(bucket, index);
+                if (value == entry) {
+                    // A failed CAS means that the element was removed concurrently
+                    removed = NativeInt62Set.casSlot(bucket, index, entry, NativeInt62Set.SLOT_TOMBSTONE);
+                    break;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        if (removed) {
+            NativeInt62Set.BUCKET_SIZE.decrementAndGet(bucket);
+        }
+        bucket.decrementCtrl();
+        if (removed) {
+            this.counter.add(-1L);
+            if (length > 16 && bucket.size < (length >>> ConcurrentInt62Set.SHRINK_LOAD_SHIFT)) {
+                this.rehash(bucket, length, Math.min(length, ConcurrentInt62Set.capacityFor(bucket.size)));
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean contains(long element) {
+        if ((element & ~ConcurrentInt62Set.INT_62_BITS) != 0) {
+            return false;
+        }
+        long entry = element | ConcurrentInt62Set.CTRL_BIT_READ;
+        Bucket bucket = this.acquire(element);
+        int length = bucket.length;
+        boolean contained = false;
+        if (length != 0) {
+            int mask = length - 1;
+            int index = ConcurrentInt62Set.probeIndex(element, mask);
+            for (int probes = length; probes != 0; probes--) {
+                long value = NativeInt62Set.getSlot(bucket, index);
+                if (value == entry) {
+                    contained = true;
+                    break;
+                } else if (value == ConcurrentInt62Set.SLOT_EMPTY) {
+                    break;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+        bucket.decrementCtrl();
+        return contained;
+    }
+
+    /**
+     * Copies the elements of a bucket into newly allocated native memory, dropping all tombstones, and releases the
+     * previous memory of the bucket. Empty buckets release their memory altogether unless <code>capacity</code> calls
+     * for memory to be allocated. Does nothing if the amount of slots of the bucket changed in the meantime.
+     *
+     * @param bucket The bucket to rehash
+     * @param witness The amount of slots the bucket was observed to have
+     * @param capacity The amount of slots of the bucket after rehashing, or 0 to release the memory of the bucket
+     */
+    private void rehash(Bucket bucket, int witness, int capacity) {
+        synchronized (bucket) {
+            bucket.lockCtrl();
+            try {
+                if (bucket.length != witness || this.closed) {
+                    return;
+                }
+                long address = 0L;
+                int fill = 0;
+                if (capacity != 0) {
+                    address = this.allocate(capacity);
+                    NativeMemory.setMemory(address, (long) capacity << 3, (byte) 0);
+                    int mask = capacity - 1;
+                    for (int i = 0; i < witness; i++) {
+                        long value = NativeInt62Set.getSlot(bucket, i);
+                        if ((value & ConcurrentInt62Set.CTRL_BIT_READ) == 0) {
+                            continue;
+                        }
+                        int index = ConcurrentInt62Set.probeIndex(value & ConcurrentInt62Set.INT_62_BITS, mask);
+                        while (NativeMemory.getLong(address + ((long) index << 3)) != ConcurrentInt62Set.SLOT_EMPTY) {
+                            index = (index + 1) & mask;
+                        }
+                        NativeMemory.putLong(address + ((long) index << 3), value);
+                        fill++;
+                    }
+                }
+                long previous = bucket.address;
+                bucket.address = address;
+                bucket.length = capacity;
+                bucket.fill = fill;
+                this.rehashed(bucket);
+                if (previous != 0L) {
+                    this.free(previous, witness);
+                }
+            } finally {
+                bucket.unlockCtrl();
+            }
+        }
+    }
+
+    /**
+     * Releases the native memory of a bucket. The caller must hold the exclusive lock of the bucket.
+     *
+     * @param bucket The bucket whose memory should be released
+     */
+    void release(Bucket bucket) {
+        if (bucket.address != 0L) {
+            this.free(bucket.address, bucket.length);
+        }
+        bucket.address = 0L;
+        bucket.length = 0;
+        bucket.fill = 0;
+    }
+
+    /**
+     * Compacts all buckets of the set, such that the native memory used by each bucket corresponds to the amount
+     * of elements it holds. Buckets that are empty release their memory altogether. Each bucket is exclusively
+     * locked while it is compacted.
+     */
+    public void trim() {
+        for (Bucket bucket : this.buckets) {
+            bucket.incrementCtrl();
+            int length = bucket.length;
+            int size = bucket.size;
+            bucket.decrementCtrl();
+            if (length != 0 && (size == 0 || ConcurrentInt62Set.capacityFor(size) < length || bucket.fill != size)) {
+                this.rehash(bucket, length, size == 0 ? 0 : Math.min(length, ConcurrentInt62Set.capacityFor(size)));
+            }
+        }
+    }
+
+    /**
+     * Closes the set. Afterwards, all operations on the set throw an {@link IllegalStateException}. Waits for operations
+     * that are in progress to complete. Closing a set that was closed already has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        for (Bucket bucket : this.buckets) {
+            synchronized (bucket) {
+                bucket.lockCtrl();
+                this.closeBucket(bucket);
+                bucket.unlockCtrl();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : this.buckets) {
+            int size;
+            synchronized (bucket) {
+                bucket.lockCtrl();
+                if (this.closed) {
+                    bucket.unlockCtrl();
+                    throw new IllegalStateException("The set was closed");
+                }
+                size = bucket.size;
+                long previous = bucket.address;
+                int length = bucket.length;
+                bucket.address = 0L;
+                bucket.length = 0;
+                bucket.fill = 0;
+                bucket.size = 0;
+                this.rehashed(bucket);
+                if (previous != 0L) {
+                    this.free(previous, length);
+                }
+                bucket.unlockCtrl();
+            }
+            this.counter.add(-size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(0L, this.counter.sum()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.counter.sum() <= 0L;
+    }
+
+    /**
+     * Obtains an iterator over the elements of the set. The elements of each bucket are copied onto the heap once the
+     * iterator reaches the bucket, so that the bucket does not need to be accessed again while its elements are
+     * iterated. As such, the iterator is weakly consistent and never fails because of concurrent modifications.
+     *
+     * @return An iterator over the elements of the set
+     */
+    @Override
+    public LongIterator iterator() {
+        return new LongIterator() {
+            private int bucketIndex;
+            private long[] elements = new long[0];
+            private int count;
+            private int index;
+            private boolean hasLast;
+            private long lastValue;
+
+            @Override
+            public boolean hasNext() {
+                Bucket[] buckets = NativeInt62Set.this.buckets;
+                while (this.index == this.count) {
+                    if (this.bucketIndex == buckets.length) {
+                        return false;
+                    }
+                    Bucket bucket = buckets[this.bucketIndex++];
+                    bucket.incrementCtrl();
+                    if (NativeInt62Set.this.closed) {
+                        bucket.decrementCtrl();
+                        throw new IllegalStateException("The set was closed");
+                    }
+                    int count = 0;
+                    for (int i = 0, length = bucket.length; i < length; i++) {
+                        long value = NativeInt62Set.getSlot(bucket, i);
+                        if ((value & ConcurrentInt62Set.CTRL_BIT_READ) != 0) {
+                            if (count == this.elements.length) {
+                                this.elements = Arrays.copyOf(this.elements, Math.max(16, count << 1));
+                            }
+                            this.elements[count++] = value & ConcurrentInt62Set.INT_62_BITS;
+                        }
+                    }
+                    bucket.decrementCtrl();
+                    this.count = count;
+                    this.index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException("Iterator exhausted.");
+                }
+                this.hasLast = true;
+                return this.lastValue = this.elements[this.index++];
+            }
+
+            @Override
+            public void remove() {
+                if (!this.hasLast) {
+                    throw new IllegalStateException("#next() has not been called!");
+                }
+
+                this.hasLast = false;
+                if (!NativeInt62Set.this.remove(this.lastValue)) {
+                    throw new IllegalStateException("Element already removed.");
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+
+/**
+ * Access to native memory through <code>sun.misc.Unsafe</code>, which is the only class of this library touching
+ * the proprietary API. The methods of <code>sun.misc.Unsafe</code> are bound to method handles that are looked up
+ * reflectively, so that the library compiles without warnings about the use of internal API while the JIT compiler
+ * is still able to inline the calls, as the handles are constant.
+ *
+ * <p>Should <code>sun.misc.Unsafe</code> not be available, {@link #isAvailable()} returns false, in which case no other
+ * method may be called.
+ */
+final class NativeMemory {
+
+    private static final MethodHandle ALLOCATE_MEMORY;
+    private static final MethodHandle FREE_MEMORY;
+    private static final MethodHandle SET_MEMORY;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle GET_LONG_VOLATILE;
+    private static final MethodHandle PUT_LONG_VOLATILE;
+    private static final MethodHandle COMPARE_AND_SWAP_LONG;
+    /**
+     * The offset of the field holding the address of a direct buffer, or -1 if it could not be obtained.
+     */
+    private static final long BUFFER_ADDRESS;
+    /**
+     * <code>Unsafe.getLong(Object, long)</code>, used to read the address field of direct buffers.
+     */
+    private static final MethodHandle GET_LONG_FIELD;
+
+    static {
+        MethodHandle allocateMemory = null;
+        MethodHandle freeMemory = null;
+        MethodHandle setMemory = null;
+        MethodHandle getInt = null;
+        MethodHandle putInt = null;
+        MethodHandle getLong = null;
+        MethodHandle putLong = null;
+        MethodHandle getLongVolatile = null;
+        MethodHandle putLongVolatile = null;
+        MethodHandle compareAndSwapLong = null;
+        MethodHandle getLongField = null;
+        long bufferAddress = -1L;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            allocateMemory = lookup.findVirtual(unsafeClass, "allocateMemory", MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+            freeMemory = lookup.findVirtual(unsafeClass, "freeMemory", MethodType.methodType(void.class, long.class)).bindTo(unsafe);
+            setMemory = lookup.findVirtual(unsafeClass, "setMemory", MethodType.methodType(void.class, long.class, long.class, byte.class)).bindTo(unsafe);
+            getInt = lookup.findVirtual(unsafeClass, "getInt", MethodType.methodType(int.class, long.class)).bindTo(unsafe);
+            putInt = lookup.findVirtual(unsafeClass, "putInt", MethodType.methodType(void.class, long.class, int.class)).bindTo(unsafe);
+            getLong = lookup.findVirtual(unsafeClass, "getLong", MethodType.methodType(long.class, long.class)).bindTo(unsafe);
+            putLong = lookup.findVirtual(unsafeClass, "putLong", MethodType.methodType(void.class, long.class, long.class)).bindTo(unsafe);
+            getLongVolatile = lookup.findVirtual(unsafeClass, "getLongVolatile", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            putLongVolatile = lookup.findVirtual(unsafeClass, "putLongVolatile", MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            compareAndSwapLong = lookup.findVirtual(unsafeClass, "compareAndSwapLong", MethodType.methodType(boolean.class, Object.class, long.class, long.class, long.class)).bindTo(unsafe);
+            getLongField = lookup.findVirtual(unsafeClass, "getLong", MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            MethodHandle objectFieldOffset = lookup.findVirtual(unsafeClass, "objectFieldOffset", MethodType.methodType(long.class, Field.class)).bindTo(unsafe);
+            try {
+                bufferAddress = (long) objectFieldOffset.invokeExact(Buffer.class.getDeclaredField("address"));
+            } catch (Throwable t) {
+                bufferAddress = -1L;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            allocateMemory = null;
+        }
+        ALLOCATE_MEMORY = allocateMemory;
+        FREE_MEMORY = freeMemory;
+        SET_MEMORY = setMemory;
+        GET_INT = getInt;
+        PUT_INT = putInt;
+        GET_LONG = getLong;
+        PUT_LONG = putLong;
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_LONG_VOLATILE = putLongVolatile;
+        COMPARE_AND_SWAP_LONG = compareAndSwapLong;
+        GET_LONG_FIELD = getLongField;
+        BUFFER_ADDRESS = bufferAddress;
+    }
+
+    private NativeMemory() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Checks whether native memory can be accessed on this JVM.
+     *
+     * @return True if <code>sun.misc.Unsafe</code> is available
+     */
+    static boolean isAvailable() {
+        return NativeMemory.ALLOCATE_MEMORY != null;
+    }
+
+    /**
+     * Checks whether the address of direct buffers can be obtained via {@link #bufferAddress(Buffer)}.
+     *
+     * @return True if the address of direct buffers can be obtained
+     */
+    static boolean isBufferAddressAvailable() {
+        return NativeMemory.isAvailable() && NativeMemory.BUFFER_ADDRESS != -1L;
+    }
+
+    static long allocateMemory(long bytes) {
+        try {
+            return (long) NativeMemory.ALLOCATE_MEMORY.invokeExact(bytes);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static void freeMemory(long address) {
+        try {
+            NativeMemory.FREE_MEMORY.invokeExact(address);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static void setMemory(long address, long bytes, byte value) {
+        try {
+            NativeMemory.SET_MEMORY.invokeExact(address, bytes, value);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static int getInt(long address) {
+        try {
+            return (int) NativeMemory.GET_INT.invokeExact(address);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static void putInt(long address, int value) {
+        try {
+            NativeMemory.PUT_INT.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static long getLong(long address) {
+        try {
+            return (long) NativeMemory.GET_LONG.invokeExact(address);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static void putLong(long address, long value) {
+        try {
+            NativeMemory.PUT_LONG.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static long getLongVolatile(long address) {
+        try {
+            return (long) NativeMemory.GET_LONG_VOLATILE.invokeExact((Object) null, address);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static void putLongVolatile(long address, long value) {
+        try {
+            NativeMemory.PUT_LONG_VOLATILE.invokeExact((Object) null, address, value);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    static boolean compareAndSwapLong(long address, long expected, long value) {
+        try {
+            return (boolean) NativeMemory.COMPARE_AND_SWAP_LONG.invokeExact((Object) null, address, expected, value);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    /**
+     * Obtains the address of the first byte of a direct buffer.
+     *
+     * @param buffer The direct buffer
+     * @return The address of the buffer
+     */
+    static long bufferAddress(Buffer buffer) {
+        try {
+            return (long) NativeMemory.GET_LONG_FIELD.invokeExact((Object) buffer, NativeMemory.BUFFER_ADDRESS);
+        } catch (Throwable t) {
+            throw NativeMemory.rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new AssertionError(t);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Stianloader-concurrent - A collection of highly specialised concurrent
+ * datastructures written in Java.
+ *
+ * Copyright (C) 2024 Geolykt (stianloader.org)
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE 
+ * SOFTWARE.
+*/
+package org.stianloader.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+
+/**
+ * <h2>Description</h2>
+ *
+ * A concurrent set for 62 bit <b>unsigned</b> integers whose elements are stored in native memory outside of the
+ * Java heap. Apart from a small descriptor per bucket, the set does not hold any objects on the heap, so even sets of
+ * several hundred million elements do not add to the amount of memory the garbage collector needs to scan.
+ *
+ * <p>The layout of the set matches the layout of a {@link ConcurrentInt62Set} with a fixed amount of buckets: Each
+ * bucket is an open-addressed hash table using linear probing, where present elements are stored alongside the
+ * {@link ConcurrentInt62Set#CTRL_BIT_READ} bit and are published by a single CAS from an empty slot. The slots of a
+ * bucket are allocated lazily once the first element is added to the bucket, grow in factors of two and are compacted
+ * once most elements of the bucket were removed.
+ *
+ * <p>As the native memory of a bucket is released as soon as the bucket is rehashed, every operation, including
+ * {@link #contains(long)}, holds a reader slot of the bucket while accessing it. Rehashing a bucket locks the bucket
+ * exclusively, much like {@link ConcurrentInt62Set} does while it is being resized. Iterators copy the elements of
+ * one bucket at a time onto the heap, and as such never fail because of concurrent modifications.
+ *
+ * <h2>Releasing memory</h2>
+ *
+ * <p>The native memory of the set is not managed by the garbage collector. It is only released once {@link #close()}
+ * is called, after which any further use of the set throws an {@link IllegalStateException}. Sets that are not
+ * closed leak their memory.
+ *
+ * <p>The set relies on <code>sun.misc.Unsafe</code> for accessing native memory. On JVMs that do not provide
+ * <code>sun.misc.Unsafe</code>, the set cannot be constructed.
+ */
+public final class OffHeapConcurrentInt62Set extends NativeInt62Set {
+
+    private final LongAdder allocated = new LongAdder();
+
+    /**
+     * Creates an off-heap set with a fixed amount of buckets using {@link HashMode#MIXED}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     */
+    public OffHeapConcurrentInt62Set(int bucketCount) {
+        this(bucketCount, HashMode.MIXED);
+    }
+
+    /**
+     * Creates an off-heap set with a fixed amount of buckets which maps elements to buckets using the given {@link HashMode}.
+     *
+     * @param bucketCount The amount of buckets, must be a power of two
+     * @param hashMode The strategy used to map elements to buckets
+     */
+    public OffHeapConcurrentInt62Set(int bucketCount, HashMode hashMode) {
+        super(bucketCount, hashMode);
+    }
+
+    @Override
+    long allocate(int capacity) {
+        long address = NativeMemory.allocateMemory((long) capacity << 3);
+        this.allocated.add((long) capacity << 3);
+        return address;
+    }
+
+    @Override
+    void free(long address, int capacity) {
+        NativeMemory.freeMemory(address);
+        this.allocated.add(-((long) capacity << 3));
+    }
+
+    @Override
+    void closeBucket(Bucket bucket) {
+        this.release(bucket);
+        bucket.size = 0;
+    }
+
+    /**
+     * Obtains the amount of bytes of native memory that are currently allocated by the set.
+     *
+     * @return The amount of allocated bytes
+     */
+    public long getAllocatedMemory() {
+        return this.allocated.sum();
+    }
+
+    /**
+     * Releases all native memory held by the set. Afterwards, all operations on the set throw an
+     * {@link IllegalStateException}. Waits for operations that are in progress to complete. Closing a set
+     * that was closed already has no effect.
+     */
+    @Override
+    public void close() {
+        super.close();
+    }
+}
@@ -0,0 +1,134 @@
+package org.stianloader.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the waiting strategy of {@link ControlledBucket}, which is not observable through the public API
+ * in a deterministic manner.
+ */
+public class ControlledBucketTests {
+
+    private static boolean isWaiting(ControlledBucket bucket, Thread thread) {
+        for (ControlledBucket.Waiter waiter = bucket.waiters; waiter != null; waiter = waiter.next) {
+            if (waiter.thread == thread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void awaitParked(ControlledBucket bucket, Thread thread) {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (bucket.contention.parked.sum() == 0L || !ControlledBucketTests.isWaiting(bucket, thread)) {
+                Thread.sleep(1L);
+            }
+        }, "The waiting thread never parked");
+    }
+
+    @Test
+    public void readerWaitsForExclusiveLockTest() {
+        ControlledBucket.Contention contention = new ControlledBucket.Contention();
+        ControlledBucket bucket = new ControlledBucket(contention) { };
+        Thread[] reader = new Thread[1];
+
+        CompletableFuture<?> future;
+        synchronized (bucket) {
+            bucket.lockCtrl();
+            assertEquals(0L, contention.contended.sum(), "Locking an idle bucket must not be contended");
+            future = CompletableFuture.runAsync(() -> {
+                reader[0] = Thread.currentThread();
+                bucket.incrementCtrl();
+                bucket.decrementCtrl();
+            });
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (reader[0] == null) {
+                    Thread.sleep(1L);
+                }
+            });
+            ControlledBucketTests.awaitParked(bucket, reader[0]);
+            assertFalse(future.isDone(), "The reader must not enter the bucket while it is locked exclusively");
+            assertEquals(1L, contention.contended.sum(), "The blocked reader should be recorded as contended");
+            bucket.unlockCtrl();
+        }
+
+        assertDoesNotThrow(() -> future.get(10, TimeUnit.SECONDS), "The parked reader was not woken up");
+        assertEquals(0, bucket.ctrl, "The bucket should be idle after the reader left");
+    }
+
+    @Test
+    public void exclusiveLockWaitsForReaderTest() {
+        ControlledBucket.Contention contention = new ControlledBucket.Contention();
+        ControlledBucket bucket = new ControlledBucket(contention) { };
+        Thread[] locker = new Thread[1];
+
+        bucket.incrementCtrl();
+        CompletableFuture<?> future = CompletableFuture.runAsync(() -> {
+            locker[0] = Thread.currentThread();
+            synchronized (bucket) {
+                bucket.lockCtrl();
+                bucket.unlockCtrl();
+            }
+        });
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            while (locker[0] == null) {
+                Thread.sleep(1L);
+            }
+        });
+        ControlledBucketTests.awaitParked(bucket, locker[0]);
+        assertFalse(future.isDone(), "The exclusive lock must not be obtained while a reader is present");
+        assertTrue(contention.contended.sum() > 0L, "The blocked locker should be recorded as contended");
+
+        // The last reader leaving the bucket wakes up the thread waiting for exclusive access
+        bucket.decrementCtrl();
+        assertDoesNotThrow(() -> future.get(10, TimeUnit.SECONDS), "The parked locker was not woken up");
+        assertEquals(0, bucket.ctrl, "The bucket should be idle after the exclusive lock was released");
+    }
+
+    @Test
+    public void longWaitEnqueuesOnceTest() {
+        ControlledBucket.Contention contention = new ControlledBucket.Contention();
+        ControlledBucket bucket = new ControlledBucket(contention) { };
+        Thread[] reader = new Thread[1];
+
+        CompletableFuture<?> future;
+        synchronized (bucket) {
+            bucket.lockCtrl();
+            future = CompletableFuture.runAsync(() -> {
+                reader[0] = Thread.currentThread();
+                bucket.incrementCtrl();
+                bucket.decrementCtrl();
+            });
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (reader[0] == null) {
+                    Thread.sleep(1L);
+                }
+            });
+            ControlledBucketTests.awaitParked(bucket, reader[0]);
+            // Let the park time out repeatedly
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (contention.parked.sum() < 20L) {
+                    Thread.sleep(1L);
+                }
+            }, "The waiting thread did not park repeatedly");
+            int waiters = 0;
+            for (ControlledBucket.Waiter waiter = bucket.waiters; waiter != null; waiter = waiter.next) {
+                waiters++;
+            }
+            assertEquals(1, waiters, "A thread waiting for a long time must only be enqueued once");
+            bucket.unlockCtrl();
+        }
+
+        assertDoesNotThrow(() -> future.get(10, TimeUnit.SECONDS), "The parked reader was not woken up");
+        assertEquals(0, bucket.ctrl, "The bucket should be idle after the reader left");
+    }
+}
@@ -0,0 +1,98 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentBitmapLongSet;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class BitmapLongSetTests {
+
+    @Test
+    public void denseRangeTest() {
+        ConcurrentBitmapLongSet set = new ConcurrentBitmapLongSet();
+        long base = 1L << 40;
+        for (long val = base; val < base + 1_000_000L; val++) {
+            assertTrue(set.add(val), "Insertion feedback value mismatch for value " + val);
+        }
+        assertFalse(set.add(base), "Element should not be inserted twice: " + base);
+        assertEquals(1_000_000, set.size(), "Set size mismatch");
+        assertTrue(set.getChunkMemory() <= (1_000_000L / 8) + (2 << 13), "Chunk memory exceeds one bit per element: " + set.getChunkMemory());
+        assertFalse(set.contains(base - 1), "Element should not be contained in set: " + (base - 1));
+        assertFalse(set.contains(base + 1_000_000L), "Element should not be contained in set: " + (base + 1_000_000L));
+
+        long traversed = base;
+        LongOpenHashSet iterated = new LongOpenHashSet();
+        for (LongIterator it = set.iterator(); it.hasNext();) {
+            long val = it.nextLong();
+            assertTrue(iterated.add(val), "Element " + val + " was traversed twice");
+            if ((val & 1) != 0) {
+                it.remove();
+            }
+            traversed++;
+        }
+        assertEquals(base + 1_000_000L, traversed, "Traversed element count mismatch");
+        assertEquals(500_000, set.size(), "Set size mismatch after removal");
+        for (long val = base; val < base + 1_000_000L; val += 7) {
+            assertEquals((val & 1) == 0, set.contains(val), "Contains mismatch for value " + val);
+        }
+
+        set.clear();
+        assertTrue(set.isEmpty(), "Set should be empty after clearing");
+        assertEquals(0L, set.getChunkMemory(), "Chunks should be released after clearing");
+    }
+
+    @Test
+    public void invalidElementTest() {
+        ConcurrentBitmapLongSet set = new ConcurrentBitmapLongSet();
+        assertThrows(IllegalArgumentException.class, () -> set.add(-1L));
+        assertThrows(IllegalArgumentException.class, () -> set.add(1L << 62));
+        assertFalse(set.contains(-1L), "Invalid elements are never contained");
+        assertTrue(set.add((1L << 62) - 1), "The largest 62-bit integer should be accepted");
+        assertTrue(set.contains((1L << 62) - 1), "The largest 62-bit integer should be contained");
+    }
+
+    @Test
+    public void synchronousRandomChurnTest() {
+        ConcurrentBitmapLongSet set = new ConcurrentBitmapLongSet();
+        LongOpenHashSet witness = new LongOpenHashSet();
+        for (int i = 0; i < 200000; i++) {
+            long val = ThreadLocalRandom.current().nextLong(1 << 20);
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                assertEquals(witness.add(val), set.add(val), "Insertion feedback value mismatch for value " + val);
+            } else {
+                assertEquals(witness.remove(val), set.remove(val), "Removal feedback value mismatch for value " + val);
+            }
+        }
+        assertEquals(witness.size(), set.size(), "Set size mismatch");
+        assertEquals(witness, set, "Set content mismatch");
+    }
+
+    @Test
+    public void asynchronousOverlappingInsertionTest() {
+        ConcurrentBitmapLongSet set = new ConcurrentBitmapLongSet();
+        AtomicInteger inserted = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (long val = 0; val < 500_000L; val++) {
+                    if (set.add(val)) {
+                        inserted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        assertEquals(500_000, inserted.get(), "Each element must be reported as inserted exactly once");
+        assertEquals(500_000, set.size(), "Set size mismatch");
+    }
+}
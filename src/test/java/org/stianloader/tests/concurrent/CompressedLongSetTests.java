@@ -0,0 +1,174 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentCompressedLongSet;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class CompressedLongSetTests {
+
+    private static void fill(ConcurrentCompressedLongSet set, LongOpenHashSet witness, long base) {
+        // A dense run, a half-populated range and sparse outliers
+        for (long val = base; val < base + 300_000L; val++) {
+            set.add(val);
+            witness.add(val);
+        }
+        for (long val = base + 400_000L; val < base + 500_000L; val += 2) {
+            set.add(val);
+            witness.add(val);
+        }
+        for (int i = 0; i < 5000; i++) {
+            long val = ThreadLocalRandom.current().nextLong(1L << 62);
+            set.add(val);
+            witness.add(val);
+        }
+    }
+
+    private static void assertSorted(ConcurrentCompressedLongSet set, LongOpenHashSet witness) {
+        long previous = -1L;
+        int count = 0;
+        for (LongIterator it = set.iterator(); it.hasNext();) {
+            long val = it.nextLong();
+            assertTrue(val > previous, "Elements are not traversed in ascending order: " + previous + " before " + val);
+            assertTrue(witness.contains(val), "Element should not be contained in set: " + val);
+            previous = val;
+            count++;
+        }
+        assertEquals(witness.size(), count, "Traversed element count mismatch");
+        assertEquals(witness.size(), set.size(), "Set size mismatch");
+    }
+
+    @Test
+    public void mixedDistributionTest() {
+        ConcurrentCompressedLongSet set = new ConcurrentCompressedLongSet();
+        LongOpenHashSet witness = new LongOpenHashSet();
+        CompressedLongSetTests.fill(set, witness, 1L << 32);
+        CompressedLongSetTests.assertSorted(set, witness);
+        for (long val : witness) {
+            assertTrue(set.contains(val), "Element should be contained in set: " + val);
+        }
+        assertFalse(set.contains((1L << 32) + 400_001L), "Element should not be contained in set");
+
+        long memory = set.getContainerMemory();
+        assertTrue(set.runOptimize(), "Dense runs should be converted to run containers");
+        assertTrue(set.getContainerMemory() < memory, "Run containers should reduce the memory footprint");
+        assertTrue(set.getContainerMemory() * 10 < witness.size() * 8L, "Compressed set should be an order of magnitude smaller than plain longs: " + set.getContainerMemory());
+        CompressedLongSetTests.assertSorted(set, witness);
+
+        for (LongIterator it = set.iterator(); it.hasNext();) {
+            long val = it.nextLong();
+            if (val % 3 == 0) {
+                it.remove();
+                witness.remove(val);
+            }
+        }
+        CompressedLongSetTests.assertSorted(set, witness);
+
+        set.clear();
+        assertTrue(set.isEmpty(), "Set should be empty after clearing");
+        assertEquals(0L, set.getContainerMemory(), "Containers should be released after clearing");
+        assertThrows(IllegalArgumentException.class, () -> set.add(-1L));
+    }
+
+    @Test
+    public void synchronousRandomChurnTest() {
+        ConcurrentCompressedLongSet set = new ConcurrentCompressedLongSet();
+        LongOpenHashSet witness = new LongOpenHashSet();
+        for (long val = 0; val < 100_000L; val++) {
+            set.add(val);
+            witness.add(val);
+        }
+        set.runOptimize();
+        for (int i = 0; i < 300_000; i++) {
+            // Alternate between sparse and dense phases to force conversions between all container kinds
+            long bound = (i / 50_000) % 2 == 0 ? 20_000L : 200_000L;
+            long val = ThreadLocalRandom.current().nextLong(bound);
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                assertEquals(witness.add(val), set.add(val), "Insertion feedback value mismatch for value " + val);
+            } else {
+                assertEquals(witness.remove(val), set.remove(val), "Removal feedback value mismatch for value " + val);
+            }
+        }
+        assertEquals(witness, set, "Set content mismatch");
+        CompressedLongSetTests.assertSorted(set, witness);
+    }
+
+    @Test
+    public void bulkOperationsTest() {
+        ConcurrentCompressedLongSet a = new ConcurrentCompressedLongSet();
+        ConcurrentCompressedLongSet b = new ConcurrentCompressedLongSet();
+        LongOpenHashSet witnessA = new LongOpenHashSet();
+        LongOpenHashSet witnessB = new LongOpenHashSet();
+        CompressedLongSetTests.fill(a, witnessA, 0L);
+        CompressedLongSetTests.fill(b, witnessB, 150_000L);
+        b.runOptimize();
+
+        ConcurrentCompressedLongSet union = new ConcurrentCompressedLongSet();
+        assertTrue(union.addAll(a), "Union should modify an empty set");
+        assertTrue(union.addAll(b), "Union should add the elements of the second set");
+        assertFalse(union.addAll(a), "Union with a subset should not modify the set");
+        LongOpenHashSet expected = new LongOpenHashSet(witnessA);
+        expected.addAll(witnessB);
+        CompressedLongSetTests.assertSorted(union, expected);
+
+        ConcurrentCompressedLongSet intersection = new ConcurrentCompressedLongSet();
+        intersection.addAll(a);
+        assertTrue(intersection.retainAll(b), "Intersection should remove elements");
+        expected = new LongOpenHashSet(witnessA);
+        expected.retainAll(witnessB);
+        CompressedLongSetTests.assertSorted(intersection, expected);
+
+        ConcurrentCompressedLongSet difference = new ConcurrentCompressedLongSet();
+        difference.addAll(a);
+        assertTrue(difference.removeAll(b), "Difference should remove elements");
+        expected = new LongOpenHashSet(witnessA);
+        expected.removeAll(witnessB);
+        CompressedLongSetTests.assertSorted(difference, expected);
+    }
+
+    @Test
+    public void asynchronousChurnTest() {
+        ConcurrentCompressedLongSet set = new ConcurrentCompressedLongSet();
+        AtomicInteger inserted = new AtomicInteger();
+        int threads = 8;
+        CompletableFuture<?>[] futures = new CompletableFuture[threads];
+        for (int i = 0; i < futures.length; i++) {
+            int residue = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int round = 0; round < 3; round++) {
+                    for (long val = residue; val < 200_000L; val += threads) {
+                        if (set.add(val)) {
+                            inserted.incrementAndGet();
+                        }
+                    }
+                    for (long val = residue; val < 200_000L; val += threads) {
+                        assertTrue(set.remove(val), "Element should be removable: " + val);
+                    }
+                }
+                for (long val = residue; val < 200_000L; val += threads * 2) {
+                    set.add(val);
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        assertEquals(600_000, inserted.get(), "Each element must be reported as inserted once per round");
+        LongOpenHashSet witness = new LongOpenHashSet();
+        for (long val = 0; val < 200_000L; val++) {
+            if (val % (threads * 2) < threads) {
+                witness.add(val);
+            }
+        }
+        assertEquals(witness, set, "Set content mismatch");
+        CompressedLongSetTests.assertSorted(set, witness);
+    }
+}
@@ -0,0 +1,101 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentInt30Set;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+public class Int30SetTests {
+
+    @Test
+    public void synchronousInsertionTest() {
+        ConcurrentInt30Set set = new ConcurrentInt30Set(8);
+        assertTrue(set.isEmpty(), "Set must be initialized as an empty set");
+        for (int i = 0; i < (1 << 14); i++) {
+            assertTrue(set.add(i), "Insertion feedback value mismatch for value " + i);
+            assertFalse(set.add(i), "Element should not be inserted twice: " + i);
+        }
+        assertEquals(1 << 14, set.size(), "Set size mismatch");
+        for (int i = 0; i < (1 << 14); i++) {
+            assertTrue(set.contains(i), "Element should be contained in set: " + i);
+            assertFalse(set.contains(i + (1 << 14)), "Element should not be contained in set: " + (i + (1 << 14)));
+        }
+
+        IntOpenHashSet iterated = new IntOpenHashSet();
+        for (IntIterator it = set.iterator(); it.hasNext();) {
+            int val = it.nextInt();
+            assertTrue(iterated.add(val), "Iterator returned an element twice");
+            if ((val & 1) == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(1 << 14, iterated.size(), "Iterator element count mismatch");
+        for (int i = 0; i < (1 << 14); i++) {
+            assertEquals((i & 1) != 0, set.contains(i), "Contains mismatch for value " + i);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> set.add(1 << 30));
+        assertThrows(IllegalArgumentException.class, () -> set.add(-1));
+        assertFalse(set.contains(-1));
+        assertTrue(set.add((1 << 30) - 1), "The largest 30-bit integer should be accepted");
+
+        set.trim();
+        assertEquals((1 << 13) + 1, set.size(), "Set size mismatch after trimming");
+        set.clear();
+        assertTrue(set.isEmpty(), "Set should be empty after clearing");
+        assertFalse(set.iterator().hasNext(), "Cleared set should not have any elements");
+    }
+
+    @Test
+    public void synchronousRandomChurnTest() {
+        ConcurrentInt30Set set = new ConcurrentInt30Set(4);
+        IntOpenHashSet witness = new IntOpenHashSet();
+        for (int i = 0; i < 200000; i++) {
+            int val = ThreadLocalRandom.current().nextInt(1 << 12);
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                assertEquals(witness.add(val), set.add(val), "Insertion feedback value mismatch for value " + val);
+            } else {
+                assertEquals(witness.remove(val), set.remove(val), "Removal feedback value mismatch for value " + val);
+            }
+        }
+        assertEquals(witness.size(), set.size(), "Set size mismatch");
+        assertEquals(witness, set, "Set content mismatch");
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousInsertAndRemoveTest() {
+        ConcurrentInt30Set set = new ConcurrentInt30Set(2);
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            int base = i << 16;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int val = base; val < base + 20000; val++) {
+                    assertTrue(set.add(val));
+                }
+                for (int val = base; val < base + 20000; val += 2) {
+                    assertTrue(set.remove(val));
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+
+        assertEquals(8 * 10000, set.size(), "Set size mismatch");
+        for (int i = 0; i < futures.length; i++) {
+            int base = i << 16;
+            for (int val = base; val < base + 20000; val++) {
+                assertEquals((val & 1) != 0, set.contains(val), "Contains mismatch for value " + val);
+            }
+        }
+    }
+}
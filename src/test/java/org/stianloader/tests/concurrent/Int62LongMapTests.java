@@ -0,0 +1,175 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentInt62LongMap;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+public class Int62LongMapTests {
+
+    @Test
+    public void synchronousRandomOperationTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(8);
+        Long2LongOpenHashMap witness = new Long2LongOpenHashMap();
+        map.defaultReturnValue(-1L);
+        witness.defaultReturnValue(-1L);
+        for (int i = 0; i < 100000; i++) {
+            long key = ThreadLocalRandom.current().nextLong(0L, 4096L);
+            switch (ThreadLocalRandom.current().nextInt(5)) {
+            case 0:
+                assertEquals(witness.put(key, i), map.put(key, i), "Previous value mismatch for key " + key);
+                break;
+            case 1:
+                assertEquals(witness.remove(key), map.remove(key), "Removed value mismatch for key " + key);
+                break;
+            case 2:
+                assertEquals(witness.addTo(key, 3L), map.addTo(key, 3L), "Previous value mismatch for key " + key);
+                break;
+            case 3:
+                assertEquals(witness.mergeLong(key, i, Math::max), map.mergeLong(key, i, Math::max), "Merged value mismatch for key " + key);
+                break;
+            default:
+                assertEquals(witness.get(key), map.get(key), "Value mismatch for key " + key);
+                assertEquals(witness.containsKey(key), map.containsKey(key), "Contains mismatch for key " + key);
+            }
+        }
+
+        assertEquals(witness.size(), map.size(), "Map size mismatch");
+        assertEquals(witness, map, "Map content mismatch");
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1L, 0L));
+        assertFalse(map.containsKey(-1L));
+
+        map.clear();
+        assertTrue(map.isEmpty(), "Map should be empty after clearing");
+        assertEquals(-1L, map.get(0L), "Cleared map should not hold any mappings");
+    }
+
+    @Test
+    public void atomicOperationTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(1);
+        assertFalse(map.compareAndSet(1L, 0L, 1L), "Absent keys must not be added");
+        assertFalse(map.containsKey(1L));
+        map.put(1L, 5L);
+        assertFalse(map.compareAndSet(1L, 4L, 6L));
+        assertTrue(map.compareAndSet(1L, 5L, 6L));
+        assertEquals(6L, map.get(1L));
+        assertEquals(7L, map.computeIfAbsent(2L, key -> key + 5L));
+        assertEquals(7L, map.computeIfAbsent(2L, key -> 0L), "Present values must not be recomputed");
+        assertEquals(14L, map.compute(2L, (key, value) -> value * 2));
+        assertEquals(0L, map.compute(2L, (key, value) -> null), "Removed keys must yield the default return value");
+        assertFalse(map.containsKey(2L));
+        assertFalse(map.remove(1L, 5L));
+        assertTrue(map.remove(1L, 6L));
+        assertTrue(map.isEmpty(), "Map should be empty");
+        assertThrows(IllegalStateException.class, () -> map.computeIfAbsent(3L, key -> map.put(4L, 1L)), "Recursive updates must be rejected");
+        assertTrue(map.isEmpty(), "Rejected updates must not modify the map");
+    }
+
+    @Test
+    public void iterationTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(4);
+        for (long i = 0; i < 10000; i++) {
+            map.put(i, i * 2);
+        }
+
+        int count = 0;
+        for (ObjectIterator<Long2LongMap.Entry> it = map.long2LongEntrySet().iterator(); it.hasNext();) {
+            Long2LongMap.Entry entry = it.next();
+            assertEquals(entry.getLongKey() * 2, entry.getLongValue(), "Value mismatch for key " + entry.getLongKey());
+            if (entry.getLongKey() % 2 == 0) {
+                it.remove();
+            } else {
+                entry.setValue(-entry.getLongKey());
+            }
+            count++;
+        }
+
+        assertEquals(10000, count, "Iterator element count mismatch");
+        assertEquals(5000, map.size(), "Map size mismatch after removing through the iterator");
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 0 ? 0L : -i, map.get(i), "Value mismatch for key " + i);
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousCounterTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(4);
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int round = 0; round < 100; round++) {
+                    for (long key = 0; key < 1000; key++) {
+                        map.addTo(key, 1L);
+                    }
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+
+        assertEquals(1000, map.size(), "Map size mismatch");
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(800L, map.get(key), "Counter mismatch for key " + key);
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousCounterRemovalTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(2);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder drained = new LongAdder();
+        CompletableFuture<?> drainer = CompletableFuture.runAsync(() -> {
+            // Every increment must either be drained or remain within the map
+            while (running.get()) {
+                long key = ThreadLocalRandom.current().nextLong(64L);
+                if (map.containsKey(key)) {
+                    drained.add(map.remove(key));
+                }
+            }
+        });
+        CompletableFuture<?>[] futures = new CompletableFuture[4];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int round = 0; round < 20000; round++) {
+                    map.addTo(round & 63, 1L);
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+        running.set(false);
+        assertDoesNotThrow(() -> drainer.get());
+
+        long remaining = 0L;
+        for (long key = 0; key < 64; key++) {
+            remaining += map.get(key);
+        }
+        assertEquals(4L * 20000L, drained.sum() + remaining, "Increments were lost");
+    }
+
+    @Test
+    public void serializationTest() {
+        ConcurrentInt62LongMap map = new ConcurrentInt62LongMap(4);
+        map.put(1L, 2L);
+        assertThrows(NotSerializableException.class, () -> {
+            try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+                out.writeObject(map);
+            }
+        }, "The map must refuse to be serialized");
+    }
+}
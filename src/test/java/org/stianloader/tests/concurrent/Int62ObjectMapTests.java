@@ -0,0 +1,177 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentInt62ObjectMap;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+public class Int62ObjectMapTests {
+
+    @Test
+    public void synchronousRandomOperationTest() {
+        ConcurrentInt62ObjectMap<String> map = new ConcurrentInt62ObjectMap<>(8);
+        Long2ObjectOpenHashMap<String> witness = new Long2ObjectOpenHashMap<>();
+        assertTrue(map.isEmpty(), "Map must be initialized as an empty map");
+        for (int i = 0; i < 100000; i++) {
+            long key = ThreadLocalRandom.current().nextLong(0L, 4096L);
+            String value = Integer.toString(i);
+            switch (ThreadLocalRandom.current().nextInt(4)) {
+            case 0:
+                assertEquals(witness.put(key, value), map.put(key, value), "Previous value mismatch for key " + key);
+                break;
+            case 1:
+                assertEquals(witness.remove(key), map.remove(key), "Removed value mismatch for key " + key);
+                break;
+            case 2:
+                assertEquals(witness.putIfAbsent(key, value), map.putIfAbsent(key, value), "Present value mismatch for key " + key);
+                break;
+            default:
+                assertEquals(witness.get(key), map.get(key), "Value mismatch for key " + key);
+                assertEquals(witness.containsKey(key), map.containsKey(key), "Contains mismatch for key " + key);
+            }
+        }
+
+        assertEquals(witness.size(), map.size(), "Map size mismatch");
+        assertEquals(witness, map, "Map content mismatch");
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1L, "invalid"));
+        assertThrows(NullPointerException.class, () -> map.put(0L, null));
+        assertFalse(map.containsKey(-1L));
+
+        map.defaultReturnValue("absent");
+        assertEquals("absent", map.get(1L << 40), "Absent keys must yield the default return value");
+        map.defaultReturnValue(null);
+
+        map.clear();
+        assertTrue(map.isEmpty(), "Map should be empty after clearing");
+        assertNull(map.get(0L), "Cleared map should not hold any mappings");
+    }
+
+    @Test
+    public void iterationTest() {
+        ConcurrentInt62ObjectMap<Long> map = new ConcurrentInt62ObjectMap<>(4);
+        for (long i = 0; i < 10000; i++) {
+            map.put(i, Long.valueOf(i * 2));
+        }
+
+        int count = 0;
+        for (ObjectIterator<Long2ObjectMap.Entry<Long>> it = map.long2ObjectEntrySet().iterator(); it.hasNext();) {
+            Long2ObjectMap.Entry<Long> entry = it.next();
+            assertEquals(entry.getLongKey() * 2, entry.getValue().longValue(), "Value mismatch for key " + entry.getLongKey());
+            if (entry.getLongKey() % 2 == 0) {
+                it.remove();
+            } else {
+                entry.setValue(Long.valueOf(-entry.getLongKey()));
+            }
+            count++;
+        }
+
+        assertEquals(10000, count, "Iterator element count mismatch");
+        assertEquals(5000, map.size(), "Map size mismatch after removing through the iterator");
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i % 2 == 0 ? null : Long.valueOf(-i), map.get(i), "Value mismatch for key " + i);
+        }
+    }
+
+    @Test
+    public void atomicOperationTest() {
+        ConcurrentInt62ObjectMap<String> map = new ConcurrentInt62ObjectMap<>(1);
+        assertEquals("a", map.computeIfAbsent(1L, key -> "a"));
+        assertEquals("a", map.computeIfAbsent(1L, key -> "b"), "Present values must not be recomputed");
+        assertNull(map.computeIfAbsent(2L, key -> null), "Null values must not be inserted");
+        assertFalse(map.containsKey(2L));
+        assertEquals("ab", map.merge(1L, "b", String::concat));
+        assertEquals("ab!", map.computeIfPresent(1L, (key, value) -> value + "!"));
+        assertFalse(map.replace(1L, "a", "c"));
+        assertTrue(map.replace(1L, "ab!", "c"));
+        assertFalse(map.remove(1L, "a"));
+        assertTrue(map.remove(1L, "c"));
+        assertTrue(map.isEmpty(), "Map should be empty");
+        assertThrows(IllegalStateException.class, () -> map.computeIfAbsent(3L, key -> map.put(4L, "x")), "Recursive updates must be rejected");
+        assertTrue(map.isEmpty(), "Rejected updates must not modify the map");
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousComputeIfAbsentTest() {
+        ConcurrentInt62ObjectMap<Object> map = new ConcurrentInt62ObjectMap<>(4);
+        AtomicInteger invocations = new AtomicInteger();
+        Object[][] observed = new Object[8][4096];
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            Object[] results = observed[i];
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int key = 0; key < results.length; key++) {
+                    results[key] = map.computeIfAbsent(key, k -> {
+                        invocations.incrementAndGet();
+                        return new Object();
+                    });
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+
+        assertEquals(4096, invocations.get(), "The mapping function must be invoked once per key");
+        assertEquals(4096, map.size(), "Map size mismatch");
+        for (int key = 0; key < 4096; key++) {
+            for (int i = 1; i < observed.length; i++) {
+                assertSame(observed[0][key], observed[i][key], "All threads must observe the same value for key " + key);
+            }
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousInsertAndRemoveTest() {
+        ConcurrentInt62ObjectMap<Long> map = new ConcurrentInt62ObjectMap<>(2);
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            long base = (long) i << 16;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (long key = base; key < base + 10000; key++) {
+                    assertNull(map.put(key, Long.valueOf(key)));
+                    assertEquals(Long.valueOf(key), map.get(key));
+                }
+                for (long key = base; key < base + 10000; key += 2) {
+                    assertEquals(Long.valueOf(key), map.remove(key));
+                    assertNull(map.get(key));
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+
+        assertEquals(8 * 5000, map.size(), "Map size mismatch");
+        for (int i = 0; i < futures.length; i++) {
+            long base = (long) i << 16;
+            for (long key = base; key < base + 10000; key++) {
+                assertEquals(key % 2 == 0 ? null : Long.valueOf(key), map.get(key), "Value mismatch for key " + key);
+            }
+        }
+    }
+
+    @Test
+    public void serializationTest() {
+        ConcurrentInt62ObjectMap<String> map = new ConcurrentInt62ObjectMap<>(4);
+        map.put(1L, "a");
+        assertThrows(NotSerializableException.class, () -> {
+            try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+                out.writeObject(map);
+            }
+        }, "The map must refuse to be serialized");
+    }
+}
@@ -4,9 +4,14 @@ import static org.junit.jupiter.api.AssertionFailureBuilder.assertionFailure;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -14,6 +19,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
@@ -21,14 +28,28 @@ import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.stianloader.concurrent.ConcurrentInt62Set;
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
 
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSpliterator;
 
 @TestMethodOrder(OrderAnnotation.class)
 public class Int62SetTests {
 
+    /**
+     * Splits a spliterator of a {@link ConcurrentInt62Set} down to single buckets and counts the buckets holding
+     * at least one element.
+     */
+    private static final int countOccupiedBuckets(LongSpliterator spliterator) {
+        LongSpliterator split = spliterator.trySplit();
+        if (split != null) {
+            return Int62SetTests.countOccupiedBuckets(split) + Int62SetTests.countOccupiedBuckets(spliterator);
+        }
+        return spliterator.tryAdvance((long val) -> { }) ? 1 : 0;
+    }
+
     private static final void rangeGuardedRemove(LongSet set, int from, int to) {
         assert from <= to;
         while (from != to) {
@@ -99,6 +120,48 @@ public class Int62SetTests {
         assertTrue(set.isEmpty(), "Set should be empty");
     }
 
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousResizingInsertAndRemoveTest() {
+        final int precisionDepth = 64;
+
+        LongSet set = new ConcurrentInt62Set(1, true);
+        CompletableFuture<?>[] futures = new CompletableFuture[precisionDepth];
+        for (int i = 0; i < precisionDepth; i++) {
+            final int sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                rangeInsert(set, sect << 12, (sect + 1) << 12);
+            });
+        }
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+        assertEquals(precisionDepth << 12, set.size(), "Set size mismatch");
+        for (long i = 0; i < ((long) precisionDepth) << 12; i++) {
+            if (!set.contains(i)) {
+                assertTrue(set.contains(i), "Element should be contained in set: " + i);
+            }
+        }
+        {
+            LongIterator it = set.iterator();
+            LongSet witness = new LongOpenHashSet();
+            while (it.hasNext()) {
+                assertTrue(witness.add(it.nextLong()), "Iterator must return unique (non-duplciate) values");
+            }
+            assertEquals(set.size(), witness.size(), "Iterated object count must match the set's reported size");
+        }
+        for (int i = 0; i < precisionDepth; i++) {
+            final int sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                rangeGuardedRemove(set, sect << 12, (sect + 1) << 12);
+            });
+        }
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+        assertEquals(0, set.size(), "Set size expected empty");
+        assertTrue(set.isEmpty(), "Set should be empty");
+    }
+
     @RepeatedTest(value = 4, failureThreshold = 1)
     public void asynchronousSmallInsertAndRemoveTest() {
         LongSet set = new ConcurrentInt62Set(1);
@@ -203,6 +266,176 @@ public class Int62SetTests {
         }
     }
 
+    @Test
+    public void asynchronousEstimatedSizeTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 4);
+        CompletableFuture<?>[] futures = new CompletableFuture[16];
+        for (int i = 0; i < 16; i++) {
+            final int sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                rangeInsert(set, sect << 12, (sect + 1) << 12);
+            });
+        }
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+        assertEquals(16 << 12, set.size(), "Set size mismatch");
+        long estimate = set.estimatedSize();
+        assertTrue(estimate <= set.size(), "Estimated size " + estimate + " exceeds the actual size after insertions");
+        assertTrue(estimate > 0, "Estimated size must not be zero after insertions");
+
+        set.clear();
+        for (int i = 0; i < 100; i++) {
+            set.add(i);
+            assertEquals(i + 1, set.estimatedSize(), "Estimated size of an uncontended set must be exact");
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousClearTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 2, true);
+        AtomicBoolean clearing = new AtomicBoolean(true);
+        CompletableFuture<?>[] futures = new CompletableFuture[8];
+        for (int i = 0; i < futures.length; i++) {
+            final int sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                do {
+                    rangeInsert(set, sect << 12, (sect + 1) << 12);
+                    rangeRemove(set, sect << 12, (sect << 12) + 1024);
+                } while (clearing.get());
+                rangeInsert(set, sect << 12, (sect + 1) << 12);
+            });
+        }
+        for (int i = 0; i < 200; i++) {
+            set.clear();
+            Thread.yield();
+        }
+        clearing.set(false);
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+
+        assertEquals(futures.length << 12, set.size(), "Set size mismatch after concurrent clears");
+        assertEquals(futures.length << 12, set.toLongArray().length, "Element count mismatch after concurrent clears");
+        for (long i = 0; i < futures.length << 12; i++) {
+            assertTrue(set.contains(i), "Element should be contained in set: " + i);
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousGrowthVisibilityTest() {
+        // A single bucket that grows (and purges its tombstones) over and over again while it is read from
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1, false);
+        for (long i = 0; i < 1024; i++) {
+            set.add(i << 1);
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CompletableFuture<?> reader = CompletableFuture.runAsync(() -> {
+            do {
+                for (long i = 0; i < 1024; i++) {
+                    assertTrue(set.contains(i << 1), "Element should be contained in set while the bucket grows: " + (i << 1));
+                }
+            } while (writing.get());
+        });
+        CompletableFuture<?>[] futures = new CompletableFuture[4];
+        for (int i = 0; i < futures.length; i++) {
+            final long sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int round = 0; round < 16; round++) {
+                    for (long j = sect << 12; j < (sect + 1) << 12; j++) {
+                        long element = (j << 1) | 1;
+                        assertTrue(set.add(element), "Insertion feedback value mismatch for value " + element);
+                        assertTrue(set.contains(element), "Element should be contained in set after insertion: " + element);
+                        assertFalse(set.add(element), "Element should not be inserted twice: " + element);
+                    }
+                    for (long j = sect << 12; j < (sect + 1) << 12; j++) {
+                        long element = (j << 1) | 1;
+                        assertTrue(set.remove(element), "Removal feedback value mismatch for value " + element);
+                        assertFalse(set.contains(element), "Element should not be contained in set after removal: " + element);
+                    }
+                }
+            });
+        }
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+        writing.set(false);
+        assertDoesNotThrow(() -> {
+            reader.get();
+        });
+
+        assertEquals(1024, set.size(), "Set size mismatch after concurrent growth");
+        assertEquals(1024, set.toLongArray().length, "Element count mismatch after concurrent growth");
+        for (long i = 0; i < 1024; i++) {
+            assertTrue(set.contains(i << 1), "Element should be contained in set: " + (i << 1));
+            assertFalse(set.contains((i << 1) | 1), "Element should not be contained in set: " + ((i << 1) | 1));
+        }
+    }
+
+    @Test
+    public void asynchronousSingleBucketContentionTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1);
+        assertEquals(0L, set.getContendedAccessCount(), "A fresh set must not report any contention");
+        assertEquals(0L, set.getParkCount(), "A fresh set must not report any parked threads");
+
+        // All threads operate on the same bucket, which is rehashed over and over again
+        CompletableFuture<?>[] futures = new CompletableFuture[16];
+        for (int i = 0; i < futures.length; i++) {
+            final int sect = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                rangeInsert(set, sect << 12, (sect + 1) << 12);
+                rangeGuardedRemove(set, sect << 12, (sect << 12) + 2048);
+            });
+        }
+        assertDoesNotThrow(() -> {
+            CompletableFuture.allOf(futures).get();
+        });
+
+        assertEquals(futures.length << 11, set.size(), "Set size mismatch");
+        for (long i = 0; i < futures.length << 12; i++) {
+            assertEquals((i & 2048) != 0, set.contains(i), "Contains mismatch for value " + i);
+        }
+    }
+
+    @Test
+    public void alignedInsertionTest() {
+        for (HashMode mode : HashMode.values()) {
+            ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 4, false, mode);
+            for (long i = 0; i < (1 << 12); i++) {
+                assertTrue(set.add(i << 16), "Insertion feedback value mismatch for mode " + mode);
+            }
+            assertEquals(1 << 12, set.size(), "Set size mismatch for mode " + mode);
+            int occupied = Int62SetTests.countOccupiedBuckets(set.spliterator());
+            if (mode == HashMode.LOCALITY) {
+                // The lower 32 bits of all elements share their lowest 16 bits, so all elements end up in the first bucket
+                assertEquals(1, occupied, "LOCALITY should keep aligned elements within a single bucket");
+            } else {
+                assertTrue(occupied >= 14, "MIXED should spread aligned elements across most buckets, but only " + occupied + " buckets were used");
+            }
+            for (long i = 0; i < (1 << 12); i++) {
+                assertTrue(set.contains(i << 16), "Contains mismatch for mode " + mode);
+                assertFalse(set.contains((i << 16) + 1), "Contains mismatch for mode " + mode);
+            }
+            for (long i = 0; i < (1 << 12); i++) {
+                assertTrue(set.remove(i << 16), "Removal feedback value mismatch for mode " + mode);
+            }
+            assertTrue(set.isEmpty(), "Set should be empty for mode " + mode);
+        }
+    }
+
+    @Test
+    public void batchResizeTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 4, true);
+        long[] elements = ThreadLocalRandom.current().longs(100000, 0L, 1L << 62).toArray();
+        assertTrue(set.addAll(elements, 0, elements.length), "Batch insertion feedback value mismatch");
+        // 100000 elements at a load of 32 elements per bucket call for at least 4096 buckets
+        int occupied = Int62SetTests.countOccupiedBuckets(set.spliterator());
+        assertTrue(occupied > 3125, "The table should be resized to fit the batch, but only " + occupied + " buckets are in use");
+        for (long val : elements) {
+            assertTrue(set.contains(val), "Element should be contained in set: " + val);
+        }
+    }
+
     @Test
     public void emptySetTest() {
         assertTrue(new ConcurrentInt62Set(8).isEmpty());
@@ -336,6 +569,405 @@ public class Int62SetTests {
         assertEquals(witness.size(), set.size(), "Set must be at " + witness.size() + " elements after inserting 100000 random values with very likely collisions.");
     }
 
+    @Test
+    public void synchronousResizingIterationTest() {
+        LongSet set = new ConcurrentInt62Set();
+        LongSet witness = new LongOpenHashSet();
+        LongIterator it = set.iterator();
+        for (int i = 0; i < 100000; i++) {
+            set.add(i);
+            if (it.hasNext()) {
+                long value = it.nextLong();
+                assertTrue(witness.add(value), "Iterator returned duplicate value " + value + " while the set was resized");
+            }
+        }
+        while (it.hasNext()) {
+            long value = it.nextLong();
+            assertTrue(witness.add(value), "Iterator returned duplicate value " + value + " while the set was resized");
+        }
+        assertEquals(100000, set.size(), "Set size mismatch");
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(set.contains(i), "Contains mismatch for value " + i);
+        }
+        set.clear();
+        assertTrue(set.isEmpty(), "Set should be empty after clearing");
+        assertFalse(set.contains(0), "Set should not contain elements after clearing");
+    }
+
+    @Test
+    public void synchronousSparseSetTest() {
+        LongSet set = new ConcurrentInt62Set(1 << 20);
+        assertFalse(set.remove(42), "Removal from an unallocated bucket must not succeed");
+        assertFalse(set.contains(42), "Unallocated bucket must not contain any elements");
+        assertTrue(set.add(42), "Insertion feedback value mismatch");
+        assertTrue(set.add(1L << 40), "Insertion feedback value mismatch");
+        assertTrue(set.add((1L << 62) - 1), "Insertion feedback value mismatch");
+        assertEquals(3, set.size(), "Set size mismatch");
+
+        LongSet witness = new LongOpenHashSet();
+        LongIterator it = set.iterator();
+        while (it.hasNext()) {
+            assertTrue(witness.add(it.nextLong()), "Iterator must return unique (non-duplciate) values");
+        }
+        assertEquals(new LongOpenHashSet(new long[] {42, 1L << 40, (1L << 62) - 1}), witness, "Iterated elements mismatch");
+    }
+
+    @Test
+    public void synchronousRandomChurnTest() {
+        LongSet set = new ConcurrentInt62Set(1);
+        LongSet witness = new LongOpenHashSet();
+        ThreadLocalRandom tlr = ThreadLocalRandom.current();
+        for (int i = 0; i < 100000; i++) {
+            long val = tlr.nextLong(0L, 1L << 8);
+            if (tlr.nextBoolean()) {
+                assertEquals(witness.add(val), set.add(val), "Witness did not report a modification while the actual set did report one or vice-versa. For inserting " + val);
+            } else {
+                assertEquals(witness.remove(val), set.remove(val), "Witness did not report a modification while the actual set did report one or vice-versa. For removing " + val);
+            }
+        }
+
+        assertEquals(witness.size(), set.size(), "Set size mismatch after random insertions and removals");
+        for (long i = 0; i < (1L << 8); i++) {
+            assertEquals(witness.contains(i), set.contains(i), "Contains mismatch for value " + i);
+        }
+    }
+
+    @Test
+    public void synchronousParallelStreamTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set();
+        for (int i = 0; i < 100000; i++) {
+            set.add(i);
+        }
+
+        assertEquals(100000L, set.longParallelStream().count(), "Element count mismatch");
+        assertEquals(100000L * 99999L / 2, set.longParallelStream().sum(), "Element sum mismatch");
+        assertEquals(100000L, set.longParallelStream().distinct().count(), "Spliterator reported elements more than once");
+
+        LongSpliterator left = set.spliterator();
+        LongSpliterator right = left.trySplit();
+        assertTrue(right != null, "Spliterator could not be split");
+        assertEquals(100000L, left.estimateSize() + right.estimateSize(), "Size estimate mismatch after splitting");
+        LongSet witness = new LongOpenHashSet();
+        left.forEachRemaining((long value) -> assertTrue(witness.add(value), "Value " + value + " encountered twice"));
+        right.forEachRemaining((long value) -> assertTrue(witness.add(value), "Value " + value + " encountered twice"));
+        assertEquals(100000, witness.size(), "Split spliterators did not cover the set");
+    }
+
+    @Test
+    public void parallelBulkOperationTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set();
+        for (int i = 0; i < 100000; i++) {
+            set.add(i);
+        }
+
+        LongAdder sum = new LongAdder();
+        set.forEach(1L, sum::add);
+        assertEquals(100000L * 99999L / 2, sum.sum(), "Parallel forEach did not visit every element exactly once");
+        assertEquals(100000L * 99999L / 2, set.reduceToLong(1L, (long value) -> value, 0L, Long::sum), "Parallel reduction sum mismatch");
+        assertEquals(100000L, set.reduceToLong(Long.MAX_VALUE, (long value) -> 1L, 0L, Long::sum), "Sequential reduction count mismatch");
+        assertEquals(99999L, set.reduceToLong(1L, (long value) -> value, 0L, Math::max), "Parallel reduction maximum mismatch");
+        assertEquals(31337L, set.search(1L, (long value) -> value == 31337L), "Parallel search did not find the element");
+        assertEquals(-1L, set.search(1L, (long value) -> value >= 100000L), "Parallel search found a non-existent element");
+        assertEquals(-1L, set.search(Long.MAX_VALUE, (long value) -> value < 0L), "Sequential search found a non-existent element");
+    }
+
+    @Test
+    public void synchronousTraversalTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(8);
+        for (int i = 0; i < 10000; i++) {
+            set.add(i);
+        }
+
+        long[] array = set.toLongArray();
+        assertEquals(10000, array.length, "Array length mismatch");
+        Arrays.sort(array);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i, array[i], "Array element mismatch");
+        }
+
+        LongSet witness = new LongOpenHashSet();
+        set.forEach((long value) -> assertTrue(witness.add(value), "Value " + value + " encountered twice"));
+        assertEquals(10000, witness.size(), "forEach did not visit every element");
+
+        LongIterator it = set.iterator();
+        long first = it.nextLong();
+        witness.clear();
+        it.forEachRemaining((long value) -> assertTrue(witness.add(value), "Value " + value + " encountered twice"));
+        assertEquals(9999, witness.size(), "forEachRemaining did not visit every remaining element");
+        assertFalse(witness.contains(first), "forEachRemaining visited an element returned by nextLong");
+
+        assertTrue(set.retainAll(new LongOpenHashSet(new long[] {5, 50, 500, 5000, 50000})), "Set not reported as modified");
+        assertEquals(4, set.size(), "Set size mismatch after retainAll");
+        assertEquals(4, set.toLongArray().length, "Array length mismatch after retainAll");
+    }
+
+    @Test
+    public void batchModificationTest() {
+        for (ConcurrentInt62Set set : new ConcurrentInt62Set[] {new ConcurrentInt62Set(), new ConcurrentInt62Set(64)}) {
+            LongSet witness = new LongOpenHashSet();
+            long[] batch = new long[200000];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = ThreadLocalRandom.current().nextLong(0L, 150000L);
+                witness.add(batch[i]);
+            }
+
+            assertTrue(set.addAll(batch, 0, batch.length), "Set not reported as modified");
+            assertEquals(witness.size(), set.size(), "Set size mismatch after adding a batch");
+            assertFalse(set.addAll(batch, 0, batch.length), "Set reported as modified after adding a batch twice");
+            assertTrue(set.containsAll(witness), "Set does not contain all added elements");
+            assertFalse(set.containsAll(new LongOpenHashSet(new long[] {1L, 150000L})), "Set contains elements that were never added");
+
+            assertThrows(IllegalArgumentException.class, () -> set.addAll(new long[] {200000L, -1L}, 0, 2));
+            assertFalse(set.contains(200000L), "Invalid batch was partially applied");
+
+            assertTrue(set.removeAll(batch, 0, batch.length >>> 1), "Set not reported as modified");
+            for (int i = 0; i < batch.length >>> 1; i++) {
+                witness.remove(batch[i]);
+            }
+            assertEquals(witness.size(), set.size(), "Set size mismatch after removing a batch");
+            for (long i = 0; i < 150000L; i++) {
+                assertEquals(witness.contains(i), set.contains(i), "Contains mismatch for value " + i);
+            }
+
+            assertTrue(set.removeAll(witness), "Set not reported as modified");
+            assertTrue(set.isEmpty(), "Set expected empty after removing all elements");
+        }
+    }
+
+    @Test
+    public void synchronousShrinkTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 4);
+        for (int i = 0; i < 100000; i++) {
+            set.add(i);
+        }
+        for (int i = 0; i < 100000; i++) {
+            if (i % 1000 != 0) {
+                assertTrue(set.remove(i), "Removal feedback value mismatch");
+            }
+        }
+
+        assertEquals(100, set.size(), "Set size mismatch after mass removal");
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i % 1000 == 0, set.contains(i), "Contains mismatch for value " + i);
+        }
+
+        set.trim();
+        assertEquals(100, set.size(), "Set size mismatch after trimming");
+        assertEquals(100, set.toLongArray().length, "Element count mismatch after trimming");
+        for (int i = 0; i < 100000; i += 1000) {
+            assertTrue(set.remove(i), "Removal feedback value mismatch after trimming");
+        }
+
+        set.trim();
+        assertTrue(set.isEmpty(), "Set should be empty");
+        assertEquals(0, set.toLongArray().length, "Trimmed set should not have any elements");
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add(i), "Insertion feedback value mismatch after trimming");
+        }
+        assertEquals(1000, set.size(), "Set size mismatch after reinsertion");
+    }
+
+    @Test
+    public void snapshotRoundTripTest() throws IOException {
+        ConcurrentInt62Set dense = new ConcurrentInt62Set(1 << 4, false, HashMode.LOCALITY);
+        for (int i = 0; i < 100000; i++) {
+            dense.add(i);
+        }
+        ConcurrentInt62Set sparse = new ConcurrentInt62Set(1 << 2, true);
+        LongSet witness = new LongOpenHashSet();
+        for (int i = 0; i < 10000; i++) {
+            long val = ThreadLocalRandom.current().nextLong(0L, 1L << 62);
+            sparse.add(val);
+            witness.add(val);
+        }
+        sparse.add(0L);
+        witness.add(0L);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dense.writeTo(Channels.newChannel(out));
+        assertTrue(out.size() < 2 * 100000, "Dense set should occupy less than two bytes per element, but occupies " + out.size() + " bytes");
+        ConcurrentInt62Set restoredDense = ConcurrentInt62Set.readFrom(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(100000, restoredDense.size(), "Set size mismatch after restoring");
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(restoredDense.contains(i), "Restored set does not contain " + i);
+        }
+        assertTrue(restoredDense.add(100000), "Insertion feedback value mismatch after restoring");
+        assertTrue(restoredDense.remove(0), "Removal feedback value mismatch after restoring");
+
+        out.reset();
+        sparse.writeTo(Channels.newChannel(out));
+        byte[] bytes = out.toByteArray();
+        ConcurrentInt62Set restoredSparse = ConcurrentInt62Set.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        assertEquals(witness, restoredSparse, "Restored set does not match written set");
+
+        assertThrows(IOException.class, () -> {
+            ConcurrentInt62Set.readFrom(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length / 2))));
+        }, "Truncated snapshots must be rejected");
+        bytes[0] ^= 0x55;
+        assertThrows(IOException.class, () -> {
+            ConcurrentInt62Set.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        }, "Snapshots with an invalid header must be rejected");
+    }
+
+    @Test
+    public void snapshotTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 2, true);
+        for (int i = 0; i < 10000; i++) {
+            set.add(i);
+        }
+
+        ConcurrentInt62Set snapshot = set.snapshot();
+        for (int i = 0; i < 10000; i += 2) {
+            set.remove(i);
+        }
+        assertEquals(10000, snapshot.size(), "Snapshot size mismatch");
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(snapshot.contains(i), "Snapshot does not contain " + i);
+        }
+        assertTrue(snapshot.add(10000), "Snapshot should be modifiable");
+        assertFalse(set.contains(10000), "Modifying the snapshot must not modify the set");
+
+        LongSet witness = new LongOpenHashSet();
+        LongIterator it = set.snapshotIterator();
+        while (it.hasNext()) {
+            long val = it.nextLong();
+            assertTrue(witness.add(val), "Element " + val + " was returned twice");
+            if (val % 3 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(5000, witness.size(), "Snapshot iterator element count mismatch");
+        for (int i = 1; i < 10000; i += 2) {
+            assertEquals(i % 3 != 0, set.contains(i), "Contains mismatch for value " + i);
+        }
+    }
+
+    @RepeatedTest(value = 4, failureThreshold = 1)
+    public void asynchronousSnapshotTest() {
+        // A single bucket, so that all elements of a group always share a bucket
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1, false, HashMode.LOCALITY);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[4];
+        for (int i = 0; i < futures.length; i++) {
+            int thread = i;
+            futures[i] = CompletableFuture.runAsync(() -> {
+                // Each group of 16 elements is always added and removed together by a single batch operation.
+                // Batches of this size are grouped by bucket, so each group is applied under a single reader slot
+                long base = thread << 20;
+                long[] group = new long[16];
+                while (running.get()) {
+                    for (int remove = 0; remove < 2; remove++) {
+                        for (long j = base; j < base + 2048; j += group.length) {
+                            for (int k = 0; k < group.length; k++) {
+                                group[k] = j + k;
+                            }
+                            if (remove == 0) {
+                                set.addAll(group, 0, group.length);
+                            } else {
+                                set.removeAll(group, 0, group.length);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            for (int round = 0; round < 200; round++) {
+                LongIterator it = set.iterator();
+                while (it.hasNext()) {
+                    assertDoesNotThrow(it::nextLong, "nextLong() must not fail after hasNext() returned true");
+                }
+
+                LongSet copy = new LongOpenHashSet();
+                if (round % 2 == 0) {
+                    for (it = set.snapshotIterator(); it.hasNext();) {
+                        copy.add(it.nextLong());
+                    }
+                } else {
+                    copy.addAll(set.snapshot());
+                }
+                for (LongIterator copyIt = copy.iterator(); copyIt.hasNext();) {
+                    long val = copyIt.nextLong();
+                    for (long member = val & ~15L; member < (val & ~15L) + 16; member++) {
+                        assertTrue(copy.contains(member), "Snapshot holds " + val + " but not " + member + " of the same group in round " + round);
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get(), "Writer failed");
+    }
+
+    @Test
+    public void sortedIterationTest() {
+        assertEquals(0, new ConcurrentInt62Set().toSortedLongArray().length, "Empty sets have no elements");
+        assertFalse(new ConcurrentInt62Set().sortedIterator().hasNext(), "Empty sets have no elements");
+
+        for (HashMode mode : HashMode.values()) {
+            ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 4, true, mode);
+            LongSet witness = new LongOpenHashSet();
+            for (int i = 0; i < 50000; i++) {
+                long val = ThreadLocalRandom.current().nextBoolean() ? ThreadLocalRandom.current().nextLong(1L << 62) : ThreadLocalRandom.current().nextLong(100000);
+                set.add(val);
+                witness.add(val);
+            }
+            long[] expected = witness.toLongArray();
+            Arrays.sort(expected);
+            assertTrue(Arrays.equals(expected, set.toSortedLongArray()), "Sorted array mismatch for hash mode " + mode);
+
+            int index = 0;
+            for (LongIterator it = set.sortedIterator(); it.hasNext();) {
+                long val = it.nextLong();
+                assertEquals(expected[index++], val, "Sorted iterator mismatch at index " + (index - 1));
+                if ((val & 1) == 0) {
+                    it.remove();
+                }
+            }
+            assertEquals(expected.length, index, "Sorted iterator element count mismatch");
+            for (long val : expected) {
+                assertEquals((val & 1) != 0, set.contains(val), "Contains mismatch for value " + val);
+            }
+        }
+    }
+
+    @Test
+    public void asynchronousSortedIterationTest() {
+        ConcurrentInt62Set set = new ConcurrentInt62Set(1 << 2, true);
+        for (long i = 0; i < 100000; i += 2) {
+            set.add(i);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<?> writer = CompletableFuture.runAsync(() -> {
+            while (running.get()) {
+                for (long i = 1; i < 100000; i += 2) {
+                    set.add(i);
+                }
+                for (long i = 1; i < 100000; i += 2) {
+                    set.remove(i);
+                }
+            }
+        });
+
+        try {
+            for (int round = 0; round < 50; round++) {
+                long[] sorted = set.toSortedLongArray();
+                int even = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    assertTrue(i == 0 || sorted[i - 1] < sorted[i], "Elements must be strictly ascending");
+                    if ((sorted[i] & 1) == 0) {
+                        even++;
+                    }
+                }
+                assertEquals(50000, even, "Elements that are not modified concurrently must be returned exactly once");
+            }
+        } finally {
+            running.set(false);
+        }
+        assertDoesNotThrow(() -> writer.get(), "Writer failed");
+    }
+
     @Test
     public void synchronousRandomInsertionTest() {
         LongSet set = new ConcurrentInt62Set(8);
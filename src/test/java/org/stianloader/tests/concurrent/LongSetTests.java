@@ -0,0 +1,90 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.ConcurrentLongSet;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class LongSetTests {
+
+    @Test
+    public void fullRangeTest() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        long[] extremes = {0L, -1L, 1L, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 62, 3L << 62, (1L << 62) - 1};
+        for (long val : extremes) {
+            assertTrue(set.add(val), "Insertion feedback value mismatch for value " + val);
+            assertFalse(set.add(val), "Element should not be inserted twice: " + val);
+        }
+        assertEquals(extremes.length, set.size(), "Set size mismatch");
+        for (long val : extremes) {
+            assertTrue(set.contains(val), "Element should be contained in set: " + val);
+            assertFalse(set.contains(val ^ 2L), "Element should not be contained in set: " + (val ^ 2L));
+        }
+
+        LongOpenHashSet iterated = new LongOpenHashSet();
+        set.forEach((long val) -> assertTrue(iterated.add(val), "Element " + val + " was traversed twice"));
+        assertEquals(new LongOpenHashSet(extremes), iterated, "Traversed elements mismatch");
+
+        for (LongIterator it = set.iterator(); it.hasNext();) {
+            long val = it.nextLong();
+            if (val < 0) {
+                it.remove();
+            }
+        }
+        for (long val : extremes) {
+            assertEquals(val >= 0, set.contains(val), "Contains mismatch for value " + val);
+        }
+
+        set.clear();
+        assertTrue(set.isEmpty(), "Set should be empty after clearing");
+    }
+
+    @Test
+    public void synchronousRandomChurnTest() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        LongOpenHashSet witness = new LongOpenHashSet();
+        long[] pool = ThreadLocalRandom.current().longs(4096).toArray();
+        for (int i = 0; i < 100000; i++) {
+            long val = pool[ThreadLocalRandom.current().nextInt(pool.length)];
+            if (ThreadLocalRandom.current().nextBoolean()) {
+                assertEquals(witness.add(val), set.add(val), "Insertion feedback value mismatch for value " + val);
+            } else {
+                assertEquals(witness.remove(val), set.remove(val), "Removal feedback value mismatch for value " + val);
+            }
+        }
+        assertEquals(witness.size(), set.size(), "Set size mismatch");
+        assertEquals(witness, set, "Set content mismatch");
+    }
+
+    @Test
+    public void asynchronousInsertionTest() {
+        ConcurrentLongSet set = new ConcurrentLongSet();
+        long[][] elements = new long[8][];
+        CompletableFuture<?>[] futures = new CompletableFuture[elements.length];
+        for (int i = 0; i < futures.length; i++) {
+            long[] batch = elements[i] = ThreadLocalRandom.current().longs(20000).toArray();
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (long val : batch) {
+                    set.add(val);
+                }
+            });
+        }
+        assertDoesNotThrow(() -> CompletableFuture.allOf(futures).get());
+
+        LongOpenHashSet witness = new LongOpenHashSet();
+        for (long[] batch : elements) {
+            witness.addAll(LongOpenHashSet.of(batch));
+        }
+        assertEquals(witness.size(), set.size(), "Set size mismatch");
+        assertEquals(witness, set, "Set content mismatch");
+    }
+}
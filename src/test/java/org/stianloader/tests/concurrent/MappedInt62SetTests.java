@@ -0,0 +1,179 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.stianloader.concurrent.ConcurrentInt62Set.HashMode;
+import org.stianloader.concurrent.MappedConcurrentInt62Set;
+
+public class MappedInt62SetTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void reopenTest() throws IOException {
+        Path file = this.directory.resolve("set.bin");
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.create(file, 16, HashMode.LOCALITY)) {
+            for (long i = 0; i < (1 << 15); i++) {
+                assertTrue(set.add(i * 3), "Insertion feedback value mismatch for value " + (i * 3));
+            }
+            for (long i = 0; i < (1 << 15); i += 2) {
+                assertTrue(set.remove(i * 3), "Removal feedback value mismatch for value " + (i * 3));
+            }
+        }
+        assertThrows(FileAlreadyExistsException.class, () -> MappedConcurrentInt62Set.create(file, 16, HashMode.MIXED));
+
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.open(file)) {
+            assertEquals(1 << 14, set.size(), "Set size mismatch after reopening");
+            for (long i = 0; i < (1 << 15); i++) {
+                assertEquals((i & 1) != 0, set.contains(i * 3), "Contains mismatch for value " + (i * 3));
+                assertFalse(set.contains(i * 3 + 1), "Element should not be contained in set: " + (i * 3 + 1));
+            }
+            assertTrue(set.add(1L), "Insertion feedback value mismatch after reopening");
+            set.flush();
+        }
+
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.open(file)) {
+            assertEquals((1 << 14) + 1, set.size(), "Set size mismatch after reopening again");
+            assertTrue(set.contains(1L), "Element added after reopening should be contained in set");
+        }
+    }
+
+    @Test
+    public void uncleanReopenTest() throws IOException {
+        Path file = this.directory.resolve("unclean.bin");
+        MappedConcurrentInt62Set crashed = MappedConcurrentInt62Set.create(file, 16, HashMode.MIXED);
+        try {
+            // Enough elements for every bucket to be rehashed several times, and removals leaving tombstones behind
+            for (long i = 0; i < (1 << 15); i++) {
+                crashed.add(i * 5);
+            }
+            for (long i = 0; i < (1 << 15); i += 4) {
+                crashed.remove(i * 5);
+            }
+            crashed.flush();
+            for (long i = 1; i < (1 << 15); i += 4) {
+                crashed.remove(i * 5);
+            }
+
+            // The set was neither closed nor flushed after the last removals, so the file is reopened as if the
+            // process had crashed and the directory still holds outdated element counts
+            try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.open(file)) {
+                assertEquals(1 << 14, set.size(), "Set size mismatch after an unclean reopen");
+                for (long i = 0; i < (1 << 15); i++) {
+                    assertEquals((i & 3) >= 2, set.contains(i * 5), "Contains mismatch for value " + (i * 5));
+                }
+                assertTrue(set.add(1L), "Insertion feedback value mismatch after an unclean reopen");
+                assertFalse(set.add(10L), "Element should be contained in set: 10");
+            }
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    public void invalidFileTest() throws IOException {
+        Path file = this.directory.resolve("invalid.bin");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> MappedConcurrentInt62Set.open(file));
+        MappedConcurrentInt62Set set = MappedConcurrentInt62Set.create(this.directory.resolve("closed.bin"), 4, HashMode.MIXED);
+        set.close();
+        assertThrows(IllegalStateException.class, () -> set.contains(0L));
+        assertThrows(IllegalStateException.class, set::flush);
+    }
+
+    @Test
+    public void spaceReuseTest() throws IOException {
+        Path file = this.directory.resolve("reuse.bin");
+        long used;
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.create(file, 16, HashMode.MIXED)) {
+            for (long i = 0; i < 20000; i++) {
+                set.add(i);
+            }
+            set.clear();
+            used = set.getUsedFileSize();
+            for (int round = 0; round < 50; round++) {
+                for (long i = 0; i < 20000; i++) {
+                    set.add(i);
+                }
+                set.clear();
+                assertEquals(used, set.getUsedFileSize(), "File grew while refilling a cleared set in round " + round);
+            }
+
+            // Adding and removing elements purges tombstones by rehashing buckets into slots of the same size, which
+            // requires the old and the new slots at once - only the first purges may need to extend the file
+            for (long i = 0; i < 10000; i++) {
+                set.add(i);
+                set.remove(i);
+            }
+            long churned = set.getUsedFileSize();
+            for (long i = 10000; i < 200000; i++) {
+                set.add(i);
+                set.remove(i);
+            }
+            assertEquals(0, set.size(), "Set size mismatch after adding and removing elements");
+            assertEquals(churned, set.getUsedFileSize(), "File grew while adding and removing elements");
+            set.clear();
+            used = set.getUsedFileSize();
+        }
+
+        // The released regions are kept across a proper reopen
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.open(file)) {
+            for (long i = 0; i < 20000; i++) {
+                set.add(i);
+            }
+            assertEquals(20000, set.size(), "Set size mismatch after reopening");
+            assertEquals(used, set.getUsedFileSize(), "File grew while filling a reopened set");
+        }
+    }
+
+    @Test
+    public void corruptHeaderTest() throws IOException {
+        Path file = this.directory.resolve("corrupt.bin");
+        MappedConcurrentInt62Set.create(file, 4, HashMode.MIXED).close();
+
+        // A directory which does not fit into the first mapped segment
+        this.patchInt(file, 8, 1 << 22);
+        assertThrows(IOException.class, () -> MappedConcurrentInt62Set.open(file), "Directory exceeding the first segment was accepted");
+        this.patchInt(file, 8, 4);
+
+        try (MappedConcurrentInt62Set set = MappedConcurrentInt62Set.open(file)) {
+            for (long i = 0; i < 1000; i++) {
+                set.add(i);
+            }
+        }
+        // The slots of the first bucket are redirected onto the header: offset 32, 16 slots (log2 + 1 = 5)
+        this.patchLong(file, 224, (32L << 5) | 5);
+        assertThrows(IOException.class, () -> MappedConcurrentInt62Set.open(file), "Slots overlapping the directory were accepted");
+    }
+
+    private void patchInt(Path file, long position, int value) throws IOException {
+        this.patch(file, position, ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(0, value));
+    }
+
+    private void patchLong(Path file, long position, long value) throws IOException {
+        this.patch(file, position, ByteBuffer.allocate(8).order(ByteOrder.nativeOrder()).putLong(0, value));
+    }
+
+    private void patch(Path file, long position, ByteBuffer buffer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.stianloader.tests.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.stianloader.concurrent.OffHeapConcurrentInt62Set;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class OffHeapInt62SetTests {
+
+    @Test
+    public void synchronousInsertionTest() {
+        try (OffHeapConcurrentInt62Set set = new OffHeapConcurrentInt62Set(8)) {
+            assertTrue(set.isEmpty(), "Set must be initialized as an empty set");
+            assertEquals(0L, set.getAllocatedMemory(), "Buckets must be allocated lazily");
+            for (long i = 0; i < (1 << 14); i++) {
+                assertTrue(set.add(i), "Insertion feedback value mismatch for value " + i);
+                assertFalse(set.add(i), "Element should not be inserted twice: " + i);
+            }
+            assertEquals(1 << 14, set.size(), "Set size mismatch");
+            assertTrue(set.getAllocatedMemory() >= (1 << 14) * 8L, "Allocated memory must cover all elements");
+            for (long i = 0; i < (1 << 14); i++) {
+                assertTrue(set.contains(i), "Element should be contained in set: " + i);
+                assertFalse(set.contains(i + (1 << 14)), "Element should not be contained in set: " + (i + (1 << 14)));
+            }
+
+            LongOpenHashSet iterated = new LongOpenHashSet();
+            for (LongIterator it = set.iterator(); it.hasNext();) {
+                assertTrue(iterated.add(it.nextLong()), "Iterator returned an element twice");
+            }
+            assertEquals(1 << 14, iterated.size(), "Iterator element count mismatch");
+
+            for (long i = 0; i < (1 << 14); i += 2) {
+                assertTrue(set.remove(i), "Removal feedback value mismatch for value " + i);
+            }
+            for (long i = 0; i < (1 << 14); i++) {
+                assertEquals((i & 1) != 0, set.contains(i), "Contains mismatch for value " + i);
+            }
+            assertThrows(IllegalArgumentException.class, () -> set.add(-1L));
+            assertFalse(set.contains(-1L));
+
+            set.clear();
+            assertTrue(set.isEmpty(), "Set should be empty after clearing");
+            assertEquals(0L, set.getAllocatedMemory(), "Cleared set should not hold any memory");
+        }
+    }
+
+    @Test
+    public void asynchronousInsertionTest() {
+        try (OffHeapConcurrentInt62Set set = new OffHeapConcurrentInt62Set(4)) {
+            CompletableFuture<?>[] futures = new CompletableFuture[8];
+            for (int i = 0; i < futures.length; i++) {
+                final long sect = i;
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    for (long j = sect << 12; j < (sect + 1) << 12; j++) {
+                        assertTrue(set.add(j), "Insertion feedback value mismatch for value " + j);
+                    }
+                    for (long j = sect << 12; j < (sect << 12) + 2048; j++) {
+                        assertTrue(set.remove(j), "Removal feedback value mismatch for value " + j);
+                    }
+                });
+            }
+            assertDoesNotThrow(() -> {
+                CompletableFuture.allOf(futures).get();
+            });
+            assertEquals(futures.length << 11, set.size(), "Set size mismatch");
+            for (long i = 0; i < futures.length << 12; i++) {
+                assertEquals((i & 2048) != 0, set.contains(i), "Contains mismatch for value " + i);
+            }
+            set.trim();
+        }
+    }
+
+    @Test
+    public void closeTest() {
+        OffHeapConcurrentInt62Set set = new OffHeapConcurrentInt62Set(2);
+        for (long i = 0; i < 1024; i++) {
+            set.add(i);
+        }
+        assertTrue(set.getAllocatedMemory() > 0L, "Set should hold native memory");
+        set.close();
+        assertEquals(0L, set.getAllocatedMemory(), "Closed set should not hold any memory");
+        assertThrows(IllegalStateException.class, () -> set.add(1L));
+        assertThrows(IllegalStateException.class, () -> set.contains(1L));
+        assertThrows(IllegalStateException.class, () -> set.remove(1L));
+        assertThrows(IllegalStateException.class, () -> set.iterator().hasNext());
+        assertDoesNotThrow(set::close);
+    }
+}